@@ -32,8 +32,8 @@ public class TestTransforms {
     FileLink fileLink = client.upload(origPath, "image/jpeg");
     handles.add(fileLink.getHandle());
 
-    ImageTransform transform = fileLink.imageTransform();
-    transform.addTask(new CropTask(0, 0, 500, 500));
+    ImageTransform transform = fileLink.imageTransform()
+        .addTask(new CropTask(0, 0, 500, 500));
 
     String cropPath = loader.getResource("com/filestack/sample_image_cropped.jpg").getPath();
     File cropFile = new File(cropPath);
@@ -10,19 +10,24 @@ import com.filestack.transforms.AvTransform;
 import com.filestack.transforms.ImageTransform;
 import com.filestack.transforms.ImageTransformTask;
 import com.filestack.transforms.tasks.AvTransformOptions;
+import com.filestack.util.Download;
 import com.filestack.util.FsService;
+import com.filestack.util.NetworkingContext;
+import com.filestack.util.RangeChannel;
 import com.filestack.util.Util;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 import io.reactivex.functions.Action;
 import io.reactivex.schedulers.Schedulers;
 import java.io.File;
 import java.io.IOException;
 import java.net.URLConnection;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
@@ -35,7 +40,7 @@ import retrofit2.Response;
 public class FileLink {
   private String apiKey;
   private String handle;
-  private Security security;
+  private SecurityProvider securityProvider;
 
   private FsService fsService;
 
@@ -58,7 +63,7 @@ public class FileLink {
   public FileLink(String apiKey, String handle, Security security) {
     this.apiKey = apiKey;
     this.handle = handle;
-    this.security = security;
+    this.securityProvider = security;
 
     this.fsService = new FsService();
   }
@@ -71,8 +76,9 @@ public class FileLink {
   public static class Builder {
     private String apiKey;
     private String handle;
-    private Security security;
+    private SecurityProvider securityProvider;
     private FsService fsService;
+    private NetworkingContext networkingContext;
 
     public Builder apiKey(String apiKey) {
       this.apiKey = apiKey;
@@ -85,7 +91,15 @@ public class FileLink {
     }
 
     public Builder security(Security security) {
-      this.security = security;
+      this.securityProvider = security;
+      return this;
+    }
+
+    /**
+     * Set a provider to get the security from for each request, instead of a fixed pair.
+     */
+    public Builder securityProvider(SecurityProvider securityProvider) {
+      this.securityProvider = securityProvider;
       return this;
     }
 
@@ -94,6 +108,15 @@ public class FileLink {
       return this;
     }
 
+    /**
+     * Use the connection pools, dispatcher and timeouts of a context instead of the shared
+     * defaults. Ignored if a service is set.
+     */
+    public Builder networking(NetworkingContext networkingContext) {
+      this.networkingContext = networkingContext;
+      return this;
+    }
+
     /**
      * Create the {@link FileLink} using the configured values.
      */
@@ -101,8 +124,14 @@ public class FileLink {
       FileLink fileLink = new FileLink();
       fileLink.apiKey = apiKey;
       fileLink.handle = handle;
-      fileLink.security = security;
-      fileLink.fsService = fsService != null ? fsService : new FsService();
+      fileLink.securityProvider = securityProvider;
+      if (fsService != null) {
+        fileLink.fsService = fsService;
+      } else if (networkingContext != null) {
+        fileLink.fsService = new FsService(networkingContext);
+      } else {
+        fileLink.fsService = new FsService();
+      }
       return fileLink;
     }
   }
@@ -121,8 +150,10 @@ public class FileLink {
       throws IOException, PolicySignatureException, ResourceNotFoundException,
              InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     String policy = security != null ? security.getPolicy() : null;
     String signature = security != null ? security.getSignature() : null;
+    Util.checkPolicy(security, Policy.CALL_READ, handle, -1);
 
     Response<ResponseBody> response = fsService.get(this.handle, policy, signature).execute();
 
@@ -131,6 +162,29 @@ public class FileLink {
     return response.body();
   }
 
+  /**
+   * Opens a channel to read the file using default block and cache sizes.
+   *
+   * @see #openChannel(int, int)
+   */
+  public SeekableByteChannel openChannel() {
+    return openChannel(RangeChannel.DEFAULT_BLOCK_SIZE, RangeChannel.DEFAULT_CACHE_BLOCKS);
+  }
+
+  /**
+   * Opens a read-only channel to randomly access the content of a file.
+   * Content is requested in blocks using HTTP range requests, so only the parts of the file that
+   * are actually read get transferred. Useful for formats like ZIP or MP4 where you only need an
+   * index and a few ranges. A request isn't made directly by this method.
+   *
+   * @param blockSize   bytes per block, also the smallest request made
+   * @param cacheBlocks number of recently read blocks to keep in memory
+   * @return {@link SeekableByteChannel} that throws IOException on request failures
+   */
+  public SeekableByteChannel openChannel(int blockSize, int cacheBlocks) {
+    return new RangeChannel(fsService, handle, securityProvider, blockSize, cacheBlocks);
+  }
+
   /**
    * Saves the file using the name it was uploaded with.
    *
@@ -158,8 +212,10 @@ public class FileLink {
       throws ValidationException, IOException, PolicySignatureException,
              ResourceNotFoundException, InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     String policy = security != null ? security.getPolicy() : null;
     String signature = security != null ? security.getSignature() : null;
+    Util.checkPolicy(security, Policy.CALL_READ, handle, -1);
 
     Response<ResponseBody> response = fsService.get(this.handle, policy, signature).execute();
 
@@ -201,9 +257,11 @@ public class FileLink {
       throws ValidationException, IOException, PolicySignatureException,
              ResourceNotFoundException, InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     if (security == null) {
       throw new ValidationException("Security must be set in order to overwrite");
     }
+    security.checkPolicy(Policy.CALL_WRITE, handle, -1);
 
     File file = Util.createReadFile(pathname);
 
@@ -232,9 +290,11 @@ public class FileLink {
       throws ValidationException, IOException, PolicySignatureException,
              ResourceNotFoundException, InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     if (security == null) {
       throw new ValidationException("Security must be set in order to delete");
     }
+    security.checkPolicy(Policy.CALL_REMOVE, handle, -1);
 
     String policy = security.getPolicy();
     String signature = security.getSignature();
@@ -270,15 +330,13 @@ public class FileLink {
       throws ValidationException, IOException, PolicySignatureException,
              ResourceNotFoundException, InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     if (security == null) {
       throw new ValidationException("Security must be set in order to tag an image");
     }
 
-    ImageTransform transform = new ImageTransform(this);
-    transform.addTask(new ImageTransformTask("tags"));
-    JsonObject json = transform.getContentJson();
-    Gson gson = new Gson();
-    ImageTagResponse response = gson.fromJson(json, ImageTagResponse.class);
+    ImageTransform transform = new ImageTransform(this).addTask(new ImageTransformTask("tags"));
+    ImageTagResponse response = transform.getContentJson(ImageTagResponse.class);
     return response.getAuto();
   }
 
@@ -298,12 +356,12 @@ public class FileLink {
       throws ValidationException, IOException, PolicySignatureException,
       ResourceNotFoundException, InvalidParameterException, InternalException {
 
+    Security security = getSecurity();
     if (security == null) {
       throw new ValidationException("Security must be set in order to tag an image");
     }
 
-    ImageTransform transform = new ImageTransform(this);
-    transform.addTask(new ImageTransformTask("sfw"));
+    ImageTransform transform = new ImageTransform(this).addTask(new ImageTransformTask("sfw"));
     JsonObject json = transform.getContentJson();
 
     return json.get("sfw").getAsBoolean();
@@ -375,6 +433,34 @@ public class FileLink {
         .observeOn(Schedulers.single());
   }
 
+  /**
+   * Asynchronously saves the file, emitting {@link Progress} updates every 2 seconds.
+   *
+   * @see #downloadWithProgressAsync(String, String, long, TimeUnit)
+   */
+  public Flowable<Progress<File>> downloadWithProgressAsync(String directory, String filename) {
+    return downloadWithProgressAsync(directory, filename, 2, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Asynchronously saves the file, emitting {@link Progress} updates at the given interval.
+   * The final {@link Progress} object will return the saved {@link File} from
+   * {@link Progress#getData()}. The download is not done until {@link Progress#getData()} returns
+   * non-null.
+   *
+   * @param directory location to save the file in
+   * @param filename  local name for the file, if null the name it was uploaded with is used
+   * @param interval  how frequently to emit progress updates
+   * @param unit      unit of the interval
+   * @see #download(String, String)
+   */
+  public Flowable<Progress<File>> downloadWithProgressAsync(String directory, String filename,
+                                                            long interval, TimeUnit unit) {
+    Download download = new Download(handle, securityProvider, fsService, directory, filename,
+        interval, unit);
+    return download.runAsync();
+  }
+
   /**
    * Asynchronously replace the content of an existing file handle. Requires security to be set.
    * Does not update the filename or MIME type.
@@ -444,8 +530,15 @@ public class FileLink {
     return handle;
   }
 
+  /**
+   * Returns the current security, null if security isn't set.
+   */
   public Security getSecurity() {
-    return security;
+    return securityProvider != null ? securityProvider.getSecurity() : null;
+  }
+
+  public SecurityProvider getSecurityProvider() {
+    return securityProvider;
   }
 
   public FsService getFsService() {
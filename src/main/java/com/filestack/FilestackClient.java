@@ -7,15 +7,22 @@ import com.filestack.errors.ResourceNotFoundException;
 import com.filestack.errors.ValidationException;
 import com.filestack.transforms.ImageTransform;
 import com.filestack.util.FsService;
+import com.filestack.util.NetworkingContext;
 import com.filestack.util.Upload;
 import com.filestack.util.Util;
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.functions.Action;
+import io.reactivex.schedulers.Schedulers;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.Call;
 
 /** Uploads new files. */
 public class FilestackClient {
   private String apiKey;
-  private Security security;
+  private SecurityProvider securityProvider;
 
   private FsService fsService;
   private Integer delayBase = 2;
@@ -37,7 +44,7 @@ public class FilestackClient {
    */
   public FilestackClient(String apiKey, Security security) {
     this.apiKey = apiKey;
-    this.security = security;
+    this.securityProvider = security;
     this.fsService = new FsService();
   }
 
@@ -48,8 +55,9 @@ public class FilestackClient {
    */
   public static class Builder {
     private String apiKey;
-    private Security security;
+    private SecurityProvider securityProvider;
     private FsService fsService;
+    private NetworkingContext networkingContext;
     private Integer delayBase;
 
     public Builder apiKey(String apiKey) {
@@ -58,7 +66,15 @@ public class FilestackClient {
     }
 
     public Builder security(Security security) {
-      this.security = security;
+      this.securityProvider = security;
+      return this;
+    }
+
+    /**
+     * Set a provider to get the security from for each request, instead of a fixed pair.
+     */
+    public Builder securityProvider(SecurityProvider securityProvider) {
+      this.securityProvider = securityProvider;
       return this;
     }
 
@@ -67,6 +83,15 @@ public class FilestackClient {
       return this;
     }
 
+    /**
+     * Use the connection pools, dispatcher and timeouts of a context instead of the shared
+     * defaults. Ignored if a service is set.
+     */
+    public Builder networking(NetworkingContext networkingContext) {
+      this.networkingContext = networkingContext;
+      return this;
+    }
+
     public Builder delayBase(int delayBase) {
       this.delayBase = delayBase;
       return this;
@@ -78,8 +103,14 @@ public class FilestackClient {
     public FilestackClient build() {
       FilestackClient client = new FilestackClient();
       client.apiKey = apiKey;
-      client.security = security;
-      client.fsService = fsService != null ? fsService : new FsService();
+      client.securityProvider = securityProvider;
+      if (fsService != null) {
+        client.fsService = fsService;
+      } else if (networkingContext != null) {
+        client.fsService = new FsService(networkingContext);
+      } else {
+        client.fsService = new FsService();
+      }
       client.delayBase = delayBase != null ? delayBase : 2;
       return client;
     }
@@ -184,6 +215,40 @@ public class FilestackClient {
     return upload.runAsync();
   }
 
+  /**
+   * Connects to the Filestack endpoints ahead of the first request, so it doesn't wait for DNS,
+   * TCP and TLS handshakes. Connections are opened in parallel and kept in the pools of this
+   * client's networking. Optional, and failures are ignored since requests connect on their own.
+   *
+   * @param extraUrls other hosts to connect to, for example a regional S3 endpoint
+   */
+  public void warmUp(String... extraUrls) {
+    warmUpAsync(extraUrls).blockingAwait();
+  }
+
+  /**
+   * Asynchronously connects to the Filestack endpoints.
+   *
+   * @see #warmUp(String...)
+   */
+  public Completable warmUpAsync(String... extraUrls) {
+    List<Completable> connects = new ArrayList<>();
+    for (final Call call : fsService.createWarmUpCalls(extraUrls)) {
+      Completable connect = Completable
+          .fromAction(new Action() {
+            @Override
+            public void run() throws Exception {
+              // Any response means the connection is open, closing it returns it to the pool
+              call.execute().close();
+            }
+          })
+          .subscribeOn(Schedulers.io())
+          .onErrorComplete();
+      connects.add(connect);
+    }
+    return Completable.merge(connects).observeOn(Schedulers.single());
+  }
+
   /**
    * Creates an {@link ImageTransform} object for this file.
    * A transformation call isn't made directly by this method.
@@ -198,8 +263,15 @@ public class FilestackClient {
     return apiKey;
   }
 
+  /**
+   * Returns the current security, null if security isn't set.
+   */
   public Security getSecurity() {
-    return security;
+    return securityProvider != null ? securityProvider.getSecurity() : null;
+  }
+
+  public SecurityProvider getSecurityProvider() {
+    return securityProvider;
   }
 
   public FsService getFsService() {
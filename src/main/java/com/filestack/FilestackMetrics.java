@@ -0,0 +1,61 @@
+package com.filestack;
+
+import com.filestack.util.HttpMetrics;
+
+/**
+ * Receives counts and durations from uploads, downloads, transforms and their retries, to report
+ * to a monitoring system. Set it on a {@link com.filestack.util.NetworkingContext} and every
+ * client and file link using the context reports to it. Methods are called on the threads doing
+ * the work, so implementations must be thread-safe and shouldn't block.
+ *
+ * @see NoOpMetrics
+ * @see InMemoryMetrics
+ */
+public interface FilestackMetrics extends HttpMetrics {
+
+  /** Caches that report hits and misses. */
+  enum Cache {
+    /** Content of transformations, see {@link com.filestack.transforms.TransformCache}. */
+    TRANSFORM,
+    /** Blocks of files read through {@link com.filestack.util.RangeChannel}. */
+    RANGE_BLOCK
+  }
+
+  /** Called when a chunk or part of an upload is accepted by S3. */
+  void bytesSent(long bytes);
+
+  /** Called when a download or range request has been read. */
+  void bytesReceived(long bytes);
+
+  /**
+   * Called when all the chunks of a part have been uploaded.
+   *
+   * @param nanos        time taken to upload the part, including retries
+   * @param pendingParts parts of the same upload that aren't finished yet
+   */
+  void partUploaded(long nanos, int pendingParts);
+
+  /** Called when intelligent ingestion reduces the chunk size after a failure. */
+  void chunkSizeChanged(int oldSize, int newSize);
+
+  /** Called when a request is retried after a network failure. */
+  void networkRetry();
+
+  /** Called when a request is retried after an error response. */
+  void serverRetry();
+
+  /** Called when content is found in a cache. */
+  void cacheHit(Cache cache);
+
+  /** Called when content isn't found in a cache and has to be requested. */
+  void cacheMiss(Cache cache);
+
+  /**
+   * Called when a CDN read finishes while reads are hedged.
+   *
+   * @param hedged   true if a second request was sent because the first was slow
+   * @param hedgeWon true if the second request answered first
+   * @see com.filestack.util.HedgePolicy
+   */
+  void hedgedRead(boolean hedged, boolean hedgeWon);
+}
@@ -0,0 +1,181 @@
+package com.filestack;
+
+import com.filestack.util.HttpEndpoint;
+import com.filestack.util.HttpPhase;
+import com.filestack.util.HttpTimings;
+import com.filestack.util.LatencyHistogram;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps metrics in memory as counters and {@link LatencyHistogram histograms}, to read
+ * periodically or expose through another system. Recording never locks or allocates.
+ * Safe to share between threads.
+ */
+public class InMemoryMetrics implements FilestackMetrics {
+  private final Ticker ticker;
+  private final long created;
+
+  private final HttpTimings httpTimings = new HttpTimings();
+  private final LatencyHistogram partDurations = new LatencyHistogram();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+  private final AtomicLong chunkSizeChanges = new AtomicLong();
+  private final AtomicInteger chunkSize = new AtomicInteger();
+  private final AtomicInteger pendingParts = new AtomicInteger();
+  private final AtomicLong networkRetries = new AtomicLong();
+  private final AtomicLong serverRetries = new AtomicLong();
+  private final AtomicLongArray cacheHits = new AtomicLongArray(Cache.values().length);
+  private final AtomicLongArray cacheMisses = new AtomicLongArray(Cache.values().length);
+  private final AtomicLong hedgeableReads = new AtomicLong();
+  private final AtomicLong hedgedReads = new AtomicLong();
+  private final AtomicLong hedgesWon = new AtomicLong();
+
+  /** Constructs new instance with all metrics at 0. */
+  public InMemoryMetrics() {
+    this(Ticker.systemTicker());
+  }
+
+  InMemoryMetrics(Ticker ticker) {
+    this.ticker = ticker;
+    this.created = ticker.read();
+  }
+
+  @Override
+  public void recordHttpPhase(HttpEndpoint endpoint, HttpPhase phase, long nanos) {
+    httpTimings.recordHttpPhase(endpoint, phase, nanos);
+  }
+
+  @Override
+  public void bytesSent(long bytes) {
+    bytesSent.addAndGet(bytes);
+  }
+
+  @Override
+  public void bytesReceived(long bytes) {
+    bytesReceived.addAndGet(bytes);
+  }
+
+  @Override
+  public void partUploaded(long nanos, int pendingParts) {
+    partDurations.record(nanos);
+    this.pendingParts.set(pendingParts);
+  }
+
+  @Override
+  public void chunkSizeChanged(int oldSize, int newSize) {
+    chunkSizeChanges.incrementAndGet();
+    chunkSize.set(newSize);
+  }
+
+  @Override
+  public void networkRetry() {
+    networkRetries.incrementAndGet();
+  }
+
+  @Override
+  public void serverRetry() {
+    serverRetries.incrementAndGet();
+  }
+
+  @Override
+  public void cacheHit(Cache cache) {
+    cacheHits.incrementAndGet(cache.ordinal());
+  }
+
+  @Override
+  public void cacheMiss(Cache cache) {
+    cacheMisses.incrementAndGet(cache.ordinal());
+  }
+
+  @Override
+  public void hedgedRead(boolean hedged, boolean hedgeWon) {
+    hedgeableReads.incrementAndGet();
+    if (hedged) {
+      hedgedReads.incrementAndGet();
+    }
+    if (hedgeWon) {
+      hedgesWon.incrementAndGet();
+    }
+  }
+
+  /** Returns the histogram of a phase for requests to an endpoint. */
+  public LatencyHistogram getHttpHistogram(HttpEndpoint endpoint, HttpPhase phase) {
+    return httpTimings.getHistogram(endpoint, phase);
+  }
+
+  /** Returns the histogram of how long parts took to upload. */
+  public LatencyHistogram getPartDurations() {
+    return partDurations;
+  }
+
+  /** Returns the mean number of parts uploaded per second since this instance was created. */
+  public double getPartsPerSecond() {
+    long elapsed = ticker.read() - created;
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return partDurations.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  public long getChunkSizeChanges() {
+    return chunkSizeChanges.get();
+  }
+
+  /** Returns the chunk size after the last change, 0 if it hasn't changed. */
+  public int getChunkSize() {
+    return chunkSize.get();
+  }
+
+  /** Returns the parts still waiting in the upload that last finished a part. */
+  public int getPendingParts() {
+    return pendingParts.get();
+  }
+
+  public long getNetworkRetries() {
+    return networkRetries.get();
+  }
+
+  public long getServerRetries() {
+    return serverRetries.get();
+  }
+
+  public long getCacheHits(Cache cache) {
+    return cacheHits.get(cache.ordinal());
+  }
+
+  public long getCacheMisses(Cache cache) {
+    return cacheMisses.get(cache.ordinal());
+  }
+
+  public long getHedgedReads() {
+    return hedgedReads.get();
+  }
+
+  public long getHedgesWon() {
+    return hedgesWon.get();
+  }
+
+  /** Returns the fraction of CDN reads that were hedged, 0 if there are none. */
+  public double getHedgeRate() {
+    long reads = hedgeableReads.get();
+    return reads == 0 ? 0 : hedgedReads.get() / (double) reads;
+  }
+
+  /** Returns the fraction of hedged reads where the hedge answered first, 0 if there are none. */
+  public double getHedgeWinRate() {
+    long hedged = hedgedReads.get();
+    return hedged == 0 ? 0 : hedgesWon.get() / (double) hedged;
+  }
+}
@@ -0,0 +1,41 @@
+package com.filestack;
+
+import com.filestack.util.HttpEndpoint;
+import com.filestack.util.HttpPhase;
+
+/** Ignores all metrics. Used when none are set, so reporting costs only an empty call. */
+public final class NoOpMetrics implements FilestackMetrics {
+  public static final NoOpMetrics INSTANCE = new NoOpMetrics();
+
+  private NoOpMetrics() {}
+
+  @Override
+  public void recordHttpPhase(HttpEndpoint endpoint, HttpPhase phase, long nanos) {}
+
+  @Override
+  public void bytesSent(long bytes) {}
+
+  @Override
+  public void bytesReceived(long bytes) {}
+
+  @Override
+  public void partUploaded(long nanos, int pendingParts) {}
+
+  @Override
+  public void chunkSizeChanged(int oldSize, int newSize) {}
+
+  @Override
+  public void networkRetry() {}
+
+  @Override
+  public void serverRetry() {}
+
+  @Override
+  public void cacheHit(Cache cache) {}
+
+  @Override
+  public void cacheMiss(Cache cache) {}
+
+  @Override
+  public void hedgedRead(boolean hedged, boolean hedgeWon) {}
+}
@@ -1,6 +1,7 @@
 package com.filestack;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -19,6 +20,9 @@ public class Policy {
   public static final String CALL_REMOVE = "remove";
   public static final String CALL_EXIF = "exif";
 
+  // Seconds, so a small clock difference doesn't fail requests the server would allow
+  private static final long EXPIRY_LEEWAY = 60;
+
   private Long expiry;
   private String[] call;
   private String handle;
@@ -32,6 +36,148 @@ public class Policy {
 
   }
 
+  /**
+   * Checks if the policy allows an operation without making a request. URL, path and container
+   * rules are left to the server. Expiry allows for some clock difference with the server.
+   *
+   * @param call   one of the call constants, null to skip checking the call
+   * @param handle handle the operation acts on, null if none
+   * @param size   bytes to upload, -1 if not an upload
+   * @param now    current UNIX time in seconds
+   * @return description of the first rule the operation breaks, null if none
+   */
+  String findViolation(String call, String handle, long size, long now) {
+    if (expiry != null && now > expiry + EXPIRY_LEEWAY) {
+      return "Policy expired at " + expiry;
+    }
+    if (call != null && this.call != null && !Arrays.asList(this.call).contains(call)) {
+      return "Policy doesn't allow call " + call;
+    }
+    if (handle != null && this.handle != null && !handle.equals(this.handle)) {
+      return "Policy doesn't allow handle " + handle;
+    }
+    if (size != -1 && maxSize != null && size > maxSize) {
+      return "Size " + size + " is over policy max size " + maxSize;
+    }
+    if (size != -1 && minSize != null && size < minSize) {
+      return "Size " + size + " is under policy min size " + minSize;
+    }
+    return null;
+  }
+
+  /**
+   * Writes the policy as JSON without reflection. Output is the same as Gson's, including its
+   * default escaping of HTML characters, so signatures don't change.
+   */
+  String toJson() {
+    StringBuilder builder = new StringBuilder(128);
+    builder.append('{');
+    if (appendName(builder, "expiry", expiry)) {
+      builder.append(expiry.longValue());
+    }
+    if (appendName(builder, "call", call)) {
+      builder.append('[');
+      for (int i = 0; i < call.length; i++) {
+        if (i != 0) {
+          builder.append(',');
+        }
+        appendString(builder, call[i]);
+      }
+      builder.append(']');
+    }
+    if (appendName(builder, "handle", handle)) {
+      appendString(builder, handle);
+    }
+    if (appendName(builder, "url", url)) {
+      appendString(builder, url);
+    }
+    if (appendName(builder, "maxSize", maxSize)) {
+      builder.append(maxSize.intValue());
+    }
+    if (appendName(builder, "minSize", minSize)) {
+      builder.append(minSize.intValue());
+    }
+    if (appendName(builder, "path", path)) {
+      appendString(builder, path);
+    }
+    if (appendName(builder, "container", container)) {
+      appendString(builder, container);
+    }
+    return builder.append('}').toString();
+  }
+
+  /** Appends a field name unless the value is null, Gson leaves those fields out. */
+  private static boolean appendName(StringBuilder builder, String name, Object value) {
+    if (value == null) {
+      return false;
+    }
+    if (builder.length() > 1) {
+      builder.append(',');
+    }
+    builder.append('"').append(name).append("\":");
+    return true;
+  }
+
+  /** Appends a quoted string, escaped the same way Gson does. */
+  private static void appendString(StringBuilder builder, String value) {
+    if (value == null) {
+      builder.append("null");
+      return;
+    }
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          builder.append("\\\"");
+          break;
+        case '\\':
+          builder.append("\\\\");
+          break;
+        case '\t':
+          builder.append("\\t");
+          break;
+        case '\b':
+          builder.append("\\b");
+          break;
+        case '\n':
+          builder.append("\\n");
+          break;
+        case '\r':
+          builder.append("\\r");
+          break;
+        case '\f':
+          builder.append("\\f");
+          break;
+        case '<':
+        case '>':
+        case '&':
+        case '=':
+        case '\'':
+        case '\u2028':
+        case '\u2029':
+          appendUnicodeEscape(builder, c);
+          break;
+        default:
+          if (c < 0x20) {
+            appendUnicodeEscape(builder, c);
+          } else {
+            builder.append(c);
+          }
+      }
+    }
+    builder.append('"');
+  }
+
+  private static void appendUnicodeEscape(StringBuilder builder, char c) {
+    builder.append("\\u");
+    String hex = Integer.toHexString(c);
+    for (int i = hex.length(); i < 4; i++) {
+      builder.append('0');
+    }
+    builder.append(hex);
+  }
+
   // Javadoc comments adapted from
   // https://www.filestack.com/docs/security/creating-policies
 
@@ -0,0 +1,117 @@
+package com.filestack;
+
+import com.filestack.errors.FilestackRuntimeException;
+import com.filestack.errors.InvalidArgumentException;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs {@link Policy Policies} with one app secret, for servers that create many policies.
+ * Produces the same policy and signature as {@link Security#createNew(Policy, String)}, but the
+ * HMAC is set up once per thread and policies are serialized without reflection. Signatures of
+ * recently signed, identical policies are reused.
+ * Instances are safe to share between threads. Don't include your app secret in client apps.
+ */
+public class PolicySigner {
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int DEFAULT_CACHE_SIZE = 1024;
+
+  private final SecretKeySpec key;
+  private final int cacheSize;
+
+  private final ThreadLocal<Mac> mac = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      return createMac(key);
+    }
+  };
+
+  private final LinkedHashMap<String, Security> cache;
+
+  /**
+   * Constructs new instance that reuses up to 1024 recent signatures.
+   *
+   * @param appSecret secret taken from developer portal
+   */
+  public PolicySigner(String appSecret) {
+    this(appSecret, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs new instance.
+   *
+   * @param appSecret secret taken from developer portal
+   * @param cacheSize number of recent signatures to reuse, 0 to sign every policy
+   * @throws InvalidArgumentException if the secret is empty or the cache size is negative
+   */
+  public PolicySigner(String appSecret, int cacheSize) {
+    if (appSecret == null || appSecret.isEmpty()) {
+      throw new InvalidArgumentException("App secret can't be empty");
+    }
+    if (cacheSize < 0) {
+      throw new InvalidArgumentException("Cache size can't be negative");
+    }
+    this.key = new SecretKeySpec(appSecret.getBytes(Charsets.UTF_8), ALGORITHM);
+    this.cacheSize = cacheSize;
+    this.cache = new LinkedHashMap<String, Security>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Security> eldest) {
+        return size() > PolicySigner.this.cacheSize;
+      }
+    };
+  }
+
+  private static Mac createMac(SecretKeySpec key) {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      // Every Java platform is required to support HmacSHA256
+      throw new FilestackRuntimeException("Can't create " + ALGORITHM, e);
+    }
+  }
+
+  /**
+   * Encodes and signs a policy.
+   *
+   * @param policy configured {@link Policy Policy} object
+   * @return policy and signature pair
+   */
+  public Security sign(Policy policy) {
+    String jsonPolicy = policy.toJson();
+
+    if (cacheSize != 0) {
+      synchronized (cache) {
+        Security security = cache.get(jsonPolicy);
+        if (security != null) {
+          return security;
+        }
+      }
+    }
+
+    String encodedPolicy = BaseEncoding.base64Url().encode(jsonPolicy.getBytes(Charsets.UTF_8));
+    byte[] hash = mac.get().doFinal(encodedPolicy.getBytes(Charsets.UTF_8));
+
+    char[] signature = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      signature[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+      signature[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+    }
+
+    Security security = Security.fromPolicy(encodedPolicy, new String(signature), policy);
+    if (cacheSize != 0) {
+      synchronized (cache) {
+        cache.put(jsonPolicy, security);
+      }
+    }
+    return security;
+  }
+}
@@ -0,0 +1,127 @@
+package com.filestack;
+
+import com.filestack.errors.InvalidArgumentException;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a policy and signature pair valid for long running processes. A new policy is created
+ * and signed in the background before the current one expires, then swapped in atomically.
+ * Clients, file links and transforms created with this provider use the current pair for every
+ * request, including the remaining requests of uploads and other operations already running.
+ * Reading the pair never blocks. Instances are safe to share between threads.
+ *
+ * <p>Policies are built from a {@link Policy.Builder} with a new expiry each time. Don't change
+ * the builder after passing it in. If a background refresh fails, the current pair is kept and
+ * the refresh is tried again after a tenth of the refresh period, up to a minute, and then at the
+ * next period. Close the provider to stop refreshing.
+ */
+public class RefreshingSecurityProvider implements SecurityProvider, Closeable {
+  // Refresh when this fraction of a policy's lifetime has passed
+  private static final double REFRESH_AT = 0.75;
+  private static final long MAX_RETRY_DELAY = 60 * 1000; // milliseconds
+
+  private final PolicySigner signer;
+  private final Policy.Builder policyBuilder;
+  private final long lifetime; // milliseconds
+  private final Scheduler scheduler;
+  private final long retryDelay; // milliseconds
+  private final Disposable refresher;
+
+  private volatile Security security;
+  private volatile boolean closed;
+
+  /**
+   * Constructs new instance and signs the first policy.
+   *
+   * @param signer        signs each new policy
+   * @param policyBuilder configured policy, its expiry is replaced on every refresh
+   * @param lifetime      how long each policy is valid for, refreshed at 75% of it
+   * @param unit          unit of lifetime
+   * @throws InvalidArgumentException if the lifetime isn't at least one second
+   */
+  public RefreshingSecurityProvider(PolicySigner signer, Policy.Builder policyBuilder,
+                                    long lifetime, TimeUnit unit) {
+    this(signer, policyBuilder, lifetime, unit, Schedulers.computation());
+  }
+
+  RefreshingSecurityProvider(PolicySigner signer, Policy.Builder policyBuilder, long lifetime,
+                             TimeUnit unit, Scheduler scheduler) {
+    if (unit.toSeconds(lifetime) < 1) {
+      throw new InvalidArgumentException("Policy lifetime must be at least one second");
+    }
+    this.signer = signer;
+    this.policyBuilder = policyBuilder;
+    this.lifetime = unit.toMillis(lifetime);
+    this.scheduler = scheduler;
+
+    refresh();
+
+    long period = (long) (this.lifetime * REFRESH_AT);
+    this.retryDelay = Math.min(period / 10, MAX_RETRY_DELAY);
+    this.refresher = scheduler.schedulePeriodicallyDirect(new Runnable() {
+      @Override
+      public void run() {
+        if (!tryRefresh()) {
+          retryRefresh();
+        }
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Security getSecurity() {
+    return security;
+  }
+
+  /**
+   * Creates and signs a new policy now, without waiting for the current one to near expiry.
+   */
+  public void refresh() {
+    // Only refreshes lock, so an older pair can't replace a newer one and the builder, which
+    // isn't thread-safe, is used by one thread at a time
+    synchronized (policyBuilder) {
+      long now = scheduler.now(TimeUnit.MILLISECONDS);
+      Policy policy = policyBuilder.expiry(TimeUnit.MILLISECONDS.toSeconds(now + lifetime)).build();
+      security = signer.sign(policy);
+    }
+  }
+
+  /**
+   * Refreshes in the background. Failures are caught, since throwing would cancel the periodic
+   * refresh for good, and the current pair is kept.
+   *
+   * @return true if refreshed or closed, false if it failed
+   */
+  private boolean tryRefresh() {
+    if (closed) {
+      return true;
+    }
+    try {
+      refresh();
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /** Tries a failed background refresh once more, before the next period. */
+  private void retryRefresh() {
+    scheduler.scheduleDirect(new Runnable() {
+      @Override
+      public void run() {
+        tryRefresh();
+      }
+    }, retryDelay, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops refreshing. The current pair is still returned until it expires. */
+  @Override
+  public void close() {
+    closed = true;
+    refresher.dispose();
+  }
+}
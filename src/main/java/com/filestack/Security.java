@@ -1,37 +1,30 @@
 package com.filestack;
 
-import com.google.common.base.Charsets;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hashing;
-import com.google.common.io.BaseEncoding;
-import com.google.gson.Gson;
+import com.filestack.errors.PolicySignatureException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Holds a {@link Policy} and its signature.
+ * Instances are immutable, use a {@link RefreshingSecurityProvider} to replace expiring policies.
  * @see <a href="https://www.filestack.com/docs/security">Filestack Security Docs</a>
  */
-public class Security {
+public class Security implements SecurityProvider {
   private String policy;
   private String signature;
+  private Policy decodedPolicy;
 
   /**
    * Creates an instance from a {@link Policy Policy} object and app secret.
    * Use this to create new policy and signature pairs.
    * Don't include your app secret in client apps.
    * Use the {@link #fromExisting(String, String) fromExisting} method instead in that case.
+   * To create many policies with the same secret, use a {@link PolicySigner} instead.
    *
    * @param policy    Configured {@link Policy Policy} object
    * @param appSecret Secret taken from developer portal
    */
   public static Security createNew(Policy policy, String appSecret) {
-    Gson gson = new Gson();
-    HashFunction hashFunction = Hashing.hmacSha256(appSecret.getBytes(Charsets.UTF_8));
-
-    String jsonPolicy = gson.toJson(policy);
-    String encodedPolicy = BaseEncoding.base64Url().encode(jsonPolicy.getBytes(Charsets.UTF_8));
-    String signature = hashFunction.hashString(encodedPolicy, Charsets.UTF_8).toString();
-
-    return new Security(encodedPolicy, signature);
+    return new PolicySigner(appSecret, 0).sign(policy);
   }
 
   /**
@@ -50,6 +43,42 @@ public class Security {
     this.signature = signature;
   }
 
+  /** Creates an instance that remembers its policy, so it can be checked locally. */
+  static Security fromPolicy(String encodedPolicy, String signature, Policy decodedPolicy) {
+    Security security = new Security(encodedPolicy, signature);
+    security.decodedPolicy = decodedPolicy;
+    return security;
+  }
+
+  /**
+   * Checks that the policy allows an operation before making a request for it, so an operation
+   * that would be rejected fails without using the network. Only pairs created from a
+   * {@link Policy} by {@link #createNew(Policy, String)} or a {@link PolicySigner} are checked,
+   * others are left to the server.
+   *
+   * @param call   one of the {@link Policy} call constants, null to skip checking the call
+   * @param handle handle the operation acts on, null if none
+   * @param size   bytes to upload, -1 if not an upload
+   * @throws PolicySignatureException if the policy doesn't allow the operation
+   */
+  public void checkPolicy(String call, String handle, long size)
+      throws PolicySignatureException {
+    if (decodedPolicy == null) {
+      return;
+    }
+    long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    String violation = decodedPolicy.findViolation(call, handle, size, now);
+    if (violation != null) {
+      throw new PolicySignatureException(violation);
+    }
+  }
+
+  /** Returns this instance, it's never replaced. */
+  @Override
+  public Security getSecurity() {
+    return this;
+  }
+
   public String getPolicy() {
     return policy;
   }
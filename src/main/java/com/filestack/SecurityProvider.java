@@ -0,0 +1,17 @@
+package com.filestack;
+
+/**
+ * Supplies the {@link Security} to use for a request. Clients, file links and transforms ask for
+ * it each time they make a request, so a provider can replace the policy and signature pair
+ * while they're in use. {@link Security} is a provider that always returns itself.
+ *
+ * @see RefreshingSecurityProvider
+ */
+public interface SecurityProvider {
+
+  /**
+   * Returns the current policy and signature pair. Called for every request, so this should
+   * return quickly and not block.
+   */
+  Security getSecurity();
+}
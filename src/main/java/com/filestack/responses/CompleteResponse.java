@@ -1,6 +1,13 @@
 package com.filestack.responses;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
 /** Response from multipart complete endpoint. */
+@JsonAdapter(CompleteResponse.Adapter.class)
 public class CompleteResponse {
   private String url;
   private String handle;
@@ -27,4 +34,54 @@ public class CompleteResponse {
   public String getMimetype() {
     return mimetype;
   }
+
+  /** Streaming adapter, avoids reflection when parsing responses. */
+  static final class Adapter extends TypeAdapter<CompleteResponse> {
+    @Override
+    public void write(JsonWriter out, CompleteResponse value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("url").value(value.url);
+      out.name("handle").value(value.handle);
+      out.name("filename").value(value.filename);
+      out.name("size").value(value.size);
+      out.name("mimetype").value(value.mimetype);
+      out.endObject();
+    }
+
+    @Override
+    public CompleteResponse read(JsonReader in) throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      CompleteResponse response = new CompleteResponse();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "url":
+            response.url = JsonReaders.nextString(in);
+            break;
+          case "handle":
+            response.handle = JsonReaders.nextString(in);
+            break;
+          case "filename":
+            response.filename = JsonReaders.nextString(in);
+            break;
+          case "size":
+            response.size = JsonReaders.nextLong(in);
+            break;
+          case "mimetype":
+            response.mimetype = JsonReaders.nextString(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+  }
 }
@@ -1,5 +1,10 @@
 package com.filestack.responses;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -7,6 +12,7 @@ import java.util.Map;
  *
  * @see <a href="https://www.filestack.com/docs/tagging"></a>
  */
+@JsonAdapter(ImageTagResponse.Adapter.class)
 public class ImageTagResponse {
   Tags tags;
 
@@ -22,4 +28,73 @@ public class ImageTagResponse {
   public Map<String, Integer> getUser() {
     return tags.user;
   }
+
+  /** Streaming adapter, reads the tag maps without building a JSON tree first. */
+  static final class Adapter extends TypeAdapter<ImageTagResponse> {
+    @Override
+    public void write(JsonWriter out, ImageTagResponse value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      if (value.tags != null) {
+        out.name("tags").beginObject();
+        writeMap(out, "auto", value.tags.auto);
+        writeMap(out, "user", value.tags.user);
+        out.endObject();
+      }
+      out.endObject();
+    }
+
+    private static void writeMap(JsonWriter out, String name, Map<String, Integer> map)
+        throws IOException {
+      out.name(name);
+      if (map == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      for (Map.Entry<String, Integer> entry : map.entrySet()) {
+        out.name(entry.getKey()).value(entry.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public ImageTagResponse read(JsonReader in) throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      ImageTagResponse response = new ImageTagResponse();
+      in.beginObject();
+      while (in.hasNext()) {
+        if (!in.nextName().equals("tags")) {
+          in.skipValue();
+          continue;
+        }
+        if (JsonReaders.skipNull(in)) {
+          continue;
+        }
+        Tags tags = response.new Tags();
+        in.beginObject();
+        while (in.hasNext()) {
+          switch (in.nextName()) {
+            case "auto":
+              tags.auto = JsonReaders.nextIntMap(in);
+              break;
+            case "user":
+              tags.user = JsonReaders.nextIntMap(in);
+              break;
+            default:
+              in.skipValue();
+          }
+        }
+        in.endObject();
+        response.tags = tags;
+      }
+      in.endObject();
+      return response;
+    }
+  }
 }
@@ -0,0 +1,52 @@
+package com.filestack.responses;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helpers for the streaming response adapters. Like Gson's reflective adapters, JSON nulls read
+ * as null or 0 and numbers and strings are accepted for each other.
+ */
+final class JsonReaders {
+
+  private JsonReaders() {}
+
+  /** Returns true and consumes the value if it's null. */
+  static boolean skipNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  static String nextString(JsonReader in) throws IOException {
+    return skipNull(in) ? null : in.nextString();
+  }
+
+  static int nextInt(JsonReader in) throws IOException {
+    return skipNull(in) ? 0 : in.nextInt();
+  }
+
+  static long nextLong(JsonReader in) throws IOException {
+    return skipNull(in) ? 0 : in.nextLong();
+  }
+
+  /** Reads an object of integers, keeping the order of the keys. */
+  static Map<String, Integer> nextIntMap(JsonReader in) throws IOException {
+    if (skipNull(in)) {
+      return null;
+    }
+    LinkedHashMap<String, Integer> map = new LinkedHashMap<>();
+    in.beginObject();
+    while (in.hasNext()) {
+      String key = in.nextName();
+      map.put(key, skipNull(in) ? null : in.nextInt());
+    }
+    in.endObject();
+    return map;
+  }
+}
@@ -1,12 +1,18 @@
 package com.filestack.responses;
 
 import com.filestack.util.Util;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import okhttp3.RequestBody;
 
 /** Response object from multipart start endpoint. */
+@JsonAdapter(StartResponse.Adapter.class)
 public class StartResponse {
   private String uri;
   private String region;
@@ -31,4 +37,54 @@ public class StartResponse {
   public boolean isIntelligent() {
     return uploadType != null && uploadType.equals("intelligent_ingestion");
   }
+
+  /** Streaming adapter, avoids reflection when parsing responses. */
+  static final class Adapter extends TypeAdapter<StartResponse> {
+    @Override
+    public void write(JsonWriter out, StartResponse value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("uri").value(value.uri);
+      out.name("region").value(value.region);
+      out.name("location_url").value(value.locationUrl);
+      out.name("upload_id").value(value.uploadId);
+      out.name("upload_type").value(value.uploadType);
+      out.endObject();
+    }
+
+    @Override
+    public StartResponse read(JsonReader in) throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      StartResponse response = new StartResponse();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "uri":
+            response.uri = JsonReaders.nextString(in);
+            break;
+          case "region":
+            response.region = JsonReaders.nextString(in);
+            break;
+          case "location_url":
+            response.locationUrl = JsonReaders.nextString(in);
+            break;
+          case "upload_id":
+            response.uploadId = JsonReaders.nextString(in);
+            break;
+          case "upload_type":
+            response.uploadType = JsonReaders.nextString(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+  }
 }
@@ -1,6 +1,13 @@
 package com.filestack.responses;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
 /** Response object from transform store endpoint. */
+@JsonAdapter(StoreResponse.Adapter.class)
 public class StoreResponse {
   String url;
   String filename;
@@ -44,4 +51,66 @@ public class StoreResponse {
   public int getSize() {
     return size;
   }
+
+  /** Streaming adapter, avoids reflection when parsing responses. */
+  static final class Adapter extends TypeAdapter<StoreResponse> {
+    @Override
+    public void write(JsonWriter out, StoreResponse value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("url").value(value.url);
+      out.name("filename").value(value.filename);
+      out.name("type").value(value.type);
+      out.name("container").value(value.container);
+      out.name("key").value(value.key);
+      out.name("width").value(value.width);
+      out.name("height").value(value.height);
+      out.name("size").value(value.size);
+      out.endObject();
+    }
+
+    @Override
+    public StoreResponse read(JsonReader in) throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      StoreResponse response = new StoreResponse();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "url":
+            response.url = JsonReaders.nextString(in);
+            break;
+          case "filename":
+            response.filename = JsonReaders.nextString(in);
+            break;
+          case "type":
+            response.type = JsonReaders.nextString(in);
+            break;
+          case "container":
+            response.container = JsonReaders.nextString(in);
+            break;
+          case "key":
+            response.key = JsonReaders.nextString(in);
+            break;
+          case "width":
+            response.width = JsonReaders.nextInt(in);
+            break;
+          case "height":
+            response.height = JsonReaders.nextInt(in);
+            break;
+          case "size":
+            response.size = JsonReaders.nextInt(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+  }
 }
@@ -1,11 +1,16 @@
 package com.filestack.responses;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
-
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 /** Response object from multipart upload endpoint. */
+@JsonAdapter(UploadResponse.Adapter.class)
 public class UploadResponse {
   private String url;
   @SerializedName("location_url")
@@ -49,4 +54,86 @@ public class UploadResponse {
     @SerializedName("x-amz-date")
     private String date;
   }
+
+  /** Streaming adapter, avoids reflection when parsing responses. */
+  static final class Adapter extends TypeAdapter<UploadResponse> {
+    @Override
+    public void write(JsonWriter out, UploadResponse value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("url").value(value.url);
+      out.name("location_url").value(value.locationUrl);
+      if (value.s3Headers != null) {
+        out.name("headers").beginObject();
+        out.name("Authorization").value(value.s3Headers.auth);
+        out.name("x-amz-acl").value(value.s3Headers.acl);
+        out.name("Content-MD5").value(value.s3Headers.md5);
+        out.name("x-amz-content-sha256").value(value.s3Headers.sha256);
+        out.name("x-amz-date").value(value.s3Headers.date);
+        out.endObject();
+      }
+      out.endObject();
+    }
+
+    @Override
+    public UploadResponse read(JsonReader in) throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      UploadResponse response = new UploadResponse();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "url":
+            response.url = JsonReaders.nextString(in);
+            break;
+          case "location_url":
+            response.locationUrl = JsonReaders.nextString(in);
+            break;
+          case "headers":
+            response.s3Headers = readHeaders(in, response);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return response;
+    }
+
+    private static S3Headers readHeaders(JsonReader in, UploadResponse response)
+        throws IOException {
+      if (JsonReaders.skipNull(in)) {
+        return null;
+      }
+      S3Headers headers = response.new S3Headers();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "Authorization":
+            headers.auth = JsonReaders.nextString(in);
+            break;
+          case "x-amz-acl":
+            headers.acl = JsonReaders.nextString(in);
+            break;
+          case "Content-MD5":
+            headers.md5 = JsonReaders.nextString(in);
+            break;
+          case "x-amz-content-sha256":
+            headers.sha256 = JsonReaders.nextString(in);
+            break;
+          case "x-amz-date":
+            headers.date = JsonReaders.nextString(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return headers;
+    }
+  }
 }
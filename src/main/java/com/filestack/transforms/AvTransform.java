@@ -8,17 +8,18 @@ import com.filestack.errors.InvalidParameterException;
 import com.filestack.errors.PolicySignatureException;
 import com.filestack.errors.ResourceNotFoundException;
 import com.filestack.transforms.tasks.AvTransformOptions;
-import com.filestack.util.Util;
 import com.google.gson.JsonObject;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link Transform Transform} subclass for audio and video transformations.
  */
 public class AvTransform extends Transform {
+  AvTransformPoller poller = AvTransformPoller.getDefault();
 
   /**
    * Constructs a new instance.
@@ -36,9 +37,9 @@ public class AvTransform extends Transform {
     }
 
     if (storeOpts != null) {
-      tasks.add(TransformTask.merge("video_convert", storeOpts.getAsTask(), avOps));
+      tasks = tasks.append(TransformTask.merge("video_convert", storeOpts.getAsTask(), avOps));
     } else {
-      tasks.add(avOps);
+      tasks = tasks.append(avOps);
     }
   }
 
@@ -73,7 +74,12 @@ public class AvTransform extends Transform {
           return null;
         }
         String handle = url.split("/")[3];
-        return new FileLink(apiKey, handle, security);
+        return new FileLink.Builder()
+            .apiKey(apiKey)
+            .handle(handle)
+            .securityProvider(securityProvider)
+            .service(fsService)
+            .build();
       default:
         throw new InternalException();
     }
@@ -83,7 +89,7 @@ public class AvTransform extends Transform {
 
   /**
    * Asynchronously gets converted content as a new {@link FileLink}.
-   * Uses default 10 second polling. Use {@link #getFileLinkAsync(int)} to adjust interval.
+   * Polls at most every 10 seconds. Use {@link #getFileLinkAsync(int)} to adjust interval.
    *
    * @see #getFileLink()
    */
@@ -93,25 +99,19 @@ public class AvTransform extends Transform {
 
   /**
    * Asynchronously gets converted content as a new {@link FileLink}.
+   * Polling is shared between all conversions, so waiting doesn't hold a thread. Polls start
+   * frequent and back off, with some jitter, until they're pollInterval apart.
    *
-   * @param pollInterval how frequently to poll (in seconds)
+   * @param pollInterval longest time between polls (in seconds)
    * @see #getFileLink()
    */
-  public Single<FileLink> getFileLinkAsync(final int pollInterval) {
-    return Single.fromCallable(new Callable<FileLink>() {
+  public Single<FileLink> getFileLinkAsync(int pollInterval) {
+    return poller.poll(new Callable<FileLink>() {
       @Override
       public FileLink call() throws Exception {
-        FileLink fileLink = null;
-        while (fileLink == null) {
-          fileLink = getFileLink();
-          if (!Util.isUnitTest()) {
-            Thread.sleep(pollInterval * 1000);
-          }
-        }
-        return fileLink;
+        return getFileLink();
       }
-    })
-        .subscribeOn(Schedulers.io())
+    }, pollInterval, TimeUnit.SECONDS)
         .observeOn(Schedulers.single());
   }
 }
@@ -0,0 +1,185 @@
+package com.filestack.transforms;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls pending conversion jobs from one shared timer wheel instead of holding a sleeping thread
+ * per job. A thread is only used while a status request is in flight. Each job is checked right
+ * away, then with jittered intervals that start short and grow up to the job's max interval.
+ *
+ * <p>The wheel has a fixed number of buckets, each covering one tick. A job is put in the bucket
+ * for its deadline and is skipped until the wheel has turned enough times to reach it.
+ */
+final class AvTransformPoller {
+  private static final int WHEEL_SIZE = 512;
+  private static final long TICK_MILLIS = 100;
+  private static final long INITIAL_DELAY_MILLIS = 1000;
+  private static final double BACKOFF = 1.5;
+  private static final double JITTER = 0.2;
+
+  private static AvTransformPoller defaultPoller;
+
+  private final Scheduler timer;
+  private final Scheduler io;
+  private final long tickMillis;
+  private final long initialDelayMillis;
+  private final Random random = new Random();
+
+  private final ArrayList<ArrayList<Job<?>>> wheel = new ArrayList<>(WHEEL_SIZE);
+  private long tick;
+  private int pending;
+  private int waiting;
+  private Disposable ticker;
+
+  AvTransformPoller(Scheduler timer, Scheduler io, long tickMillis, long initialDelayMillis) {
+    this.timer = timer;
+    this.io = io;
+    this.tickMillis = tickMillis;
+    this.initialDelayMillis = initialDelayMillis;
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel.add(new ArrayList<Job<?>>());
+    }
+  }
+
+  /** Returns the poller shared by all {@link AvTransform} instances. */
+  static synchronized AvTransformPoller getDefault() {
+    if (defaultPoller == null) {
+      defaultPoller = new AvTransformPoller(Schedulers.computation(), Schedulers.io(),
+          TICK_MILLIS, INITIAL_DELAY_MILLIS);
+    }
+    return defaultPoller;
+  }
+
+  /** A pending job and its polling state. */
+  private static class Job<T> {
+    final Callable<T> check;
+    final SingleEmitter<T> emitter;
+    final long maxDelayMillis;
+    long delayMillis;
+    long deadline; // tick
+
+    Job(Callable<T> check, SingleEmitter<T> emitter, long maxDelayMillis, long delayMillis) {
+      this.check = check;
+      this.emitter = emitter;
+      this.maxDelayMillis = maxDelayMillis;
+      this.delayMillis = delayMillis;
+    }
+  }
+
+  /**
+   * Creates a {@link Single} that polls until the check returns a result. Null means the job is
+   * still pending. Exceptions from the check end polling and are passed to the Single.
+   *
+   * @param check       called to get the job's current state
+   * @param maxInterval longest time to wait between checks
+   * @param unit        unit of maxInterval
+   */
+  <T> Single<T> poll(final Callable<T> check, final long maxInterval, final TimeUnit unit) {
+    return Single.create(new SingleOnSubscribe<T>() {
+      @Override
+      public void subscribe(SingleEmitter<T> emitter) throws Exception {
+        long maxDelayMillis = Math.max(unit.toMillis(maxInterval), tickMillis);
+        long delayMillis = Math.min(initialDelayMillis, maxDelayMillis);
+        Job<T> job = new Job<>(check, emitter, maxDelayMillis, delayMillis);
+        synchronized (AvTransformPoller.this) {
+          pending++;
+        }
+        run(job);
+      }
+    });
+  }
+
+  /** Number of jobs being polled, disposed jobs are counted until their next check is due. */
+  synchronized int getPending() {
+    return pending;
+  }
+
+  /** Checks the job on the io scheduler, then completes it or puts it back on the wheel. */
+  private <T> void run(final Job<T> job) {
+    io.scheduleDirect(new Runnable() {
+      @Override
+      public void run() {
+        if (job.emitter.isDisposed()) {
+          finish();
+          return;
+        }
+        T result;
+        try {
+          result = job.check.call();
+        } catch (Throwable throwable) {
+          finish();
+          if (!job.emitter.isDisposed()) {
+            job.emitter.onError(throwable);
+          }
+          return;
+        }
+        if (result != null) {
+          finish();
+          if (!job.emitter.isDisposed()) {
+            job.emitter.onSuccess(result);
+          }
+        } else {
+          schedule(job);
+        }
+      }
+    });
+  }
+
+  private synchronized void schedule(Job<?> job) {
+    // Jitter keeps jobs started together from polling in lockstep
+    double jitter = 1 + JITTER * (2 * random.nextDouble() - 1);
+    long ticks = Math.max(1, Math.round(job.delayMillis * jitter / tickMillis));
+    job.delayMillis = Math.min(job.maxDelayMillis, (long) (job.delayMillis * BACKOFF));
+    job.deadline = tick + ticks;
+    wheel.get((int) (job.deadline % WHEEL_SIZE)).add(job);
+    waiting++;
+
+    if (ticker == null) {
+      ticker = timer.schedulePeriodicallyDirect(new Runnable() {
+        @Override
+        public void run() {
+          advance();
+        }
+      }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void finish() {
+    pending--;
+  }
+
+  /** Moves the wheel forward one tick and runs the jobs that are due. */
+  private void advance() {
+    ArrayList<Job<?>> due = new ArrayList<>();
+    synchronized (this) {
+      tick++;
+      Iterator<Job<?>> iterator = wheel.get((int) (tick % WHEEL_SIZE)).iterator();
+      while (iterator.hasNext()) {
+        Job<?> job = iterator.next();
+        if (job.deadline <= tick) {
+          iterator.remove();
+          waiting--;
+          due.add(job);
+        }
+      }
+      // Nothing left waiting on the wheel, stop ticking until a job is scheduled again
+      if (waiting == 0) {
+        ticker.dispose();
+        ticker = null;
+      }
+    }
+    for (Job<?> job : due) {
+      run(job);
+    }
+  }
+}
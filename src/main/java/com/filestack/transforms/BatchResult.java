@@ -0,0 +1,67 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+
+/**
+ * Result for a single item of a {@link BatchTransform}, along with stats for the whole batch at
+ * the time the item finished. Each item either has data or an error.
+ *
+ * @param <T> type of data returned for successful items
+ */
+public class BatchResult<T> {
+  private final FileLink source;
+  private final T data;
+  private final Throwable error;
+  private final long completed;
+  private final long failed;
+  private final long elapsed;
+
+  BatchResult(FileLink source, T data, Throwable error, long completed, long failed,
+              long elapsed) {
+    this.source = source;
+    this.data = data;
+    this.error = error;
+    this.completed = completed;
+    this.failed = failed;
+    this.elapsed = elapsed;
+  }
+
+  /** The {@link FileLink} this result was transformed from. */
+  public FileLink getSource() {
+    return source;
+  }
+
+  /** Data for a successful item, null if it failed. */
+  public T getData() {
+    return data;
+  }
+
+  /** Exception for a failed item, null if it succeeded. */
+  public Throwable getError() {
+    return error;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /** Items finished so far in the batch, including this one and any failures. */
+  public long getCompleted() {
+    return completed;
+  }
+
+  /** Items that have failed so far in the batch. */
+  public long getFailed() {
+    return failed;
+  }
+
+  /** Time since the batch started in milliseconds. */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /** Average throughput of the batch in items/second. */
+  public double getRate() {
+    return elapsed == 0 ? 0 : completed * 1000.0 / elapsed;
+  }
+}
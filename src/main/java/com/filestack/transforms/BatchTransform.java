@@ -0,0 +1,129 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.StorageOptions;
+import com.filestack.errors.InvalidArgumentException;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.Callable;
+import okhttp3.ResponseBody;
+import org.reactivestreams.Publisher;
+
+/**
+ * Applies one transformation chain to a stream of files. At most a fixed number of requests run
+ * at once and files are only pulled from the source as requests finish, so large batches don't
+ * queue up in memory. A failure only affects its own item, it's returned as a
+ * {@link BatchResult} with an error instead of ending the stream.
+ */
+public class BatchTransform {
+  private final TransformTemplate template;
+  private final Object[] values;
+  private final int concurrency;
+
+  /**
+   * Constructs new instance.
+   *
+   * @param template    chain to apply to each file
+   * @param concurrency maximum number of requests to run at once
+   * @param values      slot values for the template, the same for every file
+   * @throws InvalidArgumentException if concurrency isn't positive or the values don't match
+   */
+  public BatchTransform(TransformTemplate template, int concurrency, Object... values) {
+    if (concurrency <= 0) {
+      throw new InvalidArgumentException("Concurrency must be greater than 0");
+    }
+    // Fail now instead of once per item
+    template.tasksString(values);
+
+    this.template = template;
+    this.values = values;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Stores the result of the transformation of each file. Uses default storage options.
+   *
+   * @see #store(Flowable, StorageOptions)
+   */
+  public Flowable<BatchResult<FileLink>> store(Flowable<FileLink> fileLinks) {
+    return store(fileLinks, null);
+  }
+
+  /**
+   * Stores the result of the transformation of each file.
+   * Results are emitted in the order they complete, not the order of the source.
+   *
+   * @param fileLinks      files to transform
+   * @param storageOptions configure where and how the new files are stored
+   * @return {@link Flowable} that emits a {@link BatchResult} per file
+   */
+  public Flowable<BatchResult<FileLink>> store(Flowable<FileLink> fileLinks,
+                                               final StorageOptions storageOptions) {
+    return run(fileLinks, new Function<ImageTransform, FileLink>() {
+      @Override
+      public FileLink apply(ImageTransform transform) throws Exception {
+        return transform.store(storageOptions);
+      }
+    });
+  }
+
+  /**
+   * Returns the content of the transformation of each file.
+   * Results are emitted in the order they complete, not the order of the source.
+   * Each body must be closed after it's read.
+   *
+   * @param fileLinks files to transform
+   * @return {@link Flowable} that emits a {@link BatchResult} per file
+   */
+  public Flowable<BatchResult<ResponseBody>> getContent(Flowable<FileLink> fileLinks) {
+    return run(fileLinks, new Function<ImageTransform, ResponseBody>() {
+      @Override
+      public ResponseBody apply(ImageTransform transform) throws Exception {
+        return transform.getContent();
+      }
+    });
+  }
+
+  private <T> Flowable<BatchResult<T>> run(final Flowable<FileLink> fileLinks,
+                                           final Function<ImageTransform, T> operation) {
+    // Deferred so the stats start over for every subscription
+    return Flowable.defer(new Callable<Publisher<BatchResult<T>>>() {
+      @Override
+      public Publisher<BatchResult<T>> call() {
+        final long startTime = System.currentTimeMillis();
+        // Completed and failed counts, updated together so every result has a consistent pair
+        final long[] counts = new long[2];
+
+        return fileLinks.flatMap(new Function<FileLink, Publisher<BatchResult<T>>>() {
+          @Override
+          public Publisher<BatchResult<T>> apply(final FileLink fileLink) {
+            return Flowable
+                .fromCallable(new Callable<BatchResult<T>>() {
+                  @Override
+                  public BatchResult<T> call() {
+                    T data = null;
+                    Throwable error = null;
+                    try {
+                      data = operation.apply(template.imageTransform(fileLink, values));
+                    } catch (Exception e) {
+                      error = e;
+                    }
+                    long completed;
+                    long failed;
+                    synchronized (counts) {
+                      completed = ++counts[0];
+                      failed = error != null ? ++counts[1] : counts[1];
+                    }
+                    long elapsed = System.currentTimeMillis() - startTime;
+                    return new BatchResult<>(fileLink, data, error, completed, failed, elapsed);
+                  }
+                })
+                .subscribeOn(Schedulers.io());
+          }
+        }, concurrency);
+      }
+    })
+        .observeOn(Schedulers.single());
+  }
+}
@@ -9,11 +9,14 @@ import com.filestack.errors.PolicySignatureException;
 import com.filestack.errors.ResourceNotFoundException;
 import com.filestack.responses.StoreResponse;
 import com.filestack.util.Util;
+import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.gson.JsonObject;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Callable;
+import okhttp3.ResponseBody;
 import retrofit2.Response;
 
 /**
@@ -29,6 +32,10 @@ public class ImageTransform extends Transform {
     super(fileLink);
   }
 
+  ImageTransform(ImageTransform base, TaskChain tasks) {
+    super(base, tasks);
+  }
+
   /**
    * Debugs the transformation as built so far, returning explanations of any issues.
    * @see <a href="https://www.filestack.com/docs/image-transformations/debug"></a>
@@ -44,7 +51,7 @@ public class ImageTransform extends Transform {
       throws IOException, PolicySignatureException, ResourceNotFoundException,
              InvalidParameterException, InternalException {
 
-    String tasksString = getTasksString();
+    String tasksString = getRequestTasksString(tasks);
 
     Response<JsonObject> response;
     if (apiKey != null) {
@@ -101,10 +108,10 @@ public class ImageTransform extends Transform {
       storageOptions = new StorageOptions();
     }
 
-    tasks.add(storageOptions.getAsTask());
+    // The store task isn't kept, so storing again or adding more tasks after works as expected
+    String tasksString = getRequestTasksString(tasks.append(storageOptions.getAsTask()));
 
     Response<StoreResponse> response;
-    String tasksString = getTasksString();
     if (apiKey != null) {
       response = fsService.transformStoreExt(apiKey, tasksString, source).execute();
     } else {
@@ -119,20 +126,89 @@ public class ImageTransform extends Transform {
     }
 
     String handle = body.getUrl().split("/")[3];
-    return new FileLink(apiKey, handle, security);
+    return new FileLink.Builder()
+        .apiKey(apiKey)
+        .handle(handle)
+        .securityProvider(securityProvider)
+        .service(fsService)
+        .build();
   }
 
   /**
    * Add a new transformation to the chain. Tasks are executed in the order they are added.
+   * Returns a new transform and leaves this one unchanged, so a partial chain can be shared
+   * between threads and used as the base for many others. The tasks already in the chain aren't
+   * copied, and the request string for them is only built once. Don't change a task after adding
+   * it.
    *
    * @param task any of the available {@link ImageTransformTask} subclasses
+   * @return new transform with the task added
    */
+  @CheckReturnValue
   public ImageTransform addTask(ImageTransformTask task) {
     if (task == null) {
       throw new NullPointerException("Cannot add null task to image transform");
     }
-    tasks.add(task);
-    return this;
+    return new ImageTransform(this, tasks.append(task));
+  }
+
+  /**
+   * Runs the transformation on local image data instead of requesting it, for previews where a
+   * CDN round trip is too slow. Resize, crop, rotate, flip, flop, black and white, sepia, blur and
+   * output tasks are supported with their common options. Large images are processed in parallel.
+   * If any task or option isn't supported, or the image format can't be decoded, falls back to
+   * {@link #getContent()}. Local results are close to, but not exactly the same as, the CDN's.
+   *
+   * @param input image data of this transformation's source, isn't closed
+   * @return transformed image, streamable
+   * @throws IOException               if reading the input fails, or the fallback request fails
+   *                                   because of network or other IO issue
+   * @throws PolicySignatureException  if security is missing or invalid
+   * @throws ResourceNotFoundException if handle or API key isn't found
+   * @throws InvalidParameterException if any of the task options is malformed
+   * @throws InternalException         if unexpected error occurs
+   */
+  public ResponseBody executeLocally(InputStream input)
+      throws IOException, PolicySignatureException, ResourceNotFoundException,
+             InvalidParameterException, InternalException {
+
+    if (LocalImageEngine.supports(tasks)) {
+      ResponseBody body = LocalImageEngine.execute(tasks, input);
+      if (body != null) {
+        return body;
+      }
+    }
+
+    return getContent();
+  }
+
+  /**
+   * Rewrites the tasks added so far into an equivalent, canonical chain. Options are sorted,
+   * no-op tasks like a 0 degree rotate are dropped, consecutive flips or flops cancel out, and
+   * repeated identical tasks like compress are reduced to one. The result is the same but
+   * requests are shorter and equivalent chains share CDN cache entries.
+   * Only the returned transform is optimized, tasks added to it later are left as is.
+   *
+   * @return new transform with the optimized chain, this one is unchanged
+   */
+  @CheckReturnValue
+  public ImageTransform optimize() {
+    return new ImageTransform(this, TaskChain.of(TransformOptimizer.optimize(tasks)));
+  }
+
+  /**
+   * Caches the content returned by {@link #getContent()} and {@link #getContentJson()}.
+   * Share one {@link TransformCache} between transforms so repeated transformations of the same
+   * source skip the request. Other calls, like {@link #store()}, are not cached.
+   *
+   * @param cache cache to use, or null to stop caching
+   * @return new transform using the cache, this one is unchanged
+   */
+  @CheckReturnValue
+  public ImageTransform resultCache(TransformCache cache) {
+    ImageTransform transform = new ImageTransform(this, tasks);
+    transform.cache = cache;
+    return transform;
   }
 
   // Async method wrappers
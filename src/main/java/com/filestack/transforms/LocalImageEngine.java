@@ -0,0 +1,615 @@
+package com.filestack.transforms;
+
+import com.filestack.errors.InvalidParameterException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.schedulers.Schedulers;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+/**
+ * Runs a subset of image tasks in process with java.awt, for previews where a CDN round trip is
+ * too slow. Results are close to, but not byte for byte the same as, what the CDN returns.
+ * Large images are processed in bands of rows in parallel on a pool of daemon threads.
+ *
+ * @see ImageTransform#executeLocally(InputStream)
+ */
+final class LocalImageEngine {
+  private static final int BAND_ROWS = 64;
+  // Images with fewer pixels than this are processed on the calling thread
+  private static final int PARALLEL_PIXELS = 512 * 512;
+  private static final int WHITE = 0xffffffff;
+  // Own threads rather than the computation scheduler, which callers may be blocking
+  private static final Scheduler BANDS = Schedulers.from(Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("filestack-bands-%d").build()));
+
+  private LocalImageEngine() {}
+
+  /** Processes the rows from start (inclusive) to end (exclusive) of an image. */
+  private interface Band {
+    void run(int start, int end);
+  }
+
+  /**
+   * Checks if every task and option in the chain can run locally. Security and cache tasks are
+   * accepted since they don't affect the image.
+   */
+  static boolean supports(List<TransformTask> tasks) {
+    for (TransformTask task : tasks) {
+      if (!supports(task)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean supports(TransformTask task) {
+    HashMap<String, String> options = options(task);
+    try {
+      switch (task.name) {
+        case "security":
+        case "cache":
+        case "cache=false":
+          return true;
+        case "flip":
+        case "flop":
+          return options.isEmpty();
+        case "resize":
+          if (!hasOnly(options, "width", "height", "fit", "align")) {
+            return false;
+          }
+          int width = intOption(options, "width", 0, 1, Integer.MAX_VALUE);
+          int height = intOption(options, "height", 0, 1, Integer.MAX_VALUE);
+          String fit = options.get("fit");
+          String align = options.get("align");
+          return (width != 0 || height != 0)
+              && (fit == null || Arrays.asList("clip", "crop", "scale", "max").contains(fit))
+              && (align == null || align.equals("center"));
+        case "crop":
+          return hasOnly(options, "dim") && cropDim(options) != null;
+        case "rotate":
+          if (!hasOnly(options, "deg", "background", "exif")) {
+            return false;
+          }
+          intOption(options, "deg", 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+          background(options);
+          return options.containsKey("deg")
+              && (!options.containsKey("exif") || options.get("exif").equals("false"));
+        case "blackwhite":
+          intOption(options, "threshold", 50, 0, 100);
+          return hasOnly(options, "threshold");
+        case "sepia":
+          intOption(options, "tone", 80, 0, 100);
+          return hasOnly(options, "tone");
+        case "blur":
+          intOption(options, "amount", 2, 1, 20);
+          return hasOnly(options, "amount");
+        case "output":
+          intOption(options, "quality", -1, 1, 100);
+          String format = options.get("format");
+          return hasOnly(options, "format", "quality") && format != null
+              && ImageIO.getImageWritersByFormatName(format).hasNext();
+        default:
+          return false;
+      }
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Decodes the input, runs the tasks, and encodes the result. The chain must be supported.
+   *
+   * @return transformed image, or null if the input format can't be decoded
+   */
+  static ResponseBody execute(List<TransformTask> tasks, InputStream input)
+      throws IOException, InvalidParameterException {
+
+    String format;
+    BufferedImage decoded;
+
+    ImageInputStream stream = ImageIO.createImageInputStream(input);
+    if (stream == null) {
+      return null;
+    }
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        decoded = reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      stream.close();
+    }
+
+    BufferedImage image = render(decoded, decoded.getWidth(), decoded.getHeight(),
+        new AffineTransform(), null, false);
+    int quality = -1;
+
+    for (TransformTask task : tasks) {
+      HashMap<String, String> options = options(task);
+      switch (task.name) {
+        case "flip":
+          image = flip(image);
+          break;
+        case "flop":
+          image = flop(image);
+          break;
+        case "resize":
+          image = resize(image, options);
+          break;
+        case "crop":
+          int[] dim = cropDim(options);
+          if (dim[0] >= image.getWidth() || dim[1] >= image.getHeight()) {
+            throw new InvalidParameterException("Crop area is outside the image");
+          }
+          image = crop(image, dim);
+          break;
+        case "rotate":
+          image = rotate(image, intOption(options, "deg", 0, Integer.MIN_VALUE, Integer.MAX_VALUE),
+              background(options));
+          break;
+        case "blackwhite":
+          image = blackWhite(image, intOption(options, "threshold", 50, 0, 100));
+          break;
+        case "sepia":
+          image = sepia(image, intOption(options, "tone", 80, 0, 100));
+          break;
+        case "blur":
+          image = blur(image, intOption(options, "amount", 2, 1, 20));
+          break;
+        case "output":
+          format = options.get("format").toLowerCase(Locale.ROOT);
+          quality = intOption(options, "quality", -1, 1, 100);
+          break;
+        default:
+          // Security and cache don't affect the image
+          break;
+      }
+    }
+
+    return encode(image, format, quality);
+  }
+
+  // Option parsing
+
+  private static HashMap<String, String> options(TransformTask task) {
+    HashMap<String, String> options = new HashMap<>();
+    for (TransformTask.Option option : task.options) {
+      if (option.value != null) {
+        options.put(option.key, option.value);
+      }
+    }
+    return options;
+  }
+
+  private static boolean hasOnly(HashMap<String, String> options, String... keys) {
+    return Arrays.asList(keys).containsAll(options.keySet());
+  }
+
+  private static int intOption(HashMap<String, String> options, String key, int defaultValue,
+                               int min, int max) {
+    String value = options.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    int parsed = Integer.parseInt(value);
+    if (parsed < min || parsed > max) {
+      throw new IllegalArgumentException(key + " is out of range");
+    }
+    return parsed;
+  }
+
+  /** Returns x, y, width, height or null if the option is missing or malformed. */
+  private static int[] cropDim(HashMap<String, String> options) {
+    String value = options.get("dim");
+    if (value == null || !value.startsWith("[") || !value.endsWith("]")) {
+      return null;
+    }
+    String[] parts = value.substring(1, value.length() - 1).split(",");
+    if (parts.length != 4) {
+      return null;
+    }
+    int[] dim = new int[4];
+    for (int i = 0; i < 4; i++) {
+      dim[i] = Integer.parseInt(parts[i].trim());
+    }
+    if (dim[0] < 0 || dim[1] < 0 || dim[2] < 1 || dim[3] < 1) {
+      return null;
+    }
+    return dim;
+  }
+
+  /** Parses a background color name or RRGGBB hex value, white if not set. */
+  private static int background(HashMap<String, String> options) {
+    String value = options.get("background");
+    if (value == null || value.equals("white")) {
+      return WHITE;
+    } else if (value.equals("black")) {
+      return 0xff000000;
+    } else if (value.equals("transparent")) {
+      return 0;
+    } else if (value.length() == 6) {
+      return 0xff000000 | Integer.parseInt(value, 16);
+    }
+    throw new IllegalArgumentException("Unsupported background " + value);
+  }
+
+  // Processing
+
+  private static int[] pixels(BufferedImage image) {
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+  }
+
+  /** Runs the band over all rows, split across the band threads for large images. */
+  private static void forEachBand(int width, int height, final Band band) {
+    if ((long) width * height < PARALLEL_PIXELS) {
+      band.run(0, height);
+      return;
+    }
+
+    ArrayList<Completable> bands = new ArrayList<>();
+    for (int start = 0; start < height; start += BAND_ROWS) {
+      final int bandStart = start;
+      final int bandEnd = Math.min(height, start + BAND_ROWS);
+      bands.add(Completable.fromAction(new Action() {
+        @Override
+        public void run() throws Exception {
+          band.run(bandStart, bandEnd);
+        }
+      }).subscribeOn(BANDS));
+    }
+    Completable.merge(bands).blockingAwait();
+  }
+
+  /**
+   * Draws the source into a new ARGB image through a transform. Each band draws with its own
+   * graphics clipped to its rows, so Java2D only computes those pixels.
+   *
+   * @param background color to fill with first, or null to leave the image transparent
+   * @param smooth     true for bilinear interpolation, false for nearest neighbor
+   */
+  private static BufferedImage render(final BufferedImage source, final int width,
+                                      final int height, final AffineTransform transform,
+                                      final Integer background, final boolean smooth) {
+    final BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    forEachBand(width, height, new Band() {
+      @Override
+      public void run(int start, int end) {
+        Graphics2D graphics = result.createGraphics();
+        try {
+          graphics.setClip(0, start, width, end - start);
+          if (background != null) {
+            graphics.setColor(new Color(background, true));
+            graphics.fillRect(0, start, width, end - start);
+          }
+          graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, smooth
+              ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+              : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+          graphics.drawImage(source, transform, null);
+        } finally {
+          graphics.dispose();
+        }
+      }
+    });
+    return result;
+  }
+
+  /** Mirrors vertically. */
+  private static BufferedImage flip(BufferedImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] source = pixels(image);
+    BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final int[] target = pixels(result);
+    forEachBand(width, height, new Band() {
+      @Override
+      public void run(int start, int end) {
+        for (int y = start; y < end; y++) {
+          System.arraycopy(source, (height - 1 - y) * width, target, y * width, width);
+        }
+      }
+    });
+    return result;
+  }
+
+  /** Mirrors horizontally. */
+  private static BufferedImage flop(BufferedImage image) {
+    final int width = image.getWidth();
+    final int[] source = pixels(image);
+    BufferedImage result = new BufferedImage(width, image.getHeight(),
+        BufferedImage.TYPE_INT_ARGB);
+    final int[] target = pixels(result);
+    forEachBand(width, image.getHeight(), new Band() {
+      @Override
+      public void run(int start, int end) {
+        for (int y = start; y < end; y++) {
+          int row = y * width;
+          for (int x = 0; x < width; x++) {
+            target[row + x] = source[row + width - 1 - x];
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  private static BufferedImage resize(BufferedImage image, HashMap<String, String> options) {
+    int width = intOption(options, "width", 0, 1, Integer.MAX_VALUE);
+    int height = intOption(options, "height", 0, 1, Integer.MAX_VALUE);
+    String fit = options.containsKey("fit") ? options.get("fit") : "clip";
+    double scaleX = (double) width / image.getWidth();
+    double scaleY = (double) height / image.getHeight();
+
+    // With one dimension the other keeps the aspect ratio, so the fit doesn't matter
+    if (width == 0 || height == 0 || fit.equals("scale")) {
+      if (width == 0) {
+        scaleX = scaleY;
+      } else if (height == 0) {
+        scaleY = scaleX;
+      }
+      if (fit.equals("max") && scaleX > 1) {
+        return image;
+      }
+      return scale(image, scaled(image.getWidth(), scaleX), scaled(image.getHeight(), scaleY));
+    }
+
+    if (fit.equals("crop")) {
+      double scale = Math.max(scaleX, scaleY);
+      BufferedImage scaled = scale(image, scaled(image.getWidth(), scale),
+          scaled(image.getHeight(), scale));
+      int x = (scaled.getWidth() - width) / 2;
+      int y = (scaled.getHeight() - height) / 2;
+      return crop(scaled, new int[] {x, y, width, height});
+    }
+
+    // Clip and max fit inside the box, max never enlarges
+    double scale = Math.min(scaleX, scaleY);
+    if (fit.equals("max") && scale > 1) {
+      return image;
+    }
+    return scale(image, scaled(image.getWidth(), scale), scaled(image.getHeight(), scale));
+  }
+
+  private static int scaled(int size, double scale) {
+    return Math.max(1, (int) Math.round(size * scale));
+  }
+
+  private static BufferedImage scale(BufferedImage image, int width, int height) {
+    // Bilinear alone skips source pixels when shrinking a lot, halving first keeps detail
+    while (image.getWidth() / 2 >= width && image.getHeight() / 2 >= height) {
+      image = scaleOnce(image, image.getWidth() / 2, image.getHeight() / 2);
+    }
+    return scaleOnce(image, width, height);
+  }
+
+  private static BufferedImage scaleOnce(BufferedImage image, int width, int height) {
+    AffineTransform transform = AffineTransform.getScaleInstance(
+        (double) width / image.getWidth(), (double) height / image.getHeight());
+    return render(image, width, height, transform, null, true);
+  }
+
+  /** Crops to x, y, width, height, clamped to the image. The origin must be inside it. */
+  private static BufferedImage crop(BufferedImage image, int[] dim) {
+    int width = Math.min(dim[2], image.getWidth() - dim[0]);
+    int height = Math.min(dim[3], image.getHeight() - dim[1]);
+    AffineTransform transform = AffineTransform.getTranslateInstance(-dim[0], -dim[1]);
+    return render(image, width, height, transform, null, false);
+  }
+
+  /** Rotates clockwise, growing the canvas to fit and filling the corners with background. */
+  private static BufferedImage rotate(BufferedImage image, int deg, int background) {
+    deg = ((deg % 360) + 360) % 360;
+    int width = image.getWidth();
+    int height = image.getHeight();
+    AffineTransform transform = new AffineTransform();
+
+    if (deg % 90 == 0) {
+      // Exact, so pixels are moved without resampling
+      int quadrants = deg / 90;
+      int newWidth = quadrants % 2 == 0 ? width : height;
+      int newHeight = quadrants % 2 == 0 ? height : width;
+      transform.translate(newWidth / 2.0, newHeight / 2.0);
+      transform.quadrantRotate(quadrants);
+      transform.translate(-width / 2.0, -height / 2.0);
+      return render(image, newWidth, newHeight, transform, null, false);
+    }
+
+    double radians = Math.toRadians(deg);
+    double sin = Math.abs(Math.sin(radians));
+    double cos = Math.abs(Math.cos(radians));
+    int newWidth = (int) Math.ceil(width * cos + height * sin);
+    int newHeight = (int) Math.ceil(width * sin + height * cos);
+    transform.translate(newWidth / 2.0, newHeight / 2.0);
+    transform.rotate(radians);
+    transform.translate(-width / 2.0, -height / 2.0);
+    return render(image, newWidth, newHeight, transform, background, true);
+  }
+
+  /** Sets pixels with a luminance of at least threshold percent to white, others to black. */
+  private static BufferedImage blackWhite(BufferedImage image, final int threshold) {
+    final int[] pixels = pixels(image);
+    final int width = image.getWidth();
+    forEachBand(width, image.getHeight(), new Band() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start * width; i < end * width; i++) {
+          int pixel = pixels[i];
+          int luminance = (299 * ((pixel >> 16) & 0xff) + 587 * ((pixel >> 8) & 0xff)
+              + 114 * (pixel & 0xff)) / 1000;
+          int value = luminance * 100 >= threshold * 255 ? 0xffffff : 0;
+          pixels[i] = (pixel & 0xff000000) | value;
+        }
+      }
+    });
+    return image;
+  }
+
+  /** Blends each pixel towards its sepia color by tone percent. */
+  private static BufferedImage sepia(BufferedImage image, final int tone) {
+    final int[] pixels = pixels(image);
+    final int width = image.getWidth();
+    forEachBand(width, image.getHeight(), new Band() {
+      @Override
+      public void run(int start, int end) {
+        for (int i = start * width; i < end * width; i++) {
+          int pixel = pixels[i];
+          int red = (pixel >> 16) & 0xff;
+          int green = (pixel >> 8) & 0xff;
+          int blue = pixel & 0xff;
+          int sepiaRed = Math.min(255, (393 * red + 769 * green + 189 * blue) / 1000);
+          int sepiaGreen = Math.min(255, (349 * red + 686 * green + 168 * blue) / 1000);
+          int sepiaBlue = Math.min(255, (272 * red + 534 * green + 131 * blue) / 1000);
+          red += (sepiaRed - red) * tone / 100;
+          green += (sepiaGreen - green) * tone / 100;
+          blue += (sepiaBlue - blue) * tone / 100;
+          pixels[i] = (pixel & 0xff000000) | (red << 16) | (green << 8) | blue;
+        }
+      }
+    });
+    return image;
+  }
+
+  /** Gaussian blur with a sigma of amount, as a horizontal then a vertical pass. */
+  private static BufferedImage blur(BufferedImage image, int amount) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int radius = amount * 3;
+    final float[] kernel = new float[radius * 2 + 1];
+    float sum = 0;
+    for (int i = -radius; i <= radius; i++) {
+      kernel[i + radius] = (float) Math.exp(-(i * i) / (2.0 * amount * amount));
+      sum += kernel[i + radius];
+    }
+    for (int i = 0; i < kernel.length; i++) {
+      kernel[i] /= sum;
+    }
+
+    final int[] source = pixels(image);
+    final int[] temp = new int[source.length];
+    forEachBand(width, height, new Band() {
+      @Override
+      public void run(int start, int end) {
+        float[] channels = new float[4];
+        for (int y = start; y < end; y++) {
+          for (int x = 0; x < width; x++) {
+            Arrays.fill(channels, 0);
+            for (int k = -radius; k <= radius; k++) {
+              int sampleX = Math.min(width - 1, Math.max(0, x + k));
+              accumulate(channels, source[y * width + sampleX], kernel[k + radius]);
+            }
+            temp[y * width + x] = pack(channels);
+          }
+        }
+      }
+    });
+
+    BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final int[] target = pixels(result);
+    forEachBand(width, height, new Band() {
+      @Override
+      public void run(int start, int end) {
+        float[] channels = new float[4];
+        for (int y = start; y < end; y++) {
+          for (int x = 0; x < width; x++) {
+            Arrays.fill(channels, 0);
+            for (int k = -radius; k <= radius; k++) {
+              int sampleY = Math.min(height - 1, Math.max(0, y + k));
+              accumulate(channels, temp[sampleY * width + x], kernel[k + radius]);
+            }
+            target[y * width + x] = pack(channels);
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  private static void accumulate(float[] channels, int pixel, float weight) {
+    for (int c = 0; c < 4; c++) {
+      channels[c] += ((pixel >>> (c * 8)) & 0xff) * weight;
+    }
+  }
+
+  private static int pack(float[] channels) {
+    int pixel = 0;
+    for (int c = 0; c < 4; c++) {
+      int value = Math.min(255, Math.max(0, Math.round(channels[c])));
+      pixel |= value << (c * 8);
+    }
+    return pixel;
+  }
+
+  // Encoding
+
+  private static ResponseBody encode(BufferedImage image, String format, int quality)
+      throws IOException {
+
+    boolean jpeg = format.equals("jpg") || format.equals("jpeg");
+    if (jpeg || format.equals("bmp")) {
+      // No alpha channel in these formats, flatten onto white like the CDN does
+      BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(),
+          BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = opaque.createGraphics();
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+      graphics.drawImage(image, 0, 0, null);
+      graphics.dispose();
+      image = opaque;
+    }
+
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+    if (!writers.hasNext()) {
+      throw new IOException("No writer for image format " + format);
+    }
+    ImageWriter writer = writers.next();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+      writer.setOutput(output);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      if (jpeg && quality != -1) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality / 100f);
+      }
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+
+    MediaType mediaType = MediaType.parse("image/" + (jpeg ? "jpeg" : format));
+    return ResponseBody.create(mediaType, bytes.toByteArray());
+  }
+}
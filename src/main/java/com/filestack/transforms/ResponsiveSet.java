@@ -0,0 +1,165 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.Security;
+import com.filestack.StorageOptions;
+import com.filestack.errors.InvalidArgumentException;
+import com.filestack.transforms.tasks.ResizeTask;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * Variants of one {@link ImageTransform} that only differ in width, for example to fill an HTML
+ * srcset. A resize task with the width is added to the end of the transform's chain for each
+ * variant. The shared part of the URL, including security, is encoded once and every URL is
+ * rendered from it, so the whole set is about as cheap as a single {@link Transform#url()}.
+ * Instances are immutable and safe to share between threads.
+ */
+public class ResponsiveSet {
+  private final ImageTransform transform;
+  private final int[] widths;
+
+  /**
+   * Constructs new instance.
+   *
+   * @param transform tasks to apply before resizing, can be empty
+   * @param widths    width of each variant in pixels, in the order results are returned
+   * @throws InvalidArgumentException if there are no widths or a width isn't positive
+   */
+  public ResponsiveSet(ImageTransform transform, int... widths) {
+    if (widths == null || widths.length == 0) {
+      throw new InvalidArgumentException("A responsive set needs at least one width");
+    }
+    for (int width : widths) {
+      if (width <= 0) {
+        throw new InvalidArgumentException("Widths must be greater than 0");
+      }
+    }
+    this.transform = transform;
+    this.widths = widths.clone();
+  }
+
+  /**
+   * Constructs new instance that only resizes the file.
+   *
+   * @see #ResponsiveSet(ImageTransform, int...)
+   */
+  public ResponsiveSet(FileLink fileLink, int... widths) {
+    this(fileLink.imageTransform(), widths);
+  }
+
+  /**
+   * Returns the transform for the variant at an index, to make other requests with.
+   */
+  public ImageTransform variant(int index) {
+    return transform.addTask(new ResizeTask.Builder().width(widths[index]).build());
+  }
+
+  /**
+   * Generates the URL of each variant, in the order of the widths.
+   *
+   * @return transformation URLs
+   */
+  public String[] urls() {
+    String[] urls = new String[widths.length];
+
+    String prefix = null;
+    String suffix = null;
+    StringBuilder builder = TransformUrl.begin();
+    if (transform.apiKey == null || TransformUrl.appendSegment(builder, transform.apiKey)) {
+      if (transform.apiKey != null) {
+        builder.append('/');
+      }
+      Security security = transform.getSecurity();
+      if (security != null) {
+        TransformUrl.appendSecurity(builder, security, true);
+        builder.append('/');
+      }
+      String encodedTasks = transform.tasks.getEncodedString();
+      if (encodedTasks.length() != 0) {
+        builder.append(encodedTasks).append('/');
+      }
+      prefix = builder.toString();
+
+      builder.setLength(0);
+      if (TransformUrl.appendSegment(builder, transform.source)) {
+        suffix = builder.toString();
+      }
+    }
+
+    for (int i = 0; i < widths.length; i++) {
+      if (suffix == null) {
+        // A dot segment needs full URL resolution
+        urls[i] = variant(i).url();
+        continue;
+      }
+      builder.setLength(0);
+      builder.append(prefix).append("resize=width:").append(widths[i]).append('/').append(suffix);
+      urls[i] = builder.toString();
+    }
+
+    return urls;
+  }
+
+  /**
+   * Generates the value of an HTML srcset attribute, for example
+   * "https://cdn.filestackcontent.com/resize=width:320/handle 320w, ...".
+   */
+  public String srcset() {
+    String[] urls = urls();
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < urls.length; i++) {
+      if (i != 0) {
+        builder.append(", ");
+      }
+      builder.append(urls[i]).append(' ').append(widths[i]).append('w');
+    }
+    return builder.toString();
+  }
+
+  public int[] getWidths() {
+    return widths.clone();
+  }
+
+  // Async method wrappers
+
+  /**
+   * Stores every variant into a new file. Uses default storage options.
+   *
+   * @see #storeAsync(StorageOptions)
+   */
+  public Single<List<FileLink>> storeAsync() {
+    return storeAsync(null);
+  }
+
+  /**
+   * Stores every variant into a new file. The requests run in parallel.
+   * If any of them fails, the first error is passed through the observable.
+   *
+   * @param storageOptions configure where and how the new files are stored
+   * @return {@link Single} that emits the new files in the order of the widths
+   */
+  public Single<List<FileLink>> storeAsync(final StorageOptions storageOptions) {
+    return Flowable.range(0, widths.length)
+        .concatMapEager(new Function<Integer, Publisher<FileLink>>() {
+          @Override
+          public Publisher<FileLink> apply(final Integer index) {
+            return Flowable
+                .fromCallable(new Callable<FileLink>() {
+                  @Override
+                  public FileLink call() throws Exception {
+                    return variant(index).store(storageOptions);
+                  }
+                })
+                .subscribeOn(Schedulers.io());
+          }
+        })
+        .toList()
+        .observeOn(Schedulers.single());
+  }
+}
@@ -0,0 +1,102 @@
+package com.filestack.transforms;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Immutable list of transform tasks. Appending creates a new chain that points to this one as
+ * its prefix instead of copying it, so many transforms derived from a common base are cheap to
+ * create and safe to share between threads. The tasks string of each prefix is built once and
+ * reused by every chain that extends it.
+ *
+ * <p>Tasks shouldn't be changed after they're added to a chain, cached strings won't reflect it.
+ */
+final class TaskChain extends AbstractList<TransformTask> {
+  static final TaskChain EMPTY = new TaskChain(null, null);
+
+  private final TaskChain parent;
+  private final TransformTask task;
+  private final int size;
+
+  // Built lazily, a race only means the same value is computed more than once
+  private volatile TransformTask[] array;
+  private volatile String tasksString;
+  private volatile String encodedString;
+
+  private TaskChain(TaskChain parent, TransformTask task) {
+    this.parent = parent;
+    this.task = task;
+    this.size = parent == null ? 0 : parent.size + 1;
+  }
+
+  /** Creates a chain with the tasks in order. */
+  static TaskChain of(List<? extends TransformTask> tasks) {
+    TaskChain chain = EMPTY;
+    for (TransformTask task : tasks) {
+      chain = chain.append(task);
+    }
+    return chain;
+  }
+
+  /** Returns a new chain with the task added to the end. This chain isn't changed. */
+  TaskChain append(TransformTask task) {
+    if (task == null) {
+      throw new NullPointerException("Cannot add null task to chain");
+    }
+    return new TaskChain(this, task);
+  }
+
+  @Override
+  public TransformTask get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    TransformTask[] array = this.array;
+    if (array == null) {
+      array = new TransformTask[size];
+      for (TaskChain chain = this; chain.size != 0; chain = chain.parent) {
+        array[chain.size - 1] = chain.task;
+      }
+      this.array = array;
+    }
+    return array[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Returns the tasks joined by "/", as used in a transformation path. */
+  String getTasksString() {
+    String tasksString = this.tasksString;
+    if (tasksString == null) {
+      if (size == 0) {
+        tasksString = "";
+      } else if (size == 1) {
+        tasksString = task.toString();
+      } else {
+        tasksString = parent.getTasksString() + "/" + task.toString();
+      }
+      this.tasksString = tasksString;
+    }
+    return tasksString;
+  }
+
+  /** Returns the tasks string percent-encoded for a URL path, slashes are left as is. */
+  String getEncodedString() {
+    String encodedString = this.encodedString;
+    if (encodedString == null) {
+      StringBuilder builder = new StringBuilder();
+      if (size > 1) {
+        builder.append(parent.getEncodedString()).append('/');
+      }
+      if (size > 0) {
+        TransformUrl.appendEncoded(builder, task.toString());
+      }
+      encodedString = builder.toString();
+      this.encodedString = encodedString;
+    }
+    return encodedString;
+  }
+}
@@ -2,35 +2,41 @@ package com.filestack.transforms;
 
 import com.filestack.FileLink;
 import com.filestack.FilestackClient;
+import com.filestack.FilestackMetrics;
 import com.filestack.Security;
+import com.filestack.SecurityProvider;
 import com.filestack.errors.InternalException;
 import com.filestack.errors.InvalidParameterException;
 import com.filestack.errors.PolicySignatureException;
 import com.filestack.errors.ResourceNotFoundException;
 import com.filestack.util.FsService;
+import com.filestack.util.Networking;
 import com.filestack.util.Util;
-import com.google.gson.Gson;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.JsonObject;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import okhttp3.HttpUrl;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
 /**
  * Base class for file transformations and conversions.
+ * The chain of tasks isn't changed after creation, methods that add to it return a new instance.
  */
 public class Transform {
   String apiKey;
   String source;
-  Security security;
+  SecurityProvider securityProvider;
 
-  ArrayList<TransformTask> tasks;
+  TaskChain tasks;
 
   FsService fsService;
+  TransformCache cache;
 
   Transform(FilestackClient fsClient, String url) {
     this(fsClient, null, url);
@@ -50,32 +56,44 @@ public class Transform {
       this.fsService = fileLink.getFsService();
     }
 
-    this.tasks = new ArrayList<>();
+    // Security isn't part of the chain, the current pair is added to each request
+    this.tasks = TaskChain.EMPTY;
+    this.securityProvider = fsClient != null
+        ? fsClient.getSecurityProvider() : fileLink.getSecurityProvider();
+  }
 
-    Security security = fsClient != null ? fsClient.getSecurity() : fileLink.getSecurity();
-    this.security = security;
-    if (security != null) {
-      TransformTask securityTask = new TransformTask("security");
-      securityTask.addOption("policy", security.getPolicy());
-      securityTask.addOption("signature", security.getSignature());
-      this.tasks.add(securityTask);
-    }
+  /**
+   * Creates a copy of a transform with a different chain of tasks.
+   */
+  Transform(Transform base, TaskChain tasks) {
+    this.apiKey = base.apiKey;
+    this.source = base.source;
+    this.securityProvider = base.securityProvider;
+    this.fsService = base.fsService;
+    this.cache = base.cache;
+    this.tasks = tasks;
+  }
+
+  /** Returns the current security, null if it isn't set. */
+  Security getSecurity() {
+    return securityProvider != null ? securityProvider.getSecurity() : null;
   }
 
   /**
    * Format tasks into single string to insert into request.
    */
   String getTasksString() {
-    if (tasks.size() == 0) {
-      return "";
-    }
+    return TransformUrl.tasksString(getSecurity(), tasks);
+  }
 
-    StringBuilder stringBuilder = new StringBuilder();
-    for (TransformTask task : tasks) {
-      stringBuilder.append(task.toString()).append('/');
-    }
-    stringBuilder.deleteCharAt(stringBuilder.length() - 1);
-    return stringBuilder.toString();
+  /**
+   * Format tasks into the string for a request, after checking locally that the current policy
+   * allows it. Only a handle source can be checked, external URLs are left to the server.
+   */
+  String getRequestTasksString(TaskChain tasks) throws PolicySignatureException {
+    Security security = getSecurity();
+    Util.checkPolicy(security, null, apiKey == null ? source : null, -1);
+    return TransformUrl.tasksString(security, tasks);
   }
 
   /**
@@ -85,7 +103,14 @@ public class Transform {
    * @return transformation URL
    */
   public String url() {
-    String tasksString = getTasksString();
+    // Fast path, builds the string directly without creating a call
+    Security security = getSecurity();
+    String url = TransformUrl.build(apiKey, security, tasks, source);
+    if (url != null) {
+      return url;
+    }
+
+    String tasksString = TransformUrl.tasksString(security, tasks);
     HttpUrl httpUrl;
 
     if (apiKey != null) {
@@ -114,7 +139,70 @@ public class Transform {
       throws IOException, PolicySignatureException, ResourceNotFoundException,
              InvalidParameterException, InternalException {
 
-    String tasksString = getTasksString();
+    if (cache != null) {
+      long ttl = cache.ttlFor(tasks);
+      if (ttl != -1) {
+        return getCachedContent(ttl);
+      }
+    }
+
+    return requestContent();
+  }
+
+  /**
+   * Returns content from the cache, or makes a request and caches the result.
+   * If another thread is already requesting the same content, waits for its result instead.
+   */
+  private ResponseBody getCachedContent(long ttl)
+      throws IOException, PolicySignatureException, ResourceNotFoundException,
+             InvalidParameterException, InternalException {
+
+    String key = TransformCache.key(apiKey, getSecurity(), tasks, source);
+    TransformCache.Content content = cache.get(key);
+    if (content != null) {
+      fsService.getMetrics().cacheHit(FilestackMetrics.Cache.TRANSFORM);
+      return content.toBody();
+    }
+    fsService.getMetrics().cacheMiss(FilestackMetrics.Cache.TRANSFORM);
+
+    SettableFuture<TransformCache.Content> future = SettableFuture.create();
+    SettableFuture<TransformCache.Content> existing = cache.claim(key, future);
+
+    if (existing != null) {
+      try {
+        content = Uninterruptibles.getUninterruptibly(existing);
+      } catch (ExecutionException e) {
+        throwCause(e.getCause());
+      }
+      // Null means the content was too large to cache, so we need our own request
+      return content != null ? content.toBody() : requestContent();
+    }
+
+    boolean released = false;
+    try {
+      ResponseBody body = requestContent();
+      content = body != null ? cache.read(body, ttl) : null;
+      cache.complete(key, future, content);
+      released = true;
+      return content != null ? content.toBody() : body;
+    } catch (Exception e) {
+      cache.fail(key, future, e);
+      released = true;
+      throw e;
+    } finally {
+      // After an Error, give up the claim so waiting callers make their own request
+      if (!released) {
+        cache.complete(key, future, null);
+      }
+    }
+  }
+
+  /** Makes the request for the content of the transformation. */
+  private ResponseBody requestContent()
+      throws IOException, PolicySignatureException, ResourceNotFoundException,
+             InvalidParameterException, InternalException {
+
+    String tasksString = getRequestTasksString(tasks);
     Response<ResponseBody> response;
 
     if (apiKey != null) {
@@ -128,6 +216,27 @@ public class Transform {
     return response.body();
   }
 
+  /** Rethrows an exception passed from another thread's request. */
+  private static void throwCause(Throwable throwable)
+      throws IOException, PolicySignatureException, ResourceNotFoundException,
+             InvalidParameterException, InternalException {
+
+    if (throwable instanceof IOException) {
+      throw (IOException) throwable;
+    } else if (throwable instanceof PolicySignatureException) {
+      throw (PolicySignatureException) throwable;
+    } else if (throwable instanceof ResourceNotFoundException) {
+      throw (ResourceNotFoundException) throwable;
+    } else if (throwable instanceof InvalidParameterException) {
+      throw (InvalidParameterException) throwable;
+    } else if (throwable instanceof InternalException) {
+      throw (InternalException) throwable;
+    } else if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    }
+    throw new InternalException(throwable);
+  }
+
   /**
    * Returns the content of a transformation as JSON.
    *
@@ -137,10 +246,26 @@ public class Transform {
       throws IOException, PolicySignatureException, ResourceNotFoundException,
       InvalidParameterException, InternalException {
 
-    ResponseBody body = getContent();
+    return getContentJson(JsonObject.class);
+  }
 
-    Gson gson = new Gson();
-    return gson.fromJson(body.charStream(), JsonObject.class);
+  /**
+   * Returns the content of a transformation parsed directly into an object, without building a
+   * {@link JsonObject} first.
+   *
+   * @param classOfT class to parse into, Gson rules apply
+   * @see #getContent()
+   */
+  public <T> T getContentJson(Class<T> classOfT)
+      throws IOException, PolicySignatureException, ResourceNotFoundException,
+      InvalidParameterException, InternalException {
+
+    ResponseBody body = getContent();
+    try {
+      return Networking.getGson().fromJson(body.charStream(), classOfT);
+    } finally {
+      body.close();
+    }
   }
 
   // Async method wrappers
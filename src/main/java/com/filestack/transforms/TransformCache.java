@@ -0,0 +1,234 @@
+package com.filestack.transforms;
+
+import com.filestack.Security;
+import com.filestack.errors.InvalidArgumentException;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * In-memory cache for transformation content, shared between {@link ImageTransform} instances.
+ * Entries are keyed by a canonical form of the task string plus the source, and are evicted
+ * least recently used first once the total size passes a limit, or after their TTL passes.
+ * Concurrent requests for the same missing entry are coalesced into a single request.
+ *
+ * <p>Transformations that include a {@link com.filestack.transforms.tasks.NoCacheOption} are
+ * never cached. Transformations that include a {@link com.filestack.transforms.tasks.CacheOption}
+ * use its expiry as their TTL.
+ *
+ * @see ImageTransform#resultCache(TransformCache)
+ */
+public class TransformCache {
+  private static final Comparator<TransformTask.Option> OPTION_ORDER =
+      new Comparator<TransformTask.Option>() {
+        @Override
+        public int compare(TransformTask.Option o1, TransformTask.Option o2) {
+          return o1.key.compareTo(o2.key);
+        }
+      };
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final long ttl; // milliseconds
+
+  private final LinkedHashMap<String, Content> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final ConcurrentHashMap<String, SettableFuture<Content>> inFlight =
+      new ConcurrentHashMap<>();
+  private long bytes;
+
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs new instance.
+   *
+   * @param maxBytes total size of cached content, a single entry can use at most a quarter
+   * @param ttl      how long an entry stays valid
+   * @param unit     unit of the ttl
+   */
+  public TransformCache(long maxBytes, long ttl, TimeUnit unit) {
+    if (maxBytes <= 0 || ttl <= 0) {
+      throw new InvalidArgumentException("Cache size and TTL must be greater than 0");
+    }
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = maxBytes / 4;
+    this.ttl = unit.toMillis(ttl);
+  }
+
+  /** Cached content and its metadata. */
+  static class Content {
+    final MediaType mediaType;
+    final byte[] bytes;
+    final long expiresAt;
+
+    Content(MediaType mediaType, byte[] bytes, long expiresAt) {
+      this.mediaType = mediaType;
+      this.bytes = bytes;
+      this.expiresAt = expiresAt;
+    }
+
+    ResponseBody toBody() {
+      return ResponseBody.create(mediaType, bytes);
+    }
+  }
+
+  /**
+   * Creates the key for a transformation. Options within each task are sorted so the same
+   * transformation built in different ways shares an entry. The order of tasks is kept.
+   * Content isn't shared between different policies.
+   */
+  static String key(String apiKey, Security security, List<TransformTask> tasks, String source) {
+    StringBuilder builder = new StringBuilder();
+    if (apiKey != null) {
+      builder.append(apiKey).append('/');
+    }
+    if (security != null) {
+      TransformUrl.appendSecurity(builder, security, false);
+      builder.append('/');
+    }
+    for (TransformTask task : tasks) {
+      builder.append(task.name).append('=');
+      ArrayList<TransformTask.Option> options = new ArrayList<>(task.options);
+      Collections.sort(options, OPTION_ORDER);
+      for (TransformTask.Option option : options) {
+        builder.append(option.key).append(':').append(option.value).append(',');
+      }
+      builder.setLength(builder.length() - 1);
+      builder.append('/');
+    }
+    builder.append(source);
+    return builder.toString();
+  }
+
+  /**
+   * Returns the TTL to use for a transformation in milliseconds, or -1 if it shouldn't be cached.
+   */
+  long ttlFor(List<TransformTask> tasks) {
+    for (TransformTask task : tasks) {
+      if (task.name.equals("cache=false")) {
+        return -1;
+      }
+      if (task.name.equals("cache")) {
+        for (TransformTask.Option option : task.options) {
+          if (option.key.equals("expiry")) {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(option.value));
+          }
+        }
+      }
+    }
+    return ttl;
+  }
+
+  /** Returns unexpired content for the key or null. */
+  synchronized Content get(String key) {
+    Content content = entries.get(key);
+    if (content == null) {
+      misses++;
+      return null;
+    }
+    if (content.expiresAt <= System.currentTimeMillis()) {
+      remove(key);
+      misses++;
+      return null;
+    }
+    hits++;
+    return content;
+  }
+
+  /**
+   * Registers a request for the key. If there's already a request in flight, returns its future
+   * and the caller should wait on that. Otherwise returns null and the caller must finish with
+   * {@link #complete(String, SettableFuture, Content)} or
+   * {@link #fail(String, SettableFuture, Throwable)}.
+   */
+  SettableFuture<Content> claim(String key, SettableFuture<Content> future) {
+    return inFlight.putIfAbsent(key, future);
+  }
+
+  /**
+   * Reads a response into cacheable content. If the body is too large it's left unread and null
+   * is returned, the body can still be consumed by the caller.
+   */
+  Content read(ResponseBody body, long ttl) throws IOException {
+    long length = body.contentLength();
+    if (length > maxEntryBytes) {
+      return null;
+    }
+
+    BufferedSource source = body.source();
+    if (length == -1 && source.request(maxEntryBytes + 1)) {
+      // Unknown length and more than we're willing to hold, what's buffered stays in the source
+      return null;
+    }
+
+    byte[] content = source.readByteArray();
+    body.close();
+    return new Content(body.contentType(), content, System.currentTimeMillis() + ttl);
+  }
+
+  /** Stores content (if not null) and releases anyone waiting on the request. */
+  void complete(String key, SettableFuture<Content> future, Content content) {
+    if (content != null) {
+      put(key, content);
+    }
+    inFlight.remove(key, future);
+    future.set(content);
+  }
+
+  /** Passes a request failure to anyone waiting on it. */
+  void fail(String key, SettableFuture<Content> future, Throwable throwable) {
+    inFlight.remove(key, future);
+    future.setException(throwable);
+  }
+
+  /** Removes all entries. */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /** Total size of cached content in bytes. */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private synchronized void put(String key, Content content) {
+    remove(key);
+    entries.put(key, content);
+    bytes += content.bytes.length;
+
+    // Least recently used entries are first
+    Iterator<Map.Entry<String, Content>> iterator = entries.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Content> eldest = iterator.next();
+      bytes -= eldest.getValue().bytes.length;
+      iterator.remove();
+    }
+  }
+
+  private void remove(String key) {
+    Content removed = entries.remove(key);
+    if (removed != null) {
+      bytes -= removed.bytes.length;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.filestack.transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Rewrites a task chain into an equivalent, canonical form. Only rewrites that can't change the
+ * output are made:
+ *
+ * <ul>
+ *   <li>Options within each task are sorted by key.</li>
+ *   <li>A rotate of 0 degrees (without other effects) is removed.</li>
+ *   <li>Two consecutive flips, or two consecutive flops, cancel each other out.</li>
+ *   <li>Consecutive identical copies of an idempotent task are reduced to one.</li>
+ * </ul>
+ *
+ * <p>Removals are applied repeatedly, so a chain like flip, flop, flop, flip becomes empty.
+ */
+final class TransformOptimizer {
+  // Tasks where applying the same options twice in a row is the same as applying them once
+  private static final HashSet<String> IDEMPOTENT = new HashSet<>(Arrays.asList(
+      "resize", "compress", "monochrome", "no_metadata", "output", "cache", "cache=false",
+      "quality"));
+
+  // Tasks that undo themselves when applied twice in a row
+  private static final HashSet<String> INVOLUTIONS = new HashSet<>(Arrays.asList(
+      "flip", "flop"));
+
+  private static final Comparator<TransformTask.Option> OPTION_ORDER =
+      new Comparator<TransformTask.Option>() {
+        @Override
+        public int compare(TransformTask.Option o1, TransformTask.Option o2) {
+          return o1.key.compareTo(o2.key);
+        }
+      };
+
+  private TransformOptimizer() {}
+
+  /**
+   * Returns an optimized copy of the chain. The tasks passed in aren't modified.
+   */
+  static ArrayList<TransformTask> optimize(List<TransformTask> tasks) {
+    ArrayList<TransformTask> optimized = new ArrayList<>(tasks.size());
+
+    for (TransformTask task : tasks) {
+      TransformTask canonical = canonicalize(task);
+
+      if (isNoOp(canonical)) {
+        continue;
+      }
+
+      if (!optimized.isEmpty()) {
+        TransformTask last = optimized.get(optimized.size() - 1);
+        if (isSame(last, canonical)) {
+          if (INVOLUTIONS.contains(canonical.name) && canonical.options.isEmpty()) {
+            optimized.remove(optimized.size() - 1);
+            continue;
+          }
+          if (IDEMPOTENT.contains(canonical.name)) {
+            continue;
+          }
+        }
+      }
+
+      optimized.add(canonical);
+    }
+
+    return optimized;
+  }
+
+  /** Copies the task with options sorted by key, keeping the task's base type. */
+  private static TransformTask canonicalize(TransformTask task) {
+    TransformTask copy;
+    if (task instanceof ImageTransformTask) {
+      copy = new ImageTransformTask(task.name);
+    } else {
+      copy = new TransformTask(task.name);
+    }
+
+    ArrayList<TransformTask.Option> options = new ArrayList<>();
+    for (TransformTask.Option option : task.options) {
+      if (option.value != null) {
+        options.add(option);
+      }
+    }
+    // Stable, so repeated keys keep their relative order
+    Collections.sort(options, OPTION_ORDER);
+    copy.options = options;
+    return copy;
+  }
+
+  /** Checks for tasks that don't change the image. */
+  private static boolean isNoOp(TransformTask task) {
+    if (!task.name.equals("rotate")) {
+      return false;
+    }
+    boolean zero = false;
+    for (TransformTask.Option option : task.options) {
+      if (option.key.equals("deg")) {
+        zero = option.value.equals("0");
+      } else if (!option.key.equals("background")) {
+        // Other options, like exif, can rotate the image on their own
+        return false;
+      }
+    }
+    return zero;
+  }
+
+  private static boolean isSame(TransformTask first, TransformTask second) {
+    if (!first.name.equals(second.name) || first.options.size() != second.options.size()) {
+      return false;
+    }
+    for (int i = 0; i < first.options.size(); i++) {
+      TransformTask.Option option1 = first.options.get(i);
+      TransformTask.Option option2 = second.options.get(i);
+      if (!option1.key.equals(option2.key) || !option1.value.equals(option2.value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -46,6 +46,13 @@ public class TransformTask {
       return;
     }
 
+    options.add(new Option(key, formatValue(value)));
+  }
+
+  /**
+   * Converts an option value to the string used in a task.
+   */
+  static String formatValue(Object value) {
     String valueString;
 
     // If value is a an array (not a Collection)
@@ -60,7 +67,7 @@ public class TransformTask {
       valueString = valueString.replace(", ", ",");
     }
 
-    options.add(new Option(key, valueString));
+    return valueString;
   }
 
   @Override
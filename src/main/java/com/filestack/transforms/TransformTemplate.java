@@ -0,0 +1,271 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.FilestackClient;
+import com.filestack.Security;
+import com.filestack.errors.InvalidArgumentException;
+import com.google.common.primitives.Primitives;
+import java.util.ArrayList;
+
+/**
+ * Precompiled {@link ImageTransform} chain with typed slots for the options that vary between
+ * uses, for example a resize width. The static parts of the task string are rendered and encoded
+ * once, so creating a URL or transform for a new source only formats the slot values.
+ * Instances are immutable and safe to share between threads.
+ *
+ * <p>The security task isn't part of a template. The security of the {@link FileLink} or
+ * {@link FilestackClient} passed in when rendering is used instead.
+ */
+public class TransformTemplate {
+  // Reused per thread for rendering raw task strings
+  private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+
+  private final String[] fragments;
+  private final String[] encodedFragments;
+  private final int[] positions;
+  private final Class<?>[] types;
+
+  private TransformTemplate(String[] fragments, int[] positions, Class<?>[] types) {
+    this.fragments = fragments;
+    this.positions = positions;
+    this.types = types;
+
+    this.encodedFragments = new String[fragments.length];
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < fragments.length; i++) {
+      builder.setLength(0);
+      TransformUrl.appendEncoded(builder, fragments[i]);
+      encodedFragments[i] = builder.toString();
+    }
+  }
+
+  /**
+   * Builds new {@link TransformTemplate}.
+   */
+  public static class Builder {
+    private final ImageTransform transform;
+    private final ArrayList<String> slotTasks = new ArrayList<>();
+    private final ArrayList<String> slotOptions = new ArrayList<>();
+    private final ArrayList<Class<?>> slotTypes = new ArrayList<>();
+
+    /**
+     * Starts a template from a transform. Options that will become slots must be set on the
+     * transform's tasks, their values are only placeholders.
+     */
+    public Builder(ImageTransform transform) {
+      this.transform = transform;
+    }
+
+    /**
+     * Makes an option a slot that accepts any value.
+     *
+     * @see #slot(String, String, Class)
+     */
+    public Builder slot(String task, String option) {
+      return slot(task, option, Object.class);
+    }
+
+    /**
+     * Makes an option a slot. Slot values are passed to the render methods in the order the slots
+     * are added here. If a task appears more than once, slots are matched to the earliest
+     * occurrence that doesn't already have a slot for the option.
+     *
+     * @param task   name of the task, for example "resize"
+     * @param option key of the option, for example "width"
+     * @param type   required type of the values, primitive types are treated as their wrappers
+     */
+    public Builder slot(String task, String option, Class<?> type) {
+      slotTasks.add(task);
+      slotOptions.add(option);
+      slotTypes.add(Primitives.wrap(type));
+      return this;
+    }
+
+    /**
+     * Renders the static fragments and creates the {@link TransformTemplate}.
+     *
+     * @throws InvalidArgumentException if the transform has no tasks or a slot doesn't match any
+     *                                  task option
+     */
+    public TransformTemplate build() {
+      int slotCount = slotTasks.size();
+      ArrayList<String> fragments = new ArrayList<>();
+      int[] positions = new int[slotCount];
+      boolean[] used = new boolean[slotCount];
+      StringBuilder current = new StringBuilder();
+      boolean first = true;
+
+      for (TransformTask task : transform.tasks) {
+        if (!first) {
+          current.append('/');
+        }
+        first = false;
+
+        // Follows the format of TransformTask.toString()
+        current.append(task.name).append('=');
+        for (TransformTask.Option option : task.options) {
+          if (option.value == null) {
+            continue;
+          }
+          current.append(option.key).append(':');
+          int slot = findSlot(task.name, option.key, used);
+          if (slot != -1) {
+            used[slot] = true;
+            positions[fragments.size()] = slot;
+            fragments.add(current.toString());
+            current.setLength(0);
+          } else {
+            current.append(option.value);
+          }
+          current.append(',');
+        }
+        current.setLength(current.length() - 1);
+      }
+
+      if (first) {
+        throw new InvalidArgumentException("Can't create a template without any tasks");
+      }
+
+      for (int i = 0; i < slotCount; i++) {
+        if (!used[i]) {
+          throw new InvalidArgumentException("Slot doesn't match a task option: "
+              + slotTasks.get(i) + "." + slotOptions.get(i));
+        }
+      }
+
+      fragments.add(current.toString());
+
+      return new TransformTemplate(fragments.toArray(new String[0]), positions,
+          slotTypes.toArray(new Class<?>[0]));
+    }
+
+    private int findSlot(String task, String option, boolean[] used) {
+      for (int i = 0; i < slotTasks.size(); i++) {
+        if (!used[i] && slotTasks.get(i).equals(task) && slotOptions.get(i).equals(option)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Renders the task string, excluding security, with the given slot values.
+   *
+   * @throws InvalidArgumentException if the number or types of values don't match the slots
+   */
+  public String tasksString(Object... values) {
+    checkValues(values);
+    StringBuilder builder = BUILDER.get();
+    builder.setLength(0);
+    appendTasks(builder, values, false);
+    return builder.toString();
+  }
+
+  /**
+   * Renders a transformation URL for a file handle. Matches {@link Transform#url()} for the
+   * equivalent {@link ImageTransform}.
+   *
+   * @throws InvalidArgumentException if the number or types of values don't match the slots
+   */
+  public String url(FileLink fileLink, Object... values) {
+    checkValues(values);
+    StringBuilder builder = TransformUrl.begin();
+    appendSecurity(builder, fileLink.getSecurity());
+    appendTasks(builder, values, true);
+    builder.append('/');
+    if (!TransformUrl.appendSegment(builder, fileLink.getHandle())) {
+      return imageTransform(fileLink, values).url();
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Renders a transformation URL for an external URL. Matches {@link Transform#url()} for the
+   * equivalent {@link ImageTransform}.
+   *
+   * @throws InvalidArgumentException if the number or types of values don't match the slots
+   */
+  public String url(FilestackClient fsClient, String source, Object... values) {
+    checkValues(values);
+    StringBuilder builder = TransformUrl.begin();
+    if (!TransformUrl.appendSegment(builder, fsClient.getApiKey())) {
+      return imageTransform(fsClient, source, values).url();
+    }
+    builder.append('/');
+    appendSecurity(builder, fsClient.getSecurity());
+    appendTasks(builder, values, true);
+    builder.append('/');
+    if (!TransformUrl.appendSegment(builder, source)) {
+      return imageTransform(fsClient, source, values).url();
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Creates an {@link ImageTransform} for a file handle, to make requests with.
+   * More tasks can still be added to the returned transform.
+   *
+   * @throws InvalidArgumentException if the number or types of values don't match the slots
+   */
+  public ImageTransform imageTransform(FileLink fileLink, Object... values) {
+    return new ImageTransform(fileLink).addTask(new ImageTransformTask(tasksString(values)));
+  }
+
+  /**
+   * Creates an {@link ImageTransform} for an external URL, to make requests with.
+   * More tasks can still be added to the returned transform.
+   *
+   * @throws InvalidArgumentException if the number or types of values don't match the slots
+   */
+  public ImageTransform imageTransform(FilestackClient fsClient, String source,
+                                       Object... values) {
+    return new ImageTransform(fsClient, source)
+        .addTask(new ImageTransformTask(tasksString(values)));
+  }
+
+  public int getSlotCount() {
+    return types.length;
+  }
+
+  private void checkValues(Object[] values) {
+    if (values.length != types.length) {
+      throw new InvalidArgumentException("Template expects " + types.length + " values but got "
+          + values.length);
+    }
+    for (int i = 0; i < values.length; i++) {
+      if (!types[i].isInstance(values[i])) {
+        throw new InvalidArgumentException("Template value " + i + " must be a "
+            + types[i].getSimpleName());
+      }
+    }
+  }
+
+  private void appendTasks(StringBuilder builder, Object[] values, boolean encode) {
+    String[] fragments = encode ? encodedFragments : this.fragments;
+    for (int i = 0; i < positions.length; i++) {
+      builder.append(fragments[i]);
+      String value = TransformTask.formatValue(values[positions[i]]);
+      if (encode) {
+        TransformUrl.appendEncoded(builder, value);
+      } else {
+        builder.append(value);
+      }
+    }
+    builder.append(fragments[positions.length]);
+  }
+
+  /** Appends the security task the same way {@link Transform} does. */
+  private static void appendSecurity(StringBuilder builder, Security security) {
+    if (security == null) {
+      return;
+    }
+    TransformUrl.appendSecurity(builder, security, true);
+    builder.append('/');
+  }
+}
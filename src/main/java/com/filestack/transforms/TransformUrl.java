@@ -0,0 +1,171 @@
+package com.filestack.transforms;
+
+import com.filestack.Security;
+import com.filestack.util.FsCdnService;
+
+/**
+ * Builds transformation URLs directly instead of creating a Retrofit call for each one.
+ * Path values are encoded the same way Retrofit encodes {@link FsCdnService} path parameters,
+ * except slashes between tasks are left as is, so the output matches what {@link Transform#url()}
+ * has always returned for the default CDN.
+ */
+final class TransformUrl {
+  // Characters Retrofit always encodes in a path, plus '/' and '%' which it encodes by default
+  private static final String ENCODE_SET = " \"<>^`{}|\\?#%";
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  // Reused per thread so building a URL only allocates the final String
+  private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+
+  private TransformUrl() {}
+
+  /**
+   * Builds the URL for a transformation.
+   *
+   * @param apiKey   key to put before tasks, null when transforming a handle
+   * @param security added as the first task, null if not set
+   * @param tasks    tasks in the order they should run, encoded once per chain and reused
+   * @param source   handle or external URL
+   * @return URL string, or null if a path value is a dot segment that needs full URL resolution
+   */
+  static String build(String apiKey, Security security, TaskChain tasks, String source) {
+    StringBuilder builder = begin();
+
+    if (apiKey != null) {
+      if (!appendSegment(builder, apiKey)) {
+        return null;
+      }
+      builder.append('/');
+    }
+
+    // Without a key, an empty task string makes the path absolute so the "/" disappears
+    if (apiKey != null || security != null || tasks.size() != 0) {
+      int start = builder.length();
+      if (security != null) {
+        appendSecurity(builder, security, true);
+        if (tasks.size() != 0) {
+          builder.append('/');
+        }
+      }
+      builder.append(tasks.getEncodedString());
+      if (isDotSegment(builder, start)) {
+        return null;
+      }
+      builder.append('/');
+    }
+
+    if (!appendSegment(builder, source)) {
+      return null;
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * Creates the tasks string for a request, with the security task first if it's set.
+   */
+  static String tasksString(Security security, TaskChain tasks) {
+    if (security == null) {
+      return tasks.getTasksString();
+    }
+    StringBuilder builder = new StringBuilder();
+    appendSecurity(builder, security, false);
+    if (tasks.size() != 0) {
+      builder.append('/').append(tasks.getTasksString());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Appends the security task. Isn't part of a {@link TaskChain} because the pair can change
+   * between requests, see {@link com.filestack.SecurityProvider}.
+   */
+  static void appendSecurity(StringBuilder builder, Security security, boolean encode) {
+    // Follows the format of TransformTask.toString()
+    builder.append("security=");
+    if (security.getPolicy() != null) {
+      builder.append("policy:");
+      appendValue(builder, security.getPolicy(), encode);
+      builder.append(',');
+    }
+    if (security.getSignature() != null) {
+      builder.append("signature:");
+      appendValue(builder, security.getSignature(), encode);
+      builder.append(',');
+    }
+    builder.setLength(builder.length() - 1);
+  }
+
+  private static void appendValue(StringBuilder builder, String value, boolean encode) {
+    if (encode) {
+      appendEncoded(builder, value);
+    } else {
+      builder.append(value);
+    }
+  }
+
+  /** Returns this thread's builder, cleared and starting with the CDN URL. */
+  static StringBuilder begin() {
+    StringBuilder builder = BUILDER.get();
+    builder.setLength(0);
+    builder.append(FsCdnService.URL);
+    return builder;
+  }
+
+  /** Appends a single path value. Returns false if it's a dot segment. */
+  static boolean appendSegment(StringBuilder builder, String value) {
+    int start = builder.length();
+    appendEncoded(builder, value);
+    return !isDotSegment(builder, start);
+  }
+
+  /** Checks if the builder content from start is "." or "..". */
+  private static boolean isDotSegment(StringBuilder builder, int start) {
+    int length = builder.length() - start;
+    if (length == 1) {
+      return builder.charAt(start) == '.';
+    } else if (length == 2) {
+      return builder.charAt(start) == '.' && builder.charAt(start + 1) == '.';
+    }
+    return false;
+  }
+
+  /** Percent-encodes a path value into the builder, leaving '/' unencoded. */
+  static void appendEncoded(StringBuilder builder, String value) {
+    int codePoint;
+    for (int i = 0, limit = value.length(); i < limit; i += Character.charCount(codePoint)) {
+      codePoint = value.codePointAt(i);
+      if (codePoint >= 0x20 && codePoint < 0x7f && ENCODE_SET.indexOf(codePoint) == -1) {
+        builder.append((char) codePoint);
+      } else if (codePoint < 0x80) {
+        appendByte(builder, codePoint);
+      } else if (codePoint < 0x800) {
+        appendByte(builder, 0xc0 | (codePoint >> 6));
+        appendByte(builder, 0x80 | (codePoint & 0x3f));
+      } else if (codePoint < 0x10000) {
+        if (codePoint >= 0xd800 && codePoint <= 0xdfff) {
+          // Unpaired surrogate, encoded as '?' like Okio does
+          appendByte(builder, '?');
+        } else {
+          appendByte(builder, 0xe0 | (codePoint >> 12));
+          appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3f));
+          appendByte(builder, 0x80 | (codePoint & 0x3f));
+        }
+      } else {
+        appendByte(builder, 0xf0 | (codePoint >> 18));
+        appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3f));
+        appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3f));
+        appendByte(builder, 0x80 | (codePoint & 0x3f));
+      }
+    }
+  }
+
+  private static void appendByte(StringBuilder builder, int b) {
+    builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+  }
+}
@@ -0,0 +1,97 @@
+package com.filestack.util;
+
+import com.google.common.base.Ticker;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Dns;
+
+/**
+ * Caches host lookups for a fixed time. Uploads send every part to the same few S3 hosts, so
+ * after the first part the lookup is served from memory, whatever the platform's own DNS cache
+ * does. Failed lookups aren't cached. Safe to share between threads.
+ */
+public class CachingDns implements Dns {
+  // Expired entries are dropped when the cache grows past this
+  private static final int MAX_ENTRIES = 256;
+
+  private final Dns delegate;
+  private final long ttl; // nanoseconds
+  private final Ticker ticker;
+  private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+  private static class Entry {
+    private final List<InetAddress> addresses;
+    private final long expiresAt;
+
+    Entry(List<InetAddress> addresses, long expiresAt) {
+      this.addresses = addresses;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Constructs new instance using the system resolver.
+   *
+   * @param ttl  how long a lookup is reused for
+   * @param unit unit of ttl
+   */
+  public CachingDns(long ttl, TimeUnit unit) {
+    this(Dns.SYSTEM, ttl, unit, Ticker.systemTicker());
+  }
+
+  /**
+   * Constructs new instance.
+   *
+   * @param delegate resolver to cache lookups from
+   * @param ttl      how long a lookup is reused for
+   * @param unit     unit of ttl
+   */
+  public CachingDns(Dns delegate, long ttl, TimeUnit unit) {
+    this(delegate, ttl, unit, Ticker.systemTicker());
+  }
+
+  CachingDns(Dns delegate, long ttl, TimeUnit unit, Ticker ticker) {
+    this.delegate = delegate;
+    this.ttl = unit.toNanos(ttl);
+    this.ticker = ticker;
+  }
+
+  @Override
+  public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+    long now = ticker.read();
+    Entry entry = cache.get(hostname);
+    if (entry != null && now - entry.expiresAt < 0) {
+      return entry.addresses;
+    }
+
+    // Concurrent misses for a host may each look it up, the last result wins
+    List<InetAddress> addresses = Collections.unmodifiableList(delegate.lookup(hostname));
+    if (cache.size() >= MAX_ENTRIES) {
+      removeExpired(now);
+    }
+    if (entry != null || cache.size() < MAX_ENTRIES) {
+      cache.put(hostname, new Entry(addresses, now + ttl));
+    }
+    return addresses;
+  }
+
+  /** Forgets every lookup, for example after a network change. */
+  public void clear() {
+    cache.clear();
+  }
+
+  private void removeExpired(long now) {
+    Iterator<Map.Entry<String, Entry>> iterator = cache.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (now - iterator.next().getValue().expiresAt >= 0) {
+        iterator.remove();
+      }
+    }
+  }
+}
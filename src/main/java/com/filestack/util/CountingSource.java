@@ -0,0 +1,33 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+/**
+ * {@link ForwardingSource} that keeps a running count of bytes read through it.
+ * Counting only updates a single field so there's no allocation per read.
+ * Meant to have one reading thread and any number of threads checking the count.
+ */
+public class CountingSource extends ForwardingSource {
+  private volatile long bytesRead;
+
+  public CountingSource(Source delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public long read(Buffer sink, long byteCount) throws IOException {
+    long read = super.read(sink, byteCount);
+    if (read != -1) {
+      // Not atomic, but only the reading thread ever writes this field
+      bytesRead += read;
+    }
+    return read;
+  }
+
+  public long getBytesRead() {
+    return bytesRead;
+  }
+}
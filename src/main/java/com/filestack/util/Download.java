@@ -0,0 +1,85 @@
+package com.filestack.util;
+
+import com.filestack.Progress;
+import com.filestack.SecurityProvider;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
+
+/** Holds download settings and request logic. */
+public class Download {
+  final FsService fsService;
+  final SecurityProvider security;
+  final String handle;
+  final String directory;
+  final String filename;
+  final long interval; // milliseconds
+
+  /**
+   * Constructs new instance.
+   *
+   * @param filename local name for the file, if null the name it was uploaded with is used
+   * @param interval how frequently to emit progress updates
+   * @param unit     unit of the interval
+   */
+  public Download(String handle, SecurityProvider security, FsService fsService, String directory,
+                  String filename, long interval, TimeUnit unit) {
+    this.handle = handle;
+    this.security = security;
+    this.fsService = fsService;
+    this.directory = directory;
+    this.filename = filename;
+    this.interval = Math.max(1, unit.toMillis(interval));
+  }
+
+  /**
+   * Start this download asynchronously. Returns progress updates sampled every interval.
+   * The final {@link Progress} object will return the saved {@link File} from
+   * {@link Progress#getData()}. Each subscription downloads the file again, with its own progress
+   * timed from when it's subscribed.
+   *
+   * @return {@link Flowable} that emits {@link Progress} events
+   */
+  public Flowable<Progress<File>> runAsync() {
+    return Flowable
+        .defer(new Callable<Publisher<Progress<File>>>() {
+          @Override
+          public Publisher<Progress<File>> call() {
+            return run(new DownloadFunc(Download.this));
+          }
+        })
+        .observeOn(Schedulers.single());
+  }
+
+  private Flowable<Progress<File>> run(final DownloadFunc func) {
+    Flowable<Progress<File>> transferFlow = Flowable
+        .fromCallable(func)
+        .subscribeOn(Schedulers.io());
+
+    // Sample the byte count until the transfer emits its final progress object
+    return transferFlow
+        .publish(new Function<Flowable<Progress<File>>, Publisher<Progress<File>>>() {
+          @Override
+          public Publisher<Progress<File>> apply(Flowable<Progress<File>> transfer) {
+            return Flowable
+                .interval(interval, TimeUnit.MILLISECONDS)
+                .flatMap(new Function<Long, Publisher<Progress<File>>>() {
+                  @Override
+                  public Publisher<Progress<File>> apply(Long tick) {
+                    // Skip update if we haven't received anything yet
+                    if (func.getBytesRead() == 0) {
+                      return Flowable.empty();
+                    }
+                    return Flowable.just(func.snapshot(null));
+                  }
+                })
+                .takeUntil(transfer)
+                .mergeWith(transfer);
+          }
+        });
+  }
+}
@@ -0,0 +1,108 @@
+package com.filestack.util;
+
+import com.filestack.Policy;
+import com.filestack.Progress;
+import com.filestack.Security;
+import io.reactivex.Flowable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+import retrofit2.Response;
+
+/**
+ * Function to be passed to {@link Flowable#fromCallable(Callable)}.
+ * Handles requesting the file and writing it to disk through a {@link CountingSource}.
+ * Holds the progress of one run of a {@link Download}, so create one per subscription.
+ */
+public class DownloadFunc implements Callable<Progress<File>> {
+  private final Download download;
+  private final long startTime = System.currentTimeMillis();
+
+  private volatile CountingSource source;
+  private volatile long bytesTotal = -1;
+  private double avgRate; // bytes / interval
+  private long lastBytes;
+
+  DownloadFunc(Download download) {
+    this.download = download;
+  }
+
+  @Override
+  public Progress<File> call() throws Exception {
+    Security security = download.security != null ? download.security.getSecurity() : null;
+    String policy = security != null ? security.getPolicy() : null;
+    String signature = security != null ? security.getSignature() : null;
+    Util.checkPolicy(security, Policy.CALL_READ, download.handle, -1);
+
+    Response<ResponseBody> response = download.fsService
+        .get(download.handle, policy, signature)
+        .execute();
+
+    Util.checkResponseAndThrow(response);
+
+    String filename = download.filename;
+    if (filename == null) {
+      filename = response.headers().get("x-file-name");
+    }
+
+    File file = Util.createWriteFile(download.directory + "/" + filename);
+
+    ResponseBody body = response.body();
+    if (body == null) {
+      throw new IOException();
+    }
+
+    bytesTotal = body.contentLength();
+    CountingSource source = new CountingSource(body.source());
+    this.source = source;
+
+    Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.DOWNLOAD_SEGMENT);
+    BufferedSink sink = Okio.buffer(Okio.sink(file));
+    try {
+      sink.writeAll(source);
+    } finally {
+      sink.close();
+      source.close();
+      download.fsService.getMetrics().bytesReceived(source.getBytesRead());
+      FlightRecorderEvents.commit(event, 0, source.getBytesRead(), 1);
+    }
+
+    return snapshot(file);
+  }
+
+  /** Bytes read so far, 0 if the transfer hasn't started. */
+  long getBytesRead() {
+    CountingSource source = this.source;
+    return source != null ? source.getBytesRead() : 0;
+  }
+
+  /**
+   * Creates a {@link Progress} object from the current byte count.
+   * Called from both the sampling and transfer threads.
+   */
+  synchronized Progress<File> snapshot(File data) {
+    long bytesMoved = getBytesRead();
+
+    long bytes = bytesMoved - lastBytes;
+    lastBytes = bytesMoved;
+    if (bytes != 0) {
+      if (avgRate == 0) {
+        avgRate = bytes;
+      } else {
+        avgRate = Progress.calcAvg(bytes, avgRate);
+      }
+    }
+
+    // Content length is unknown for chunked responses, report what we have so far
+    long total = bytesTotal != -1 ? bytesTotal : bytesMoved;
+
+    long currentTime = System.currentTimeMillis();
+    int elapsed = (int) ((currentTime - startTime) / 1000L);
+
+    double rate = avgRate * 1000 / download.interval; // Want bytes / second not bytes / interval
+    return new Progress<>(bytesMoved, total, elapsed, rate, data);
+  }
+}
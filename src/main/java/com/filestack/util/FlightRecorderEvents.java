@@ -0,0 +1,190 @@
+package com.filestack.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits Java Flight Recorder events for the steps of uploads and downloads, so recordings can
+ * show Filestack traffic next to GC and thread activity. Each event has the part number, size in
+ * bytes and attempt, and JFR records its start time and duration.
+ *
+ * <p>The library targets Java 7, so events are defined at runtime through the
+ * {@code jdk.jfr.EventFactory} API by reflection. On JVMs without the {@code jdk.jfr} API, such as
+ * Android, every method returns right away. When JFR is present but the event isn't enabled in a
+ * recording, {@link #begin(Type)} only checks a flag and nothing is allocated.
+ */
+final class FlightRecorderEvents {
+
+  /** Steps that are recorded. */
+  enum Type {
+    PART_READ("PartRead", "Part Read", "Upload"),
+    MD5("Md5", "MD5", "Upload"),
+    UPLOAD_CALL("UploadCall", "Upload Call", "Upload"),
+    S3_PUT("S3Put", "S3 PUT", "Upload"),
+    COMMIT("Commit", "Commit", "Upload"),
+    COMPLETE("Complete", "Complete", "Upload"),
+    RETRY("Retry", "Retry", "Network"),
+    DOWNLOAD_SEGMENT("DownloadSegment", "Download Segment", "Download");
+
+    private final String name;
+    private final String label;
+    private final String category;
+
+    Type(String name, String label, String category) {
+      this.name = name;
+      this.label = label;
+      this.category = category;
+    }
+  }
+
+  // Passed to methods without arguments, so varargs don't allocate an array per call
+  private static final Object[] NO_ARGS = {};
+
+  // Null if JFR isn't available
+  private static final Object[] FACTORIES;
+  private static final Object[] EVENT_TYPES;
+  private static final Method NEW_EVENT;
+  private static final Method IS_ENABLED;
+  private static final Method BEGIN;
+  private static final Method END;
+  private static final Method SHOULD_COMMIT;
+  private static final Method SET;
+  private static final Method COMMIT;
+
+  static {
+    Object[] factories = null;
+    Object[] eventTypes = null;
+    Method newEvent = null;
+    Method isEnabled = null;
+    Method begin = null;
+    Method end = null;
+    Method shouldCommit = null;
+    Method set = null;
+    Method commit = null;
+    try {
+      Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+      Class<?> eventClass = Class.forName("jdk.jfr.Event");
+      Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+      Method create = factoryClass.getMethod("create", List.class, List.class);
+      Method getEventType = factoryClass.getMethod("getEventType");
+      newEvent = factoryClass.getMethod("newEvent");
+      isEnabled = eventTypeClass.getMethod("isEnabled");
+      begin = eventClass.getMethod("begin");
+      end = eventClass.getMethod("end");
+      shouldCommit = eventClass.getMethod("shouldCommit");
+      set = eventClass.getMethod("set", int.class, Object.class);
+      commit = eventClass.getMethod("commit");
+
+      List<Object> fields = Arrays.asList(
+          field(int.class, "part", "Part"),
+          field(long.class, "size", "Size"),
+          field(int.class, "attempt", "Attempt"));
+
+      Type[] types = Type.values();
+      factories = new Object[types.length];
+      eventTypes = new Object[types.length];
+      for (Type type : types) {
+        List<Object> annotations = Arrays.asList(
+            annotation("jdk.jfr.Name", "com.filestack." + type.name),
+            annotation("jdk.jfr.Label", type.label),
+            annotation("jdk.jfr.Category", new String[] {"Filestack", type.category}));
+        Object factory = create.invoke(null, annotations, fields);
+        factories[type.ordinal()] = factory;
+        eventTypes[type.ordinal()] = getEventType.invoke(factory);
+      }
+    } catch (Exception | LinkageError e) {
+      factories = null;
+    }
+    FACTORIES = factories;
+    EVENT_TYPES = eventTypes;
+    NEW_EVENT = newEvent;
+    IS_ENABLED = isEnabled;
+    BEGIN = begin;
+    END = end;
+    SHOULD_COMMIT = shouldCommit;
+    SET = set;
+    COMMIT = commit;
+  }
+
+  private FlightRecorderEvents() {}
+
+  /** Returns true if this JVM supports JFR events. */
+  static boolean isAvailable() {
+    return FACTORIES != null;
+  }
+
+  /**
+   * Starts timing a step.
+   *
+   * @return event to pass to {@link #commit(Object, int, long, int)}, null if it isn't recorded
+   */
+  static Object begin(Type type) {
+    if (FACTORIES == null) {
+      return null;
+    }
+    try {
+      if (!(Boolean) IS_ENABLED.invoke(EVENT_TYPES[type.ordinal()], NO_ARGS)) {
+        return null;
+      }
+      Object event = NEW_EVENT.invoke(FACTORIES[type.ordinal()], NO_ARGS);
+      BEGIN.invoke(event, NO_ARGS);
+      return event;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Ends a step started with {@link #begin(Type)} and records it. Does nothing for null.
+   *
+   * @param part    part number, or the first block of a download segment, 0 if not known
+   * @param size    bytes handled by the step
+   * @param attempt 1 for the first attempt, higher for retries
+   */
+  static void commit(Object event, int part, long size, int attempt) {
+    if (event == null) {
+      return;
+    }
+    try {
+      END.invoke(event, NO_ARGS);
+      if ((Boolean) SHOULD_COMMIT.invoke(event, NO_ARGS)) {
+        SET.invoke(event, 0, part);
+        SET.invoke(event, 1, size);
+        SET.invoke(event, 2, attempt);
+        COMMIT.invoke(event, NO_ARGS);
+      }
+    } catch (Exception e) {
+      // Recording is best effort, it must never fail a transfer
+    }
+  }
+
+  /** Records an event without a duration, such as a retry. */
+  static void instant(Type type, int part, long size, int attempt) {
+    commit(begin(type), part, size, attempt);
+  }
+
+  private static Object field(Class<?> type, String name, String label) throws Exception {
+    Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+    Constructor<?> constructor = descriptorClass.getConstructor(Class.class, String.class,
+        List.class);
+    List<Object> annotations = new ArrayList<>();
+    annotations.add(annotation("jdk.jfr.Label", label));
+    if (name.equals("size")) {
+      annotations.add(annotation("jdk.jfr.DataAmount", "BYTES"));
+    }
+    return constructor.newInstance(type, name, annotations);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object annotation(String className, Object value) throws Exception {
+    Class<? extends Annotation> annotationClass =
+        (Class<? extends Annotation>) Class.forName(className);
+    Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement");
+    Constructor<?> constructor = elementClass.getConstructor(Class.class, Object.class);
+    return constructor.newInstance(annotationClass, value);
+  }
+}
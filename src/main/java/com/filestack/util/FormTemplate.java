@@ -0,0 +1,95 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.UUID;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Multipart form with the fields that are the same for every request encoded once. Used for the
+ * upload API call made for every chunk, where only the part, size, MD5 and offset change. Bodies
+ * created from a template only encode the fields passed in, and have the same bytes Retrofit
+ * writes for a {@link retrofit2.http.PartMap} of all the fields. Immutable, so one template can be
+ * used by all the threads of an upload.
+ */
+final class FormTemplate {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // Type of the parts made by Util.createStringPart
+  private static final MediaType STRING_TYPE =
+      MediaType.parse("multipart/form-data; charset=utf-8");
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] DASHDASH = {'-', '-'};
+
+  private final String boundary;
+  private final MediaType contentType;
+  private final byte[] prefix;
+
+  /** Encodes the fields every body from this template starts with. */
+  FormTemplate(Map<String, RequestBody> fields) throws IOException {
+    this.boundary = UUID.randomUUID().toString();
+    this.contentType = MediaType.parse("multipart/form-data; boundary=" + boundary);
+    Buffer buffer = new Buffer();
+    for (Map.Entry<String, RequestBody> field : fields.entrySet()) {
+      RequestBody body = field.getValue();
+      writeHeaders(buffer, field.getKey(), body.contentType(), body.contentLength());
+      body.writeTo(buffer);
+      buffer.write(CRLF);
+    }
+    this.prefix = buffer.readByteArray();
+  }
+
+  /** Creates a body with the template's fields followed by these string fields. */
+  RequestBody create(Map<String, String> fields) {
+    Buffer buffer = new Buffer();
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      byte[] value = field.getValue().getBytes(UTF_8);
+      writeHeaders(buffer, field.getKey(), STRING_TYPE, value.length);
+      buffer.write(value).write(CRLF);
+    }
+    buffer.write(DASHDASH).writeUtf8(boundary).write(DASHDASH).write(CRLF);
+    return new Form(buffer.readByteArray());
+  }
+
+  // Same headers as Retrofit's part map, in the order OkHttp writes them
+  private void writeHeaders(Buffer buffer, String name, MediaType type, long length) {
+    buffer.write(DASHDASH).writeUtf8(boundary).write(CRLF)
+        .writeUtf8("Content-Disposition: form-data; name=\"").writeUtf8(name).writeUtf8("\"")
+        .write(CRLF)
+        .writeUtf8("Content-Transfer-Encoding: binary").write(CRLF);
+    if (type != null) {
+      buffer.writeUtf8("Content-Type: ").writeUtf8(type.toString()).write(CRLF);
+    }
+    if (length != -1) {
+      buffer.writeUtf8("Content-Length: ").writeDecimalLong(length).write(CRLF);
+    }
+    buffer.write(CRLF);
+  }
+
+  /** Body of the shared fields followed by the fields of one request. */
+  private class Form extends RequestBody {
+    private final byte[] suffix;
+
+    Form(byte[] suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+      return prefix.length + suffix.length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      sink.write(prefix).write(suffix);
+    }
+  }
+}
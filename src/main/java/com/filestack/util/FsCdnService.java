@@ -8,6 +8,7 @@ import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
@@ -24,6 +25,14 @@ public interface FsCdnService {
       @Query("policy") String policy,
       @Query("signature") String signature);
 
+  @GET("{handle}")
+  @Streaming
+  Call<ResponseBody> getRange(
+      @Path("handle") String handle,
+      @Header("Range") String range,
+      @Query("policy") String policy,
+      @Query("signature") String signature);
+
   // Using an existing handle
   @Streaming
   @GET("{tasks}/{handle}")
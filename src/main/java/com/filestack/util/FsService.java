@@ -1,24 +1,45 @@
 package com.filestack.util;
 
+import com.filestack.FilestackMetrics;
+import com.filestack.NoOpMetrics;
 import com.filestack.responses.CompleteResponse;
 import com.filestack.responses.StartResponse;
 import com.filestack.responses.StoreResponse;
 import com.filestack.responses.UploadResponse;
 import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 
-/** Combines all REST services into a single service. */
+/**
+ * Combines all REST services into a single service. Identical reads of files and transformations
+ * that run at the same time share one request.
+ *
+ * @see NetworkingContext.Builder#coalesceReads(long)
+ */
 public class FsService implements FsApiService, FsCdnService, FsUploadService {
+  // Shared by every instance without a networking context
+  private static final SingleFlight SINGLE_FLIGHT =
+      new SingleFlight(NetworkingContext.DEFAULT_COALESCE_LIMIT);
+
   private FsApiService customApiService;
   private FsCdnService customCdnService;
   private FsUploadService customUploadService;
+  private NetworkingContext networkingContext;
 
   /** Constructs instance using singleton REST services. */
   public FsService() { }
 
+  /** Constructs instance using the REST services of a networking context. */
+  public FsService(NetworkingContext networkingContext) {
+    this.networkingContext = networkingContext;
+  }
+
   /** Constructs instance using custom REST services. */
   public FsService(FsApiService api, FsCdnService cdn, FsUploadService upload) {
     this.customApiService = api;
@@ -29,6 +50,8 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
   private FsApiService getApiService() {
     if (customApiService != null) {
       return customApiService;
+    } else if (networkingContext != null) {
+      return networkingContext.getFsApiService();
     } else {
       return Networking.getFsApiService();
     }
@@ -37,6 +60,8 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
   private FsCdnService getCdnService() {
     if (customCdnService != null) {
       return customCdnService;
+    } else if (networkingContext != null) {
+      return networkingContext.getFsCdnService();
     } else {
       return Networking.getFsCdnService();
     }
@@ -45,11 +70,63 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
   private FsUploadService getUploadService() {
     if (customUploadService != null) {
       return customUploadService;
+    } else if (networkingContext != null) {
+      return networkingContext.getFsUploadService();
     } else {
       return Networking.getFsUploadService();
     }
   }
 
+  private SingleFlight getSingleFlight() {
+    return networkingContext != null ? networkingContext.getSingleFlight() : SINGLE_FLIGHT;
+  }
+
+  /**
+   * Returns the metrics of the networking context, or ones that are ignored if there isn't one.
+   * Final so that mocks of this service report to the ignored metrics instead of returning null.
+   */
+  public final FilestackMetrics getMetrics() {
+    return networkingContext != null ? networkingContext.getMetrics() : NoOpMetrics.INSTANCE;
+  }
+
+  /**
+   * Creates requests that each open a connection to one endpoint, which is kept in the pool for
+   * the traffic it belongs to. The default S3 endpoint and extra URLs use the upload pool.
+   * Returns no requests if custom services are set, their clients aren't known.
+   *
+   * @param extraUrls other hosts to connect to, for example a regional S3 endpoint
+   */
+  public List<okhttp3.Call> createWarmUpCalls(String... extraUrls) {
+    List<okhttp3.Call> calls = new ArrayList<>();
+    if (customApiService != null || customCdnService != null || customUploadService != null) {
+      return calls;
+    }
+
+    OkHttpClient apiClient;
+    OkHttpClient cdnClient;
+    OkHttpClient uploadClient;
+    if (networkingContext != null) {
+      apiClient = networkingContext.getApiClient();
+      cdnClient = networkingContext.getCdnClient();
+      uploadClient = networkingContext.getS3Client();
+    } else {
+      apiClient = cdnClient = uploadClient = Networking.getHttpClient();
+    }
+
+    calls.add(createWarmUpCall(apiClient, FsApiService.URL));
+    calls.add(createWarmUpCall(cdnClient, FsCdnService.URL));
+    calls.add(createWarmUpCall(uploadClient, FsUploadService.URL));
+    calls.add(createWarmUpCall(uploadClient, FsUploadService.S3_URL));
+    for (String url : extraUrls) {
+      calls.add(createWarmUpCall(uploadClient, url));
+    }
+    return calls;
+  }
+
+  private static okhttp3.Call createWarmUpCall(OkHttpClient client, String url) {
+    return client.newCall(new Request.Builder().url(url).head().build());
+  }
+
   @Override
   public Call<ResponseBody> overwrite(String handle, String policy, String signature,
                                       RequestBody body) {
@@ -63,12 +140,20 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
 
   @Override
   public Call<ResponseBody> get(String handle, String policy, String signature) {
-    return getCdnService().get(handle, policy, signature);
+    return getSingleFlight().wrap(getCdnService().get(handle, policy, signature),
+        "get", handle, policy, signature);
+  }
+
+  @Override
+  public Call<ResponseBody> getRange(String handle, String range, String policy,
+                                     String signature) {
+    return getCdnService().getRange(handle, range, policy, signature);
   }
 
   @Override
   public Call<ResponseBody> transform(String tasks, String handle) {
-    return getCdnService().transform(tasks, handle);
+    return getSingleFlight().wrap(getCdnService().transform(tasks, handle),
+        "transform", tasks, handle);
   }
 
   @Override
@@ -83,7 +168,8 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
 
   @Override
   public Call<ResponseBody> transformExt(String key, String tasks, String url) {
-    return getCdnService().transformExt(key, tasks, url);
+    return getSingleFlight().wrap(getCdnService().transformExt(key, tasks, url),
+        "transformExt", key, tasks, url);
   }
 
   @Override
@@ -106,6 +192,11 @@ public class FsService implements FsApiService, FsCdnService, FsUploadService {
     return getUploadService().upload(parameters);
   }
 
+  @Override
+  public Call<UploadResponse> uploadForm(RequestBody form) {
+    return getUploadService().uploadForm(form);
+  }
+
   @Override
   public Call<ResponseBody> uploadS3(Map<String, String> headers, String url, RequestBody body) {
     return getUploadService().uploadS3(headers, url, body);
@@ -18,6 +18,8 @@ import retrofit2.http.Url;
 /** Wraps endpoints that run on upload.filestackapi.com. */
 public interface FsUploadService {
   String URL = "https://upload.filestackapi.com/";
+  // Default S3 endpoint, part URLs from /multipart/start can also use regional hosts
+  String S3_URL = "https://s3.amazonaws.com/";
 
   @Multipart
   @POST("/multipart/start")
@@ -27,6 +29,10 @@ public interface FsUploadService {
   @POST("/multipart/upload")
   Call<UploadResponse> upload(@PartMap Map<String, RequestBody> parameters);
 
+  // Same as upload, with a multipart form body encoded by the caller
+  @POST("/multipart/upload")
+  Call<UploadResponse> uploadForm(@Body RequestBody form);
+
   @PUT
   Call<ResponseBody> uploadS3(
       @HeaderMap Map<String, String> headers,
@@ -0,0 +1,98 @@
+package com.filestack.util;
+
+import com.filestack.errors.InvalidArgumentException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures hedged CDN reads. If the response headers of a read haven't arrived after a delay,
+ * a duplicate request is sent and whichever answers first is used, the other is cancelled. The
+ * delay follows a percentile of recent read latencies, so only the slowest reads are hedged.
+ * Hedges are also limited to a fraction of reads, so a slow CDN can't double the traffic.
+ *
+ * @see NetworkingContext.Builder#hedgeCdnReads(HedgePolicy)
+ */
+public class HedgePolicy {
+  private final double percentile;
+  private final long minDelay; // nanoseconds
+  private final long maxDelay;
+  private final double maxHedgeRate;
+
+  private HedgePolicy(Builder builder) {
+    this.percentile = builder.percentile;
+    this.minDelay = builder.minDelay;
+    this.maxDelay = builder.maxDelay;
+    this.maxHedgeRate = builder.maxHedgeRate;
+  }
+
+  /**
+   * Builds new {@link HedgePolicy}. By default reads slower than the 95th percentile are hedged,
+   * after between 20 milliseconds and 1 second, and at most 5% of reads are hedged.
+   */
+  public static class Builder {
+    private double percentile = 95;
+    private long minDelay = TimeUnit.MILLISECONDS.toNanos(20);
+    private long maxDelay = TimeUnit.SECONDS.toNanos(1);
+    private double maxHedgeRate = 0.05;
+
+    /** Set the percentile of recent latencies to wait for before hedging, from 50 to 100. */
+    public Builder percentile(double percentile) {
+      if (percentile < 50 || percentile > 100) {
+        throw new InvalidArgumentException("Percentile must be from 50 to 100");
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
+    /** Set the shortest delay before hedging, however fast recent reads were. */
+    public Builder minDelay(long delay, TimeUnit unit) {
+      this.minDelay = unit.toNanos(delay);
+      return this;
+    }
+
+    /**
+     * Set the longest delay before hedging, however slow recent reads were. Also used until
+     * enough reads have been timed.
+     */
+    public Builder maxDelay(long delay, TimeUnit unit) {
+      this.maxDelay = unit.toNanos(delay);
+      return this;
+    }
+
+    /** Set the largest fraction of reads that can be hedged, from 0 to 1. */
+    public Builder maxHedgeRate(double maxHedgeRate) {
+      if (maxHedgeRate < 0 || maxHedgeRate > 1) {
+        throw new InvalidArgumentException("Hedge rate must be from 0 to 1");
+      }
+      this.maxHedgeRate = maxHedgeRate;
+      return this;
+    }
+
+    /**
+     * Create the {@link HedgePolicy} using the configured values.
+     *
+     * @throws InvalidArgumentException if the min delay is negative or over the max delay
+     */
+    public HedgePolicy build() {
+      if (minDelay < 0 || minDelay > maxDelay) {
+        throw new InvalidArgumentException("Min delay must be from 0 to the max delay");
+      }
+      return new HedgePolicy(this);
+    }
+  }
+
+  double getPercentile() {
+    return percentile;
+  }
+
+  long getMinDelay() {
+    return minDelay;
+  }
+
+  long getMaxDelay() {
+    return maxDelay;
+  }
+
+  double getMaxHedgeRate() {
+    return maxHedgeRate;
+  }
+}
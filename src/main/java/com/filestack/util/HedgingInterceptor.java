@@ -0,0 +1,254 @@
+package com.filestack.util;
+
+import com.filestack.FilestackMetrics;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Runs the requests of a client through another client, hedging GET requests as set by a
+ * {@link HedgePolicy}. The first request is enqueued, and if its response headers haven't arrived
+ * after the hedge delay and the hedge budget allows, a second one is enqueued. The first to return
+ * headers is used and the other is cancelled. Cancelling the call cancels every copy. Other
+ * methods are run once, without hedging.
+ *
+ * <p>The delay is the policy's percentile of the last {@value #SAMPLES} latencies, recomputed
+ * every {@value #RECOMPUTE_EVERY} requests. The budget is a token bucket that every GET adds the
+ * max hedge rate to and every hedge takes one from, so bursts of up to {@value #MAX_TOKENS}
+ * hedges are allowed after a quiet period.
+ */
+final class HedgingInterceptor implements Interceptor {
+  private static final int SAMPLES = 256;
+  private static final int RECOMPUTE_EVERY = 32;
+  private static final int MAX_TOKENS = 10;
+  private static final long TOKEN = 1000; // tokens are counted in thousandths
+  // How often a wait checks if the call was cancelled
+  private static final long CANCEL_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final OkHttpClient client;
+  private final HedgePolicy policy;
+  private final FilestackMetrics metrics;
+  private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+  private final AtomicLong sampleCount = new AtomicLong();
+  private final AtomicLong tokens = new AtomicLong();
+  private volatile long delay; // nanoseconds
+
+  /**
+   * @param client  client the requests are run with, it shouldn't have this interceptor
+   * @param policy  when to hedge
+   * @param metrics reports every GET and whether it was hedged
+   */
+  HedgingInterceptor(OkHttpClient client, HedgePolicy policy, FilestackMetrics metrics) {
+    this.client = client;
+    this.policy = policy;
+    this.metrics = metrics;
+    this.delay = policy.getMaxDelay();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (!request.method().equals("GET")) {
+      return client.newCall(request).execute();
+    }
+
+    addTokens();
+    long start = System.nanoTime();
+    HedgedRequest hedged = new HedgedRequest(request);
+    hedged.enqueue();
+
+    Response response;
+    boolean hedgeSent = false;
+    try {
+      response = await(chain, hedged, delay);
+      if (response == null && takeToken()) {
+        hedgeSent = hedged.enqueue();
+      }
+      if (response == null) {
+        response = await(chain, hedged, -1);
+      }
+    } catch (IOException e) {
+      hedged.cancel();
+      throw e;
+    }
+
+    recordSample(System.nanoTime() - start);
+    metrics.hedgedRead(hedgeSent, hedged.winner == 1);
+    return response;
+  }
+
+  /**
+   * Waits for the response in slices, so that cancelling the call stops the wait.
+   *
+   * @param timeout nanoseconds to wait, negative to wait until done
+   * @return response, or null if it timed out
+   * @throws IOException if every copy failed, or the call was cancelled
+   */
+  private static Response await(Chain chain, HedgedRequest hedged, long timeout)
+      throws IOException {
+    long deadline = System.nanoTime() + timeout;
+    while (!chain.call().isCanceled()) {
+      long remaining = timeout < 0 ? CANCEL_CHECK_INTERVAL : deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      Response response = hedged.await(Math.min(remaining, CANCEL_CHECK_INTERVAL));
+      if (response != null) {
+        return response;
+      }
+    }
+    throw new IOException("Canceled");
+  }
+
+  /** Returns the current hedge delay in nanoseconds. */
+  long getDelay() {
+    return delay;
+  }
+
+  /** Adds the max hedge rate to the budget, up to its limit. */
+  void addTokens() {
+    long added = (long) (policy.getMaxHedgeRate() * TOKEN);
+    long current;
+    long next;
+    do {
+      current = tokens.get();
+      next = Math.min(current + added, MAX_TOKENS * TOKEN);
+    } while (current != next && !tokens.compareAndSet(current, next));
+  }
+
+  /** Takes a hedge from the budget, returns false if there isn't one. */
+  boolean takeToken() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+
+  /** Records the latency of a request and recomputes the delay when it's due. */
+  void recordSample(long nanos) {
+    long count = sampleCount.incrementAndGet();
+    samples.set((int) ((count - 1) % SAMPLES), nanos);
+    if (count % RECOMPUTE_EVERY == 0) {
+      int size = (int) Math.min(count, SAMPLES);
+      long[] sorted = new long[size];
+      for (int i = 0; i < size; i++) {
+        sorted[i] = samples.get(i);
+      }
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(size * policy.getPercentile() / 100);
+      long value = sorted[Math.max(0, Math.min(rank, size) - 1)];
+      delay = Math.max(policy.getMinDelay(), Math.min(value, policy.getMaxDelay()));
+    }
+  }
+
+  /** Copies of one request, the first to return headers wins. */
+  private class HedgedRequest {
+    private final Request request;
+    private final SettableFuture<Response> result = SettableFuture.create();
+    private final List<Call> calls = new ArrayList<>(2);
+    private int failed;
+    private volatile int winner = -1;
+
+    HedgedRequest(Request request) {
+      this.request = request;
+    }
+
+    /** Enqueues a copy, returns false if a copy already won. */
+    synchronized boolean enqueue() {
+      if (winner != -1 || result.isDone()) {
+        return false;
+      }
+      final int index = calls.size();
+      Call call = client.newCall(request);
+      calls.add(call);
+      call.enqueue(new Callback() {
+        @Override
+        public void onResponse(Call call, Response response) {
+          if (!win(index, response)) {
+            response.close();
+          }
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+          fail(e);
+        }
+      });
+      return true;
+    }
+
+    // Sets the result under the lock, so no copy is enqueued once one has won
+    private synchronized boolean win(int index, Response response) {
+      if (winner != -1 || result.isDone()) {
+        return false;
+      }
+      winner = index;
+      result.set(response);
+      for (int i = 0; i < calls.size(); i++) {
+        if (i != index) {
+          calls.get(i).cancel();
+        }
+      }
+      return true;
+    }
+
+    // The request only fails once every copy has
+    private synchronized void fail(IOException e) {
+      failed++;
+      if (winner == -1 && failed == calls.size()) {
+        result.setException(e);
+      }
+    }
+
+    /** Cancels every copy, and closes the winning response if the caller gave up on it. */
+    synchronized void cancel() {
+      for (Call call : calls) {
+        call.cancel();
+      }
+      if (winner != -1) {
+        try {
+          result.get().close();
+        } catch (InterruptedException | ExecutionException e) {
+          // Not possible once a copy has won
+        }
+      }
+    }
+
+    /**
+     * Waits for the winning response.
+     *
+     * @param timeout nanoseconds to wait, negative to wait until done
+     * @return response, or null if it timed out
+     */
+    Response await(long timeout) throws IOException {
+      try {
+        return timeout < 0 ? result.get() : result.get(timeout, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        return null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        throw (IOException) e.getCause();
+      }
+    }
+  }
+}
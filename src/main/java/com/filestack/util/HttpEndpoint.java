@@ -0,0 +1,43 @@
+package com.filestack.util;
+
+import okhttp3.HttpUrl;
+
+/** Endpoints that requests are grouped by in {@link HttpMetrics}. */
+public enum HttpEndpoint {
+  START,
+  UPLOAD,
+  S3,
+  COMMIT,
+  COMPLETE,
+  CDN,
+  API;
+
+  private static final String UPLOAD_HOST = HttpUrl.parse(FsUploadService.URL).host();
+  private static final String CDN_HOST = HttpUrl.parse(FsCdnService.URL).host();
+  private static final String API_HOST = HttpUrl.parse(FsApiService.URL).host();
+
+  /** Returns the endpoint of a request URL. Hosts that aren't Filestack's are taken to be S3. */
+  public static HttpEndpoint of(HttpUrl url) {
+    String host = url.host();
+    if (host.equals(CDN_HOST)) {
+      return CDN;
+    }
+    if (host.equals(API_HOST)) {
+      return API;
+    }
+    if (host.equals(UPLOAD_HOST)) {
+      String path = url.encodedPath();
+      if (path.endsWith("/start")) {
+        return START;
+      }
+      if (path.endsWith("/commit")) {
+        return COMMIT;
+      }
+      if (path.endsWith("/complete")) {
+        return COMPLETE;
+      }
+      return UPLOAD;
+    }
+    return S3;
+  }
+}
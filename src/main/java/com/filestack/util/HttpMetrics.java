@@ -0,0 +1,19 @@
+package com.filestack.util;
+
+/**
+ * Receives the timings of HTTP requests made through a {@link NetworkingContext} with metrics
+ * set. Called on the thread making the request, so implementations must be thread-safe and fast.
+ *
+ * @see HttpTimings
+ */
+public interface HttpMetrics {
+
+  /**
+   * Records the duration of one phase of a request.
+   *
+   * @param endpoint endpoint the request was made to
+   * @param phase    phase of the request
+   * @param nanos    duration in nanoseconds
+   */
+  void recordHttpPhase(HttpEndpoint endpoint, HttpPhase phase, long nanos);
+}
@@ -0,0 +1,15 @@
+package com.filestack.util;
+
+/** Phases of a request timed by {@link HttpTimingInterceptor}. */
+public enum HttpPhase {
+  /** Host lookup, only recorded when a new connection is made. */
+  DNS,
+  /** Getting a connection, TCP and TLS handshakes for a new one. Excludes DNS. */
+  CONNECT,
+  /** Writing the request body, only recorded for requests with one. */
+  REQUEST_BODY,
+  /** From the request being sent to the response headers arriving. */
+  TIME_TO_FIRST_BYTE,
+  /** From the start of the call to the response headers, including retries and redirects. */
+  TOTAL
+}
@@ -0,0 +1,136 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Times the {@link HttpPhase phases} of each request and reports them to {@link HttpMetrics}.
+ * Add this as an application interceptor, {@link #networkInterceptor()} as a network interceptor
+ * and wrap the client's resolver with {@link #timeDns(Dns)}, all on the same client.
+ *
+ * <p>OkHttp runs the interceptors and resolver of a call on one thread, so the timestamps of the
+ * call in progress are kept per thread. Nothing is allocated per request except a wrapper for
+ * request bodies. Reading the response body isn't timed.
+ */
+public class HttpTimingInterceptor implements Interceptor {
+  private final HttpMetrics metrics;
+
+  private final ThreadLocal<CallTiming> timings = new ThreadLocal<CallTiming>() {
+    @Override
+    protected CallTiming initialValue() {
+      return new CallTiming();
+    }
+  };
+
+  /** Timestamps of the call running on a thread. */
+  private static class CallTiming {
+    long phaseStart; // end of the previous phase
+    long dns; // time spent resolving since phaseStart
+    long bodyStart;
+    long bodyEnd;
+  }
+
+  public HttpTimingInterceptor(HttpMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    long start = System.nanoTime();
+    CallTiming timing = timings.get();
+    timing.phaseStart = start;
+    timing.dns = 0;
+
+    Response response = chain.proceed(request);
+
+    metrics.recordHttpPhase(HttpEndpoint.of(request.url()), HttpPhase.TOTAL,
+        System.nanoTime() - start);
+    return response;
+  }
+
+  /** Returns the interceptor to add with {@code addNetworkInterceptor}. */
+  public Interceptor networkInterceptor() {
+    return new Interceptor() {
+      @Override
+      public Response intercept(Chain chain) throws IOException {
+        return interceptNetwork(chain);
+      }
+    };
+  }
+
+  /** Returns a resolver that times lookups made by the given one. */
+  public Dns timeDns(final Dns dns) {
+    return new Dns() {
+      @Override
+      public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long start = System.nanoTime();
+        try {
+          return dns.lookup(hostname);
+        } finally {
+          timings.get().dns += System.nanoTime() - start;
+        }
+      }
+    };
+  }
+
+  private Response interceptNetwork(Chain chain) throws IOException {
+    long sendStart = System.nanoTime();
+    final CallTiming timing = timings.get();
+    Request request = chain.request();
+    HttpEndpoint endpoint = HttpEndpoint.of(request.url());
+
+    if (timing.dns != 0) {
+      metrics.recordHttpPhase(endpoint, HttpPhase.DNS, timing.dns);
+    }
+    metrics.recordHttpPhase(endpoint, HttpPhase.CONNECT,
+        sendStart - timing.phaseStart - timing.dns);
+    timing.dns = 0;
+    timing.bodyEnd = 0;
+
+    final RequestBody body = request.body();
+    if (body != null) {
+      request = request.newBuilder().method(request.method(), new RequestBody() {
+        @Override
+        public MediaType contentType() {
+          return body.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+          return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+          timing.bodyStart = System.nanoTime();
+          body.writeTo(sink);
+          timing.bodyEnd = System.nanoTime();
+        }
+      }).build();
+    }
+
+    Response response = chain.proceed(request);
+
+    long headersEnd = System.nanoTime();
+    long firstByteStart = sendStart;
+    if (timing.bodyEnd != 0) {
+      metrics.recordHttpPhase(endpoint, HttpPhase.REQUEST_BODY,
+          timing.bodyEnd - timing.bodyStart);
+      firstByteStart = timing.bodyEnd;
+    }
+    metrics.recordHttpPhase(endpoint, HttpPhase.TIME_TO_FIRST_BYTE, headersEnd - firstByteStart);
+    // A follow up request gets its connection after this
+    timing.phaseStart = headersEnd;
+    return response;
+  }
+}
@@ -0,0 +1,29 @@
+package com.filestack.util;
+
+/**
+ * Keeps a {@link LatencyHistogram} for each endpoint and phase of the requests it's given.
+ * Safe to share between threads.
+ */
+public class HttpTimings implements HttpMetrics {
+  private final LatencyHistogram[][] histograms =
+      new LatencyHistogram[HttpEndpoint.values().length][HttpPhase.values().length];
+
+  /** Constructs new instance with empty histograms. */
+  public HttpTimings() {
+    for (LatencyHistogram[] phases : histograms) {
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new LatencyHistogram();
+      }
+    }
+  }
+
+  @Override
+  public void recordHttpPhase(HttpEndpoint endpoint, HttpPhase phase, long nanos) {
+    histograms[endpoint.ordinal()][phase.ordinal()].record(nanos);
+  }
+
+  /** Returns the histogram of a phase for requests to an endpoint. */
+  public LatencyHistogram getHistogram(HttpEndpoint endpoint, HttpPhase phase) {
+    return histograms[endpoint.ordinal()][phase.ordinal()];
+  }
+}
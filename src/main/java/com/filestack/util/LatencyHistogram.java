@@ -0,0 +1,98 @@
+package com.filestack.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with buckets that double in width, from 1 microsecond to over a day.
+ * Recording never locks or allocates, so it can be called for every request from any thread.
+ * Percentiles are estimated as the upper bound of the bucket they fall in, so they're within a
+ * factor of two of the real value.
+ */
+public class LatencyHistogram {
+  // Bucket i counts durations under 2^(i+1) microseconds, down to 2^i for i > 0
+  private static final int BUCKETS = 38;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong(); // nanoseconds
+  private final AtomicLong max = new AtomicLong();
+
+  /** Records a duration in nanoseconds. Negative durations are recorded as 0. */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet(bucketOf(nanos));
+    total.addAndGet(nanos);
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  /** Returns the number of durations recorded. */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += buckets.get(i);
+    }
+    return count;
+  }
+
+  /** Returns the sum of the durations recorded. */
+  public long getTotal(TimeUnit unit) {
+    return unit.convert(total.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the longest duration recorded, 0 if there are none. */
+  public long getMax(TimeUnit unit) {
+    return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the mean duration, 0 if there are none. */
+  public long getMean(TimeUnit unit) {
+    long count = getCount();
+    return count == 0 ? 0 : unit.convert(total.get() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Estimates a percentile of the durations recorded.
+   *
+   * @param percentile between 0 and 100
+   * @param unit       unit of the returned duration
+   * @return upper bound of the bucket holding the percentile, 0 if there are no durations
+   */
+  public long getPercentile(double percentile, TimeUnit unit) {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      count += counts[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    int bucket = BUCKETS - 1;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        bucket = i;
+        break;
+      }
+    }
+    long upper = Math.min(TimeUnit.MICROSECONDS.toNanos(1L << (bucket + 1)), max.get());
+    return unit.convert(upper, TimeUnit.NANOSECONDS);
+  }
+
+  private static int bucketOf(long nanos) {
+    long micros = nanos / 1000;
+    if (micros == 0) {
+      return 0;
+    }
+    return Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+  }
+}
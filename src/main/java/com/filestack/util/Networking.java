@@ -1,5 +1,6 @@
 package com.filestack.util;
 
+import com.google.gson.Gson;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
@@ -9,83 +10,156 @@ import retrofit2.converter.gson.GsonConverterFactory;
 /**
  * Holds {@link OkHttpClient} and {@link Retrofit} singletons.
  * We only want to instantiate these classes once per app.
+ * Use a {@link NetworkingContext} for clients that need their own settings.
  */
 public class Networking {
-  private static OkHttpClient httpClient;
-  private static FsApiService fsApiService;
-  private static FsCdnService fsCdnService;
-  private static FsUploadService fsUploadService;
+  // Thread safe and caches type adapters, so one instance is shared for all parsing
+  private static final Gson gson = new Gson();
+  private static final long DNS_CACHE_TTL = 60; // seconds
+
+  private static volatile OkHttpClient httpClient;
+  private static volatile OkHttpClient uploadClient;
+  private static boolean customClient;
+  private static volatile FsApiService fsApiService;
+  private static volatile FsCdnService fsCdnService;
+  private static volatile FsUploadService fsUploadService;
+
+  /**
+   * Get the shared {@link Gson} instance. Response classes parse with streaming adapters
+   * registered through their {@link com.google.gson.annotations.JsonAdapter} annotation.
+   */
+  public static Gson getGson() {
+    return gson;
+  }
 
   /** Get http client singleton. */
   public static OkHttpClient getHttpClient() {
-    if (httpClient == null) {
-      httpClient = new OkHttpClient.Builder()
-          .addInterceptor(new HeaderInterceptor())
-          .readTimeout(30, TimeUnit.SECONDS)
-          .connectTimeout(30, TimeUnit.SECONDS)
-          .writeTimeout(30, TimeUnit.SECONDS)
-          .retryOnConnectionFailure(false)
-          .build();
+    OkHttpClient client = httpClient;
+    if (client == null) {
+      synchronized (Networking.class) {
+        client = httpClient;
+        if (client == null) {
+          client = new OkHttpClient.Builder()
+              .addInterceptor(new HeaderInterceptor())
+              .readTimeout(30, TimeUnit.SECONDS)
+              .connectTimeout(30, TimeUnit.SECONDS)
+              .writeTimeout(30, TimeUnit.SECONDS)
+              .retryOnConnectionFailure(false)
+              .build();
+          httpClient = client;
+        }
+      }
+    }
+    return client;
+  }
+
+  /**
+   * Get the client uploads are sent with. It's the http client with DNS lookups cached for 60
+   * seconds, so S3 part uploads don't resolve the same hosts again and again. The pool and
+   * dispatcher are shared. A custom client is used as is.
+   */
+  static OkHttpClient getUploadClient() {
+    OkHttpClient client = uploadClient;
+    if (client == null) {
+      synchronized (Networking.class) {
+        client = uploadClient;
+        if (client == null) {
+          client = getHttpClient();
+          if (!customClient) {
+            client = client.newBuilder()
+                .dns(new CachingDns(client.dns(), DNS_CACHE_TTL, TimeUnit.SECONDS))
+                .build();
+          }
+          uploadClient = client;
+        }
+      }
     }
-    return httpClient;
+    return client;
   }
 
   /**
    * Get {@link FsApiService} singleton.
    */
   public static FsApiService getFsApiService() {
-    if (fsApiService == null) {
-      Retrofit retrofit = getRetrofitBuilder().baseUrl(FsApiService.URL).build();
-      fsApiService = retrofit.create(FsApiService.class);
+    FsApiService service = fsApiService;
+    if (service == null) {
+      synchronized (Networking.class) {
+        service = fsApiService;
+        if (service == null) {
+          Retrofit retrofit = getRetrofitBuilder().baseUrl(FsApiService.URL).build();
+          service = retrofit.create(FsApiService.class);
+          fsApiService = service;
+        }
+      }
     }
-    return fsApiService;
+    return service;
   }
 
   /**
    * Get {@link FsCdnService} singleton.
    */
   public static FsCdnService getFsCdnService() {
-    if (fsCdnService == null) {
-      Retrofit retrofit = getRetrofitBuilder().baseUrl(FsCdnService.URL).build();
-      fsCdnService = retrofit.create(FsCdnService.class);
+    FsCdnService service = fsCdnService;
+    if (service == null) {
+      synchronized (Networking.class) {
+        service = fsCdnService;
+        if (service == null) {
+          Retrofit retrofit = getRetrofitBuilder().baseUrl(FsCdnService.URL).build();
+          service = retrofit.create(FsCdnService.class);
+          fsCdnService = service;
+        }
+      }
     }
-    return fsCdnService;
+    return service;
   }
 
   /**
    * Get {@link FsUploadService} singleton.
    */
   public static FsUploadService getFsUploadService() {
-    if (fsUploadService == null) {
-      Retrofit retrofit = getRetrofitBuilder().baseUrl(FsUploadService.URL).build();
-      fsUploadService = retrofit.create(FsUploadService.class);
+    FsUploadService service = fsUploadService;
+    if (service == null) {
+      synchronized (Networking.class) {
+        service = fsUploadService;
+        if (service == null) {
+          Retrofit retrofit = getRetrofitBuilder()
+              .client(getUploadClient())
+              .baseUrl(FsUploadService.URL)
+              .build();
+          service = retrofit.create(FsUploadService.class);
+          fsUploadService = service;
+        }
+      }
     }
-    return fsUploadService;
+    return service;
   }
 
   /** Set a custom http client. */
-  public static void setCustomClient(OkHttpClient client) {
+  public static synchronized void setCustomClient(OkHttpClient client) {
     if (client == null) {
       return;
     }
     httpClient = client;
+    customClient = true;
     invalidateServices();
   }
 
   /** Sets all singletons to null so they'll be recreated. */
-  public static void invalidate() {
+  public static synchronized void invalidate() {
     httpClient = null;
+    customClient = false;
     invalidateServices();
   }
 
   private static Retrofit.Builder getRetrofitBuilder() {
     return new Retrofit.Builder()
         .client(getHttpClient())
-        .addConverterFactory(GsonConverterFactory.create());
+        .addConverterFactory(GsonConverterFactory.create(gson));
   }
 
-  /** Sets the services to null so they'll be recreated. */
+  /** Sets the upload client and services to null so they'll be recreated. */
   private static void invalidateServices() {
+    uploadClient = null;
     fsApiService = null;
     fsCdnService = null;
     fsUploadService = null;
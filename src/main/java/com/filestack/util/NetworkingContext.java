@@ -0,0 +1,405 @@
+package com.filestack.util;
+
+import com.filestack.FilestackMetrics;
+import com.filestack.NoOpMetrics;
+import com.filestack.errors.InvalidArgumentException;
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Networking stack that can be owned by one {@link com.filestack.FilestackClient} or shared by a
+ * few, instead of the process-wide singletons in {@link Networking}. API, CDN and S3 traffic each
+ * get their own connection pool, so a burst of uploads can't evict the connections used for
+ * downloads. The three HTTP clients share one {@link Dispatcher} and the same timeouts.
+ * Clients and services are created on first use. Instances are safe to share between threads.
+ *
+ * <p>Dispatcher limits only apply to requests run asynchronously through OkHttp, the SDK's own
+ * blocking calls are limited by the caller's threads.
+ */
+public class NetworkingContext implements Closeable {
+  static final long DEFAULT_COALESCE_LIMIT = 1024 * 1024;
+
+  private final long connectTimeout; // milliseconds
+  private final long readTimeout;
+  private final long writeTimeout;
+  private final boolean retryOnConnectionFailure;
+  private final int maxRequests;
+  private final int maxRequestsPerHost;
+  private final PoolConfig apiPool;
+  private final PoolConfig cdnPool;
+  private final PoolConfig s3Pool;
+  private final long dnsCacheTtl; // milliseconds
+  private final OkHttpClient baseClient;
+  private final HttpMetrics httpMetrics;
+  private final FilestackMetrics metrics;
+  private final HedgePolicy hedgePolicy;
+  private final SingleFlight singleFlight;
+
+  private volatile OkHttpClient rootClient;
+  private volatile OkHttpClient apiClient;
+  private volatile OkHttpClient cdnClient;
+  private volatile Dispatcher hedgeDispatcher;
+  private volatile OkHttpClient s3Client;
+  private volatile FsApiService fsApiService;
+  private volatile FsCdnService fsCdnService;
+  private volatile FsUploadService fsUploadService;
+
+  private NetworkingContext(Builder builder) {
+    this.connectTimeout = builder.connectTimeout;
+    this.readTimeout = builder.readTimeout;
+    this.writeTimeout = builder.writeTimeout;
+    this.retryOnConnectionFailure = builder.retryOnConnectionFailure;
+    this.maxRequests = builder.maxRequests;
+    this.maxRequestsPerHost = builder.maxRequestsPerHost;
+    this.apiPool = builder.apiPool;
+    this.cdnPool = builder.cdnPool;
+    this.s3Pool = builder.s3Pool;
+    this.dnsCacheTtl = builder.dnsCacheTtl;
+    this.baseClient = builder.baseClient;
+    this.httpMetrics = builder.httpMetrics;
+    this.metrics = builder.metrics;
+    this.hedgePolicy = builder.hedgePolicy;
+    this.singleFlight = new SingleFlight(builder.coalesceLimit);
+  }
+
+  /** Settings of one connection pool. */
+  private static class PoolConfig {
+    private final int maxIdleConnections;
+    private final long keepAlive; // milliseconds
+
+    PoolConfig(int maxIdleConnections, long keepAlive) {
+      this.maxIdleConnections = maxIdleConnections;
+      this.keepAlive = keepAlive;
+    }
+
+    ConnectionPool create() {
+      return new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Builds new {@link NetworkingContext}. Defaults match {@link Networking}: 30 second timeouts,
+   * no retries on connection failure, a 60 second DNS cache, and OkHttp's default dispatcher and
+   * pool limits.
+   */
+  public static class Builder {
+    private long connectTimeout = TimeUnit.SECONDS.toMillis(30);
+    private long readTimeout = TimeUnit.SECONDS.toMillis(30);
+    private long writeTimeout = TimeUnit.SECONDS.toMillis(30);
+    private boolean retryOnConnectionFailure;
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private PoolConfig apiPool = new PoolConfig(5, TimeUnit.MINUTES.toMillis(5));
+    private PoolConfig cdnPool = new PoolConfig(5, TimeUnit.MINUTES.toMillis(5));
+    private PoolConfig s3Pool = new PoolConfig(5, TimeUnit.MINUTES.toMillis(5));
+    private long dnsCacheTtl = TimeUnit.SECONDS.toMillis(60);
+    private OkHttpClient baseClient;
+    private HttpMetrics httpMetrics;
+    private FilestackMetrics metrics = NoOpMetrics.INSTANCE;
+    private HedgePolicy hedgePolicy;
+    private long coalesceLimit = DEFAULT_COALESCE_LIMIT;
+
+    public Builder connectTimeout(long timeout, TimeUnit unit) {
+      this.connectTimeout = unit.toMillis(timeout);
+      return this;
+    }
+
+    public Builder readTimeout(long timeout, TimeUnit unit) {
+      this.readTimeout = unit.toMillis(timeout);
+      return this;
+    }
+
+    public Builder writeTimeout(long timeout, TimeUnit unit) {
+      this.writeTimeout = unit.toMillis(timeout);
+      return this;
+    }
+
+    public Builder retryOnConnectionFailure(boolean retry) {
+      this.retryOnConnectionFailure = retry;
+      return this;
+    }
+
+    /** Set the max number of requests running at once, across all hosts. */
+    public Builder maxRequests(int maxRequests) {
+      if (maxRequests < 1) {
+        throw new InvalidArgumentException("Max requests must be at least 1");
+      }
+      this.maxRequests = maxRequests;
+      return this;
+    }
+
+    /** Set the max number of requests running at once to each host. */
+    public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+      if (maxRequestsPerHost < 1) {
+        throw new InvalidArgumentException("Max requests per host must be at least 1");
+      }
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /** Configure the pool for the file API, used to overwrite and delete files. */
+    public Builder apiPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+      this.apiPool = createPool(maxIdleConnections, keepAlive, unit);
+      return this;
+    }
+
+    /** Configure the pool for the CDN, used for downloads and transformations. */
+    public Builder cdnPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+      this.cdnPool = createPool(maxIdleConnections, keepAlive, unit);
+      return this;
+    }
+
+    /** Configure the pool for uploads, used for the upload API and transfers to S3. */
+    public Builder s3Pool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+      this.s3Pool = createPool(maxIdleConnections, keepAlive, unit);
+      return this;
+    }
+
+    /** Set how long host lookups are cached for, 0 to always use the resolver. */
+    public Builder dnsCacheTtl(long ttl, TimeUnit unit) {
+      if (ttl < 0) {
+        throw new InvalidArgumentException("DNS cache TTL can't be negative");
+      }
+      this.dnsCacheTtl = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Set a client to copy other settings from, such as interceptors or a proxy. Its connection
+     * pool and dispatcher aren't used.
+     */
+    public Builder baseClient(OkHttpClient baseClient) {
+      this.baseClient = baseClient;
+      return this;
+    }
+
+    /**
+     * Set where to report the DNS, connect, request body, time to first byte and total time of
+     * each request, grouped by endpoint. Requests aren't timed if this isn't set.
+     */
+    public Builder httpMetrics(HttpMetrics httpMetrics) {
+      this.httpMetrics = httpMetrics;
+      return this;
+    }
+
+    /**
+     * Set where uploads, downloads and transforms using this context report their metrics.
+     * Requests are also timed and reported to it, as with {@link #httpMetrics(HttpMetrics)}.
+     */
+    public Builder metrics(FilestackMetrics metrics) {
+      this.metrics = metrics != null ? metrics : NoOpMetrics.INSTANCE;
+      this.httpMetrics = metrics;
+      return this;
+    }
+
+    /**
+     * Hedge GET requests to the CDN, such as downloads and transformations, as set by the policy.
+     * The requests of hedged reads run on their own dispatcher, limited only by
+     * {@link #maxRequests(int)}, so the per host limit doesn't hold back downloads. Reads aren't
+     * hedged if this isn't set.
+     */
+    public Builder hedgeCdnReads(HedgePolicy hedgePolicy) {
+      this.hedgePolicy = hedgePolicy;
+      return this;
+    }
+
+    /**
+     * Set the largest body that identical reads running at the same time can share, 1 MiB by
+     * default. Bodies up to this size are held in memory, once per read that shares them. Bigger
+     * reads and reads of unknown size run separately. Set to 0 to never coalesce reads.
+     */
+    public Builder coalesceReads(long maxBodySize) {
+      if (maxBodySize < 0) {
+        throw new InvalidArgumentException("Max body size can't be negative");
+      }
+      this.coalesceLimit = maxBodySize;
+      return this;
+    }
+
+    private static PoolConfig createPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+      if (maxIdleConnections < 0) {
+        throw new InvalidArgumentException("Max idle connections can't be negative");
+      }
+      if (keepAlive <= 0) {
+        throw new InvalidArgumentException("Keep alive must be greater than 0");
+      }
+      return new PoolConfig(maxIdleConnections, unit.toMillis(keepAlive));
+    }
+
+    public NetworkingContext build() {
+      return new NetworkingContext(this);
+    }
+  }
+
+  /** Get the metrics clients using this context report to, never null. */
+  public FilestackMetrics getMetrics() {
+    return metrics;
+  }
+
+  SingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
+  /** Get the client for the file API. */
+  public OkHttpClient getApiClient() {
+    if (apiClient == null) {
+      synchronized (this) {
+        if (apiClient == null) {
+          apiClient = getRootClient().newBuilder().connectionPool(apiPool.create()).build();
+        }
+      }
+    }
+    return apiClient;
+  }
+
+  /** Get the client for the CDN. */
+  public OkHttpClient getCdnClient() {
+    if (cdnClient == null) {
+      synchronized (this) {
+        if (cdnClient == null) {
+          OkHttpClient client = getRootClient().newBuilder()
+              .connectionPool(cdnPool.create())
+              .build();
+          if (hedgePolicy != null) {
+            hedgeDispatcher = new Dispatcher();
+            hedgeDispatcher.setMaxRequests(maxRequests);
+            hedgeDispatcher.setMaxRequestsPerHost(maxRequests);
+            client = client.newBuilder().dispatcher(hedgeDispatcher).build();
+            // The outer client only hands requests to the interceptor, which runs them on client.
+            // It uses the root dispatcher, so async reads waiting on copies don't fill the
+            // hedging dispatcher and block the copies.
+            OkHttpClient.Builder builder = client.newBuilder()
+                .dispatcher(getRootClient().dispatcher());
+            builder.interceptors().clear();
+            builder.networkInterceptors().clear();
+            client = builder
+                .addInterceptor(new HedgingInterceptor(client, hedgePolicy, metrics))
+                .build();
+          }
+          cdnClient = client;
+        }
+      }
+    }
+    return cdnClient;
+  }
+
+  /** Get the client for uploads. */
+  public OkHttpClient getS3Client() {
+    if (s3Client == null) {
+      synchronized (this) {
+        if (s3Client == null) {
+          s3Client = getRootClient().newBuilder().connectionPool(s3Pool.create()).build();
+        }
+      }
+    }
+    return s3Client;
+  }
+
+  /** Get the {@link FsApiService} of this context. */
+  public FsApiService getFsApiService() {
+    if (fsApiService == null) {
+      synchronized (this) {
+        if (fsApiService == null) {
+          fsApiService = createService(getApiClient(), FsApiService.URL, FsApiService.class);
+        }
+      }
+    }
+    return fsApiService;
+  }
+
+  /** Get the {@link FsCdnService} of this context. */
+  public FsCdnService getFsCdnService() {
+    if (fsCdnService == null) {
+      synchronized (this) {
+        if (fsCdnService == null) {
+          fsCdnService = createService(getCdnClient(), FsCdnService.URL, FsCdnService.class);
+        }
+      }
+    }
+    return fsCdnService;
+  }
+
+  /** Get the {@link FsUploadService} of this context. */
+  public FsUploadService getFsUploadService() {
+    if (fsUploadService == null) {
+      synchronized (this) {
+        if (fsUploadService == null) {
+          fsUploadService = createService(getS3Client(), FsUploadService.URL,
+              FsUploadService.class);
+        }
+      }
+    }
+    return fsUploadService;
+  }
+
+  /**
+   * Stops the dispatcher's threads and closes idle connections. Requests already running finish,
+   * but the context shouldn't be used afterwards.
+   */
+  @Override
+  public void close() {
+    OkHttpClient rootClient = this.rootClient;
+    if (rootClient == null) {
+      return;
+    }
+    rootClient.dispatcher().executorService().shutdown();
+    if (hedgeDispatcher != null) {
+      hedgeDispatcher.executorService().shutdown();
+    }
+    for (OkHttpClient client : new OkHttpClient[] {apiClient, cdnClient, s3Client}) {
+      if (client != null) {
+        client.connectionPool().evictAll();
+      }
+    }
+  }
+
+  // Holds the settings shared by the three clients, it never makes requests itself
+  private OkHttpClient getRootClient() {
+    if (rootClient == null) {
+      synchronized (this) {
+        if (rootClient == null) {
+          Dispatcher dispatcher = new Dispatcher();
+          dispatcher.setMaxRequests(maxRequests);
+          dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+          OkHttpClient.Builder builder = baseClient != null
+              ? baseClient.newBuilder() : new OkHttpClient.Builder();
+          Dns dns = baseClient != null ? baseClient.dns() : Dns.SYSTEM;
+          if (dnsCacheTtl != 0) {
+            dns = new CachingDns(dns, dnsCacheTtl, TimeUnit.MILLISECONDS);
+          }
+          if (httpMetrics != null) {
+            HttpTimingInterceptor timing = new HttpTimingInterceptor(httpMetrics);
+            builder.addInterceptor(timing).addNetworkInterceptor(timing.networkInterceptor());
+            dns = timing.timeDns(dns);
+          }
+          builder.dns(dns);
+          rootClient = builder
+              .addInterceptor(new HeaderInterceptor())
+              .dispatcher(dispatcher)
+              .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+              .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+              .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS)
+              .retryOnConnectionFailure(retryOnConnectionFailure)
+              .build();
+        }
+      }
+    }
+    return rootClient;
+  }
+
+  private static <T> T createService(OkHttpClient client, String url, Class<T> service) {
+    Retrofit retrofit = new Retrofit.Builder()
+        .client(client)
+        .baseUrl(url)
+        .addConverterFactory(GsonConverterFactory.create(Networking.getGson()))
+        .build();
+    return retrofit.create(service);
+  }
+}
@@ -0,0 +1,304 @@
+package com.filestack.util;
+
+import com.filestack.FilestackMetrics;
+import com.filestack.Policy;
+import com.filestack.Security;
+import com.filestack.SecurityProvider;
+import com.filestack.errors.FilestackException;
+import com.filestack.errors.InvalidArgumentException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Response;
+
+/**
+ * Read-only {@link SeekableByteChannel} over a file handle, backed by HTTP Range requests.
+ * The file is divided into fixed size blocks that are kept in an LRU cache. Adjacent missing
+ * blocks are fetched with a single request and sequential reads grow a readahead window, so
+ * scanning a file doesn't cost a request per block.
+ */
+public class RangeChannel implements SeekableByteChannel {
+  public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+  public static final int DEFAULT_CACHE_BLOCKS = 32;
+
+  private final FsService fsService;
+  private final FilestackMetrics metrics;
+  private final String handle;
+  private final SecurityProvider security;
+  private final int blockSize;
+  private final int cacheBlocks;
+  private final int maxReadahead;
+  private final LinkedHashMap<Long, byte[]> cache;
+
+  private boolean open = true;
+  private long position;
+  private long size = -1;
+  private long lastBlockRead = -2;
+  private int readahead;
+  private int requestCount;
+
+  /**
+   * Constructs new instance. Nothing is requested until the first read or size check.
+   *
+   * @param blockSize   bytes per block, also the smallest request made
+   * @param cacheBlocks number of blocks to keep in memory
+   */
+  public RangeChannel(FsService fsService, String handle, SecurityProvider security, int blockSize,
+                      final int cacheBlocks) {
+    if (blockSize <= 0 || cacheBlocks <= 0) {
+      throw new InvalidArgumentException("Block size and cache blocks must be greater than 0");
+    }
+
+    this.fsService = fsService;
+    this.metrics = fsService.getMetrics();
+    this.handle = handle;
+    this.security = security;
+    this.blockSize = blockSize;
+    this.cacheBlocks = cacheBlocks;
+    this.maxReadahead = Math.max(1, cacheBlocks / 4);
+    this.cache = new LinkedHashMap<Long, byte[]>(cacheBlocks, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+        return size() > cacheBlocks;
+      }
+    };
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    ensureOpen();
+
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    long size = size();
+    if (position >= size) {
+      return -1;
+    }
+
+    int length = (int) Math.min(dst.remaining(), size - position);
+    long firstBlock = position / blockSize;
+    long lastBlock = (position + length - 1) / blockSize;
+
+    // Grow the readahead window while reads continue where the last one left off
+    if (firstBlock == lastBlockRead || firstBlock == lastBlockRead + 1) {
+      readahead = readahead == 0 ? 1 : Math.min(readahead * 2, maxReadahead);
+    } else {
+      readahead = 0;
+    }
+    lastBlockRead = lastBlock;
+
+    long lastFileBlock = (size - 1) / blockSize;
+    int total = 0;
+
+    for (long index = firstBlock; index <= lastBlock; index++) {
+      byte[] block = cache.get(index);
+
+      if (block != null) {
+        metrics.cacheHit(FilestackMetrics.Cache.RANGE_BLOCK);
+      } else {
+        metrics.cacheMiss(FilestackMetrics.Cache.RANGE_BLOCK);
+        // Coalesce this block with following missing ones (and any readahead) into one request
+        long limit = Math.min(lastBlock + readahead, lastFileBlock);
+        limit = Math.min(limit, index + cacheBlocks - 1);
+        long end = index;
+        while (end < limit && !cache.containsKey(end + 1)) {
+          end++;
+        }
+        block = fetch(index, end);
+      }
+
+      int offset = (int) (position - index * blockSize);
+      int count = Math.min(block.length - offset, length - total);
+      dst.put(block, offset, count);
+      position += count;
+      total += count;
+    }
+
+    return total;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized long position() throws IOException {
+    ensureOpen();
+    return position;
+  }
+
+  @Override
+  public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+    ensureOpen();
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position can't be negative");
+    }
+    position = newPosition;
+    return this;
+  }
+
+  /** Returns the size of the file. If not yet known, the first block is fetched to find it. */
+  @Override
+  public synchronized long size() throws IOException {
+    ensureOpen();
+    if (size == -1) {
+      fetch(0, 0);
+    }
+    return size;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) throws IOException {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public synchronized void close() {
+    open = false;
+    cache.clear();
+  }
+
+  /** Number of range requests made so far. */
+  public synchronized int getRequestCount() {
+    return requestCount;
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  /**
+   * Requests blocks first to last (inclusive) in a single range request and caches them.
+   *
+   * @return content of the first block
+   */
+  private byte[] fetch(long first, long last) throws IOException {
+    long start = first * blockSize;
+    long end = (last + 1) * blockSize - 1;
+    if (size != -1) {
+      end = Math.min(end, size - 1);
+    }
+
+    // Asked for on every request, so a long lived channel picks up refreshed policies
+    Security security = this.security != null ? this.security.getSecurity() : null;
+    String policy = security != null ? security.getPolicy() : null;
+    String signature = security != null ? security.getSignature() : null;
+    String range = "bytes=" + start + "-" + end;
+
+    try {
+      Util.checkPolicy(security, Policy.CALL_READ, handle, -1);
+    } catch (FilestackException e) {
+      throw new IOException(e);
+    }
+
+    Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.DOWNLOAD_SEGMENT);
+    long received = 0;
+    requestCount++;
+    Response<ResponseBody> response = fsService.getRange(handle, range, policy, signature)
+        .execute();
+
+    try {
+      Util.checkResponseAndThrow(response);
+    } catch (FilestackException e) {
+      closeBody(response);
+      throw new IOException(e);
+    }
+
+    if (response.code() == 416) {
+      closeBody(response);
+      FlightRecorderEvents.commit(event, (int) first, 0, 1);
+      // An empty file has no first block, the server rejects the range and gives a size of 0
+      if (first == 0 && parseTotal(response.headers().get("Content-Range")) <= 0) {
+        size = 0;
+        return new byte[0];
+      }
+      throw new IOException("Range starts past end of " + handle);
+    }
+
+    ResponseBody body = response.body();
+    if (body == null || (response.code() != 200 && response.code() != 206)) {
+      closeBody(response);
+      throw new IOException("Unexpected range response: " + response.code());
+    }
+
+    try {
+      if (response.code() == 206) {
+        size = parseTotal(response.headers().get("Content-Range"));
+      } else {
+        size = body.contentLength();
+      }
+      if (size == -1) {
+        throw new IOException("Unable to determine size of " + handle);
+      }
+
+      BufferedSource source = body.source();
+      if (response.code() == 200) {
+        // Server ignored the range and is sending the whole file
+        source.skip(start);
+      }
+
+      byte[] firstBlock = null;
+      for (long index = first; index <= last; index++) {
+        long blockStart = index * blockSize;
+        if (blockStart >= size) {
+          break;
+        }
+        byte[] block = source.readByteArray(Math.min(blockSize, size - blockStart));
+        received += block.length;
+        cache.put(index, block);
+        if (firstBlock == null) {
+          firstBlock = block;
+        }
+      }
+
+      if (firstBlock == null) {
+        throw new IOException("Range starts past end of " + handle);
+      }
+      return firstBlock;
+    } finally {
+      body.close();
+      metrics.bytesReceived(received);
+      FlightRecorderEvents.commit(event, (int) first, received, 1);
+    }
+  }
+
+  /** Closes the body or error body of a response that isn't read, releasing its connection. */
+  private static void closeBody(Response<ResponseBody> response) {
+    ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+    if (body != null) {
+      body.close();
+    }
+  }
+
+  /** Parses the total length from a Content-Range header, returns -1 if it isn't given. */
+  static long parseTotal(String contentRange) {
+    if (contentRange == null) {
+      return -1;
+    }
+    int slash = contentRange.lastIndexOf('/');
+    if (slash == -1 || contentRange.endsWith("*")) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentRange.substring(slash + 1).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
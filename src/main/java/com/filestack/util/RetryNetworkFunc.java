@@ -1,5 +1,7 @@
 package com.filestack.util;
 
+import com.filestack.FilestackMetrics;
+import com.filestack.NoOpMetrics;
 import com.filestack.errors.InternalException;
 import com.filestack.errors.InvalidParameterException;
 import com.filestack.errors.PolicySignatureException;
@@ -14,6 +16,7 @@ public abstract class RetryNetworkFunc<T> {
   private final int maxNetworkRetries;
   private final int maxServerRetries;
   private final int delayBase;
+  private final FilestackMetrics metrics;
 
   private int networkRetries;
   private int serverRetries;
@@ -28,9 +31,20 @@ public abstract class RetryNetworkFunc<T> {
    * @param delayBase         base for exponential backoff, delay (seconds) == base ^ retryCount
    */
   public RetryNetworkFunc(int maxNetworkRetries, int maxServerRetries, int delayBase) {
+    this(maxNetworkRetries, maxServerRetries, delayBase, NoOpMetrics.INSTANCE);
+  }
+
+  /**
+   * Constructs an instance that reports retries.
+   *
+   * @see #RetryNetworkFunc(int, int, int)
+   */
+  public RetryNetworkFunc(int maxNetworkRetries, int maxServerRetries, int delayBase,
+                          FilestackMetrics metrics) {
     this.maxNetworkRetries = maxNetworkRetries;
     this.maxServerRetries = maxServerRetries;
     this.delayBase = delayBase;
+    this.metrics = metrics;
   }
 
   /** Start the request. */
@@ -54,11 +68,19 @@ public abstract class RetryNetworkFunc<T> {
       } catch (Exception e) {
         exception = e;
         onNetworkFail(networkRetries);
+        if (networkRetries <= maxNetworkRetries) {
+          metrics.networkRetry();
+          FlightRecorderEvents.instant(FlightRecorderEvents.Type.RETRY, 0, 0, getAttempt());
+        }
         continue;
       }
 
       if (!responseOkay(response)) {
         onServerFail(serverRetries);
+        if (serverRetries <= maxServerRetries) {
+          metrics.serverRetry();
+          FlightRecorderEvents.instant(FlightRecorderEvents.Type.RETRY, 0, 0, getAttempt());
+        }
       } else {
         break;
       }
@@ -84,22 +106,23 @@ public abstract class RetryNetworkFunc<T> {
 
   /** Called for network failures. */
   public void onNetworkFail(int retries) {
-    networkRetries = sleep(retries);
+    networkRetries = sleep(retries, maxNetworkRetries);
   }
 
   /** Called for server failures. */
   public void onServerFail(int retries) {
-    serverRetries = sleep(retries);
+    serverRetries = sleep(retries, maxServerRetries);
   }
 
   /**
-   * Causes thread to sleep for delayBase ^ count seconds.
+   * Causes thread to sleep for delayBase ^ count seconds, unless there are no retries left.
    *
    * @param count power to raise delayBase to
+   * @param max   retries allowed
    * @return new count value
    */
-  private int sleep(int count) {
-    if (!Util.isUnitTest()) {
+  private int sleep(int count, int max) {
+    if (count < max && !Util.isUnitTest()) {
       try {
         Thread.sleep((long) Math.pow(delayBase, count) * 1000);
       } catch (InterruptedException e) {
@@ -130,6 +153,11 @@ public abstract class RetryNetworkFunc<T> {
     return code == 200;
   }
 
+  /** Returns the number of the current or next attempt, starting at 1. */
+  public int getAttempt() {
+    return networkRetries + serverRetries + 1;
+  }
+
   public int getNetworkRetries() {
     return networkRetries;
   }
@@ -0,0 +1,193 @@
+package com.filestack.util;
+
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Coalesces identical requests that run at the same time, so a burst of reads of one file makes
+ * one request. The first caller runs the request and the others wait for its response. Bodies
+ * are read into memory to be shared, so only responses with a known length up to a limit are
+ * shared. When a response is bigger, or its length isn't known, the first caller gets it as a
+ * stream and the others run their own request.
+ *
+ * <p>Only blocking calls are coalesced, calls enqueued through Retrofit run as usual.
+ */
+final class SingleFlight {
+  private final long maxBodySize;
+  private final ConcurrentMap<List<Object>, Flight> flights = new ConcurrentHashMap<>();
+
+  /** @param maxBodySize largest body in bytes that's shared, 0 to never coalesce */
+  SingleFlight(long maxBodySize) {
+    this.maxBodySize = maxBodySize;
+  }
+
+  /**
+   * Wraps a call so executing it joins an identical call already running.
+   *
+   * @param key name of the endpoint followed by the arguments that identify the request
+   */
+  Call<ResponseBody> wrap(Call<ResponseBody> call, Object... key) {
+    if (maxBodySize == 0) {
+      return call;
+    }
+    return new SharedCall(call, Arrays.asList(key));
+  }
+
+  /** Runs the call, or waits for an identical one and copies its response. */
+  private Response<ResponseBody> execute(List<Object> key, Call<ResponseBody> call)
+      throws IOException {
+    Flight flight = new Flight();
+    Flight running = flights.putIfAbsent(key, flight);
+    if (running != null) {
+      SharedResponse shared = running.await();
+      return shared != null ? shared.copy() : call.execute();
+    }
+
+    Response<ResponseBody> response;
+    SharedResponse shared = null;
+    Exception failure = null;
+    try {
+      response = call.execute();
+      shared = SharedResponse.of(response, maxBodySize);
+    } catch (IOException | RuntimeException e) {
+      // Waiting calls run their own request rather than fail because this one was cancelled
+      failure = call.isCanceled() ? new CancelledException() : e;
+      throw e;
+    } finally {
+      // Always release the waiting calls, after an Error they run their own request
+      flights.remove(key, flight);
+      if (failure != null) {
+        flight.result.setException(failure);
+      } else {
+        flight.result.set(shared);
+      }
+    }
+    return shared != null ? shared.copy() : response;
+  }
+
+  /** A request that's running, and the calls waiting for it. */
+  private static class Flight {
+    private final SettableFuture<SharedResponse> result = SettableFuture.create();
+
+    SharedResponse await() throws IOException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CancelledException) {
+          return null;
+        } else if (cause instanceof IOException) {
+          throw new IOException(cause.getMessage(), cause);
+        }
+        throw (RuntimeException) cause;
+      }
+    }
+  }
+
+  private static class CancelledException extends IOException { }
+
+  /** A response with its body in memory, copied for each caller. */
+  private static class SharedResponse {
+    private final Response<ResponseBody> response;
+    private final MediaType contentType;
+    private final byte[] bytes;
+
+    private SharedResponse(Response<ResponseBody> response, MediaType contentType,
+                           byte[] bytes) {
+      this.response = response;
+      this.contentType = contentType;
+      this.bytes = bytes;
+    }
+
+    /** Reads the body of the response, returns null if it's too big to read. */
+    static SharedResponse of(Response<ResponseBody> response, long maxBodySize)
+        throws IOException {
+      ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+      if (body == null) {
+        return new SharedResponse(response, null, null);
+      }
+      long length = body.contentLength();
+      if (length < 0 || length > maxBodySize) {
+        return null;
+      }
+      return new SharedResponse(response, body.contentType(), body.bytes());
+    }
+
+    Response<ResponseBody> copy() {
+      ResponseBody body = bytes != null ? ResponseBody.create(contentType, bytes) : null;
+      if (response.isSuccessful()) {
+        return Response.success(body, response.raw());
+      }
+      return Response.error(body, response.raw());
+    }
+  }
+
+  /** Call that coalesces with identical calls when executed. */
+  private class SharedCall implements Call<ResponseBody> {
+    private final Call<ResponseBody> delegate;
+    private final List<Object> key;
+    private volatile boolean executed;
+
+    SharedCall(Call<ResponseBody> delegate, List<Object> key) {
+      this.delegate = delegate;
+      this.key = key;
+    }
+
+    @Override
+    public Response<ResponseBody> execute() throws IOException {
+      synchronized (this) {
+        if (executed) {
+          throw new IllegalStateException("Already executed.");
+        }
+        executed = true;
+      }
+      return SingleFlight.this.execute(key, delegate);
+    }
+
+    @Override
+    public void enqueue(Callback<ResponseBody> callback) {
+      executed = true;
+      delegate.enqueue(callback);
+    }
+
+    @Override
+    public boolean isExecuted() {
+      return executed || delegate.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+      delegate.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return delegate.isCanceled();
+    }
+
+    @Override
+    public Call<ResponseBody> clone() {
+      return new SharedCall(delegate.clone(), key);
+    }
+
+    @Override
+    public Request request() {
+      return delegate.request();
+    }
+  }
+}
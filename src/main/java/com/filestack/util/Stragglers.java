@@ -0,0 +1,168 @@
+package com.filestack.util;
+
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import retrofit2.Call;
+
+/**
+ * Tracks the parts of a regular multipart upload that are being sent to S3, so that workers that
+ * are done with their own parts can send a second copy of a slow one. A part is a straggler when
+ * it has been running for over {@value #SLOW_FACTOR} times the mean duration of the parts that
+ * finished, and each part is only sent twice at most. The first copy to succeed wins: its ETag is
+ * put in the upload's ETags and the S3 calls of the other copy are cancelled. Both copies have
+ * the same bytes, so S3 ends up with the same part whichever finishes last. A part only fails
+ * once every copy of it has given up.
+ */
+final class Stragglers {
+  static final int SLOW_FACTOR = 2;
+  static final long POLL_INTERVAL = 100; // milliseconds
+
+  private final String[] etags;
+  private final Ticker ticker;
+  private final Map<Integer, Running> running = new HashMap<>();
+  private final Set<Integer> done = new HashSet<>();
+  private long finished; // count and total duration of parts done without a second copy
+  private long finishedTotal;
+
+  /** A part that's being sent. */
+  private static class Running {
+    final long start;
+    final List<Call<?>> calls = new ArrayList<>();
+    boolean hedged;
+    int failed; // copies that gave up
+
+    Running(long start) {
+      this.start = start;
+    }
+  }
+
+  /** @param etags ETags of the upload's parts, set as parts finish */
+  Stragglers(String[] etags) {
+    this(etags, Ticker.systemTicker());
+  }
+
+  Stragglers(String[] etags, Ticker ticker) {
+    this.etags = etags;
+    this.ticker = ticker;
+  }
+
+  /** Called before the first copy of a part is sent. */
+  synchronized void start(int part) {
+    if (!done.contains(part)) {
+      running.put(part, new Running(ticker.read()));
+    }
+  }
+
+  /**
+   * Called before a call that sends a part is executed. If the part is already done, the call is
+   * cancelled instead.
+   */
+  synchronized void register(int part, Call<?> call) {
+    Running state = running.get(part);
+    if (state == null) {
+      call.cancel();
+    } else {
+      state.calls.add(call);
+    }
+  }
+
+  /**
+   * Called when a call that sends a part succeeds. If it's the first copy of the part to succeed,
+   * sets the part's ETag and cancels the other calls of the part. Otherwise it's ignored.
+   *
+   * @return true if this is the first copy to succeed
+   */
+  synchronized boolean finish(int part, Call<?> winner, String etag) {
+    if (!done.add(part)) {
+      return false;
+    }
+    // Set under the lock so it's seen by any thread that finds the part done
+    etags[part - 1] = etag;
+    Running state = running.remove(part);
+    if (state != null) {
+      if (!state.hedged) {
+        finished++;
+        finishedTotal += ticker.read() - state.start;
+      }
+      for (Call<?> call : state.calls) {
+        if (call != winner) {
+          call.cancel();
+        }
+      }
+    }
+    notifyAll();
+    return true;
+  }
+
+  synchronized boolean isDone(int part) {
+    return done.contains(part);
+  }
+
+  /** Called when a copy of a part gives up after its retries. */
+  synchronized void copyFailed(int part) {
+    Running state = running.get(part);
+    if (state != null) {
+      state.failed++;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Waits until the part is done, or until no copy of it is still being sent.
+   *
+   * @return true if a copy finished the part
+   * @throws InterruptedException if the upload is cancelled while waiting
+   */
+  synchronized boolean awaitDone(int part) throws InterruptedException {
+    while (!done.contains(part)) {
+      Running state = running.get(part);
+      if (state == null || state.failed >= (state.hedged ? 2 : 1)) {
+        return false;
+      }
+      wait();
+    }
+    return true;
+  }
+
+  /**
+   * Waits for a part that's slow enough to send a second copy of.
+   *
+   * @return number of the part, or 0 when every part is done
+   * @throws InterruptedException if the upload is cancelled while waiting
+   */
+  synchronized int awaitStraggler() throws InterruptedException {
+    while (done.size() < etags.length) {
+      int part = findStraggler();
+      if (part != 0) {
+        running.get(part).hedged = true;
+        return part;
+      }
+      wait(POLL_INTERVAL);
+    }
+    return 0;
+  }
+
+  /** Returns the slowest part that hasn't been hedged and is over the threshold, 0 if none. */
+  synchronized int findStraggler() {
+    if (finished == 0) {
+      return 0;
+    }
+    long threshold = SLOW_FACTOR * (finishedTotal / finished);
+    long now = ticker.read();
+    int slowest = 0;
+    long slowestStart = Long.MAX_VALUE;
+    for (Map.Entry<Integer, Running> entry : running.entrySet()) {
+      Running state = entry.getValue();
+      if (!state.hedged && now - state.start > threshold && state.start < slowestStart) {
+        slowest = entry.getKey();
+        slowestStart = state.start;
+      }
+    }
+    return slowest;
+  }
+}
@@ -2,15 +2,20 @@ package com.filestack.util;
 
 import com.filestack.FileLink;
 import com.filestack.FilestackClient;
+import com.filestack.FilestackMetrics;
 import com.filestack.Progress;
 import com.filestack.Security;
+import com.filestack.SecurityProvider;
 import com.filestack.StorageOptions;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 
@@ -21,20 +26,29 @@ public class Upload {
   static final int MIN_CHUNK_SIZE = 32 * 1024;
 
   final FsService fsService;
+  final FilestackMetrics metrics;
   final int delayBase;
   final MediaType mediaType;
-  final Security security;
+  final SecurityProvider securityProvider;
   final String apiKey;
   final String path;
 
   boolean intelligent;
-  int chunkSize = 1024 * 1024;
+  // Reduced by any chunk after a network failure, read by the workers of every part
+  volatile int chunkSize = 1024 * 1024;
   int numParts;
   int partSize;
   int partsPerFunc;
   long filesize;
   Map<String, RequestBody> baseParams;
   String[] etags;
+  Stragglers stragglers;
+  final AtomicInteger partsUploaded = new AtomicInteger();
+  // Chunks of intelligent uploads in flight, across all parts
+  final Semaphore window = new Semaphore(CONCURRENCY, true);
+
+  private FormTemplate uploadForm;
+  private Security uploadFormSecurity;
 
   /** Constructs new instance. */
   public Upload(String path, String contentType, StorageOptions options, boolean intelligent,
@@ -44,8 +58,9 @@ public class Upload {
     mediaType = MediaType.parse(contentType);
     this.delayBase = delayBase;
     apiKey = fsClient.getApiKey();
-    security = fsClient.getSecurity();
+    securityProvider = fsClient.getSecurityProvider();
     this.fsService = fsService;
+    this.metrics = fsService.getMetrics();
 
     // Setup base parameters
     baseParams = new HashMap<>();
@@ -58,13 +73,47 @@ public class Upload {
 
     baseParams.put("apikey", Util.createStringPart(apiKey));
 
+    // Don't open the file here so that any exceptions with it get passed through the observable
+    // Otherwise we'd have an async method that directly throws exceptions
+  }
+
+  /** Returns the current security, null if it isn't set. */
+  Security getSecurity() {
+    return securityProvider != null ? securityProvider.getSecurity() : null;
+  }
+
+  /**
+   * Adds the current policy and signature to a request's parameters. Called for every attempt,
+   * so later parts and retries pick up a pair that was refreshed during the upload.
+   */
+  void putSecurity(Map<String, RequestBody> params) {
+    Security security = getSecurity();
     if (security != null) {
-      baseParams.put("policy", Util.createStringPart(security.getPolicy()));
-      baseParams.put("signature", Util.createStringPart(security.getSignature()));
+      params.put("policy", Util.createStringPart(security.getPolicy()));
+      params.put("signature", Util.createStringPart(security.getSignature()));
     }
+  }
 
-    // Don't open the file here so that any exceptions with it get passed through the observable
-    // Otherwise we'd have an async method that directly throws exceptions
+  /**
+   * Returns the template of upload API calls, with the base parameters and the current policy and
+   * signature encoded. Encoded again when a refreshed pair is picked up.
+   */
+  synchronized FormTemplate getUploadForm() throws IOException {
+    Security security = getSecurity();
+    if (uploadForm == null || !sameSecurity(security, uploadFormSecurity)) {
+      Map<String, RequestBody> params = new HashMap<>(baseParams);
+      putSecurity(params);
+      uploadForm = new FormTemplate(params);
+      uploadFormSecurity = security;
+    }
+    return uploadForm;
+  }
+
+  private static boolean sameSecurity(Security a, Security b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return a.getPolicy().equals(b.getPolicy()) && a.getSignature().equals(b.getSignature());
   }
 
   /**
@@ -39,16 +39,28 @@ public class UploadCompleteFunc implements Callable<Prog<FileLink>> {
     }
 
     RetryNetworkFunc<CompleteResponse> func;
-    func = new RetryNetworkFunc<CompleteResponse>(5, 5, upload.delayBase) {
+    func = new RetryNetworkFunc<CompleteResponse>(5, 5, upload.delayBase,
+        upload.metrics) {
 
       @Override
       Response<CompleteResponse> work() throws Exception {
-        return upload.fsService.complete(params).execute();
+        upload.putSecurity(params);
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.COMPLETE);
+        try {
+          return upload.fsService.complete(params).execute();
+        } finally {
+          FlightRecorderEvents.commit(event, 0, upload.filesize, getAttempt());
+        }
       }
     };
 
     CompleteResponse response = func.call();
-    FileLink fileLink = new FileLink(upload.apiKey, response.getHandle(), upload.security);
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey(upload.apiKey)
+        .handle(response.getHandle())
+        .securityProvider(upload.securityProvider)
+        .service(upload.fsService)
+        .build();
 
     return new Prog<>(fileLink);
   }
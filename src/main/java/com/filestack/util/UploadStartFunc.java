@@ -1,10 +1,13 @@
 package com.filestack.util;
 
 import com.filestack.FileLink;
+import com.filestack.Policy;
 import com.filestack.responses.StartResponse;
 import io.reactivex.Flowable;
 import java.io.File;
+import java.util.HashMap;
 import java.util.concurrent.Callable;
+import okhttp3.RequestBody;
 import retrofit2.Response;
 
 /**
@@ -25,14 +28,20 @@ public class UploadStartFunc implements Callable<Prog<FileLink>> {
     File file = Util.createReadFile(upload.path);
     upload.filesize = file.length();
 
+    // Fail before starting if the policy won't allow the upload
+    Util.checkPolicy(upload.getSecurity(), Policy.CALL_STORE, null, upload.filesize);
+
     upload.baseParams.put("filename", Util.createStringPart(file.getName()));
     upload.baseParams.put("size", Util.createStringPart(Long.toString(upload.filesize)));
 
     RetryNetworkFunc<StartResponse> func;
-    func = new RetryNetworkFunc<StartResponse>(0, 5, upload.delayBase) {
+    func = new RetryNetworkFunc<StartResponse>(0, 5, upload.delayBase,
+        upload.metrics) {
       @Override
       Response<StartResponse> work() throws Exception {
-        return upload.fsService.start(upload.baseParams).execute();
+        HashMap<String, RequestBody> params = new HashMap<>(upload.baseParams);
+        upload.putSecurity(params);
+        return upload.fsService.start(params).execute();
       }
     };
 
@@ -51,6 +60,7 @@ public class UploadStartFunc implements Callable<Prog<FileLink>> {
     upload.partsPerFunc = (int) Math.ceil(upload.numParts / (double) Upload.CONCURRENCY);
 
     upload.etags = new String[upload.numParts];
+    upload.stragglers = new Stragglers(upload.etags);
 
     return new Prog<>();
   }
@@ -9,12 +9,23 @@ import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
+import retrofit2.Call;
 import retrofit2.Response;
 
 /**
@@ -22,6 +33,8 @@ import retrofit2.Response;
  * This class handles uploading of parts/chunks and makes calls to both S3 and Filestack endpoints.
  * An upload should be divided between multiple instances, with each uploading a subrange of parts.
  * We take a sectionIndex that tells us what area of the file to be responsible for.
+ * In regular uploads, an instance that's done with its parts sends second copies of parts that
+ * are slow to upload, see {@link Stragglers}.
  */
 public class UploadTransferFunc implements FlowableOnSubscribe<Prog<FileLink>> {
   private Upload upload;
@@ -37,111 +50,231 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog<FileLink>> {
     int start = sectionIndex * upload.partsPerFunc;
     int count = Math.min(upload.partsPerFunc, upload.numParts - start);
 
-    if (count <= 0) {
-      // No work for this instance
+    if (count <= 0 && upload.intelligent) {
+      // No work for this instance, in regular uploads it can still send copies of slow parts
       e.onComplete();
+      return;
     }
 
+    // Chunks of intelligent uploads report progress from several threads
+    FlowableEmitter<Prog<FileLink>> emitter = e.serialize();
     RandomAccessFile file = new RandomAccessFile(upload.path, "r");
-    file.seek(start * upload.partSize);
-
-    byte[] bytes;
-    if (upload.intelligent) {
-      bytes = new byte[upload.chunkSize];
-    } else {
-      bytes = new byte[upload.partSize];
-    }
-
-    int bytesLeft;
-    int bytesRead;
-    int bytesSent;
-    int offset;
-    int part;
+    byte[] bytes = upload.intelligent || count <= 0 ? null : new byte[upload.partSize];
 
     // Loop through parts assigned to this thread
+    // If standard multipart upload, we upload in one partSize chunk
+    // If intelligent ingestion upload, we upload in multiple chunkSize chunks
     for (int i = 0; i < count; i++) {
-      bytesLeft = upload.partSize;
-      offset = 0;
-      part = start + i + 1;
-
-      // Loop through bytes of a single part
-      // If standard multipart upload, we upload in one partSize chunk
-      // If intelligent ingestion upload, we upload in multiple chunkSize chunks
-      while (bytesLeft != 0) {
+      int part = start + i + 1;
+      long partStart = System.nanoTime();
 
-        if (upload.intelligent) {
-          bytesRead = file.read(bytes, 0, upload.chunkSize);
-        } else {
-          bytesRead = file.read(bytes, 0, upload.partSize);
+      if (upload.intelligent) {
+        uploadChunks(emitter, file, part);
+        multipartCommit(upload, part);
+      } else {
+        upload.stragglers.start(part);
+        file.seek((long) (part - 1) * upload.partSize);
+        Object readEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.PART_READ);
+        int bytesRead = file.read(bytes, 0, upload.partSize);
+        FlightRecorderEvents.commit(readEvent, part, bytesRead, 1);
+
+        int bytesSent;
+        try {
+          bytesSent = uploadToS3(upload, part, 0, bytesRead, bytes, 5);
+        } catch (Exception ex) {
+          // Fine if another instance sent a second copy of the part and it finishes
+          upload.stragglers.copyFailed(part);
+          if (!upload.stragglers.awaitDone(part)) {
+            throw ex;
+          }
+          bytesSent = bytesRead;
         }
+        upload.metrics.bytesSent(bytesSent);
+        emitter.onNext(new Prog<FileLink>(bytesSent));
+      }
 
-        if (bytesRead == -1) {
-          break;
-        }
+      int pendingParts = upload.numParts - upload.partsUploaded.incrementAndGet();
+      upload.metrics.partUploaded(System.nanoTime() - partStart, pendingParts);
+    }
 
-        bytesSent = uploadToS3(upload, part, offset, bytesRead, bytes);
-        e.onNext(new Prog<FileLink>(bytesSent));
+    if (!upload.intelligent) {
+      hedgeStragglers(file, bytes);
+    }
 
-        if (bytesSent < bytesRead) {
-          if (bytesSent < Upload.MIN_CHUNK_SIZE) {
-            throw new IOException();
-          }
-          upload.chunkSize = bytesSent;
-          // Seek backwards to the byte after where we've successfully sent
-          // Otherwise we'd skip bytes when we reduce the chunkSize
-          file.seek(((start + i) * upload.partSize) + offset + bytesSent);
+    emitter.onComplete();
+  }
+
+  /**
+   * For intelligent ingestion mode only. Uploads the chunks of a part at their offsets, at the
+   * same time as each other and as chunks of other parts, and returns when all of them have been
+   * accepted. Chunks are read from the file here and sent on I/O threads, and each one in flight
+   * holds a permit of {@link Upload#window}. So at most that many chunks are buffered or sent at
+   * once, whichever parts they belong to.
+   */
+  private void uploadChunks(final FlowableEmitter<Prog<FileLink>> e, RandomAccessFile file,
+                            final int part) throws Exception {
+    long partStart = (long) (part - 1) * upload.partSize;
+    int partLength = (int) Math.min(upload.partSize, upload.filesize - partStart);
+    List<Future<Integer>> chunks = new ArrayList<>();
+
+    try {
+      int offset = 0;
+      while (offset < partLength) {
+        // Only read the chunk once there's room to send it
+        upload.window.acquire();
+        final int chunkOffset = offset;
+        final byte[] bytes;
+        try {
+          bytes = new byte[Math.min(upload.chunkSize, partLength - offset)];
+          Object readEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.PART_READ);
+          file.seek(partStart + offset);
+          file.readFully(bytes);
+          FlightRecorderEvents.commit(readEvent, part, bytes.length, 1);
+        } catch (IOException ex) {
+          upload.window.release();
+          throw ex;
         }
 
-        offset += bytesSent;
-        bytesLeft -= bytesSent;
+        Future<Integer> chunk = Single
+            .fromCallable(new Callable<Integer>() {
+              @Override
+              public Integer call() throws Exception {
+                try {
+                  return uploadChunk(e, part, chunkOffset, bytes);
+                } finally {
+                  upload.window.release();
+                }
+              }
+            })
+            .subscribeOn(Schedulers.io())
+            .toFuture();
+        chunks.add(chunk);
+        offset += bytes.length;
       }
 
-      if (upload.intelligent) {
-        multipartCommit(upload, part);
+      for (Future<Integer> chunk : chunks) {
+        chunk.get();
+      }
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw cause instanceof Exception ? (Exception) cause : ex;
+    } finally {
+      // Stops the other chunks if one failed, does nothing if they're all done
+      for (Future<Integer> chunk : chunks) {
+        chunk.cancel(true);
       }
     }
+  }
 
-    e.onComplete();
+  /**
+   * Uploads a chunk, in smaller pieces if the chunk size is reduced after network failures.
+   * Smaller sizes are also used for the chunks read after this one.
+   *
+   * @return size of the chunk
+   */
+  private int uploadChunk(FlowableEmitter<Prog<FileLink>> e, int part, int offset, byte[] bytes)
+      throws Exception {
+    int sent = 0;
+    while (sent < bytes.length) {
+      int size = bytes.length - sent;
+      byte[] data = sent == 0 ? bytes : Arrays.copyOfRange(bytes, sent, bytes.length);
+      int bytesSent = uploadToS3(upload, part, offset + sent, size, data, 5);
+      upload.metrics.bytesSent(bytesSent);
+      e.onNext(new Prog<FileLink>(bytesSent));
+
+      if (bytesSent < size) {
+        if (bytesSent < Upload.MIN_CHUNK_SIZE) {
+          throw new IOException();
+        }
+        int chunkSize = upload.chunkSize;
+        if (bytesSent < chunkSize) {
+          upload.metrics.chunkSizeChanged(chunkSize, bytesSent);
+          upload.chunkSize = bytesSent;
+        }
+      }
+      sent += bytesSent;
+    }
+    return sent;
+  }
+
+  /**
+   * Sends second copies of parts that are slow to upload, until every part is done. Copies are
+   * only tried once. A copy that fails doesn't fail the upload, since the first copy may still
+   * succeed, but if the first copy has given up too the part fails.
+   *
+   * @param bytes buffer for a part, or null to allocate one if there's a part to send
+   */
+  private void hedgeStragglers(RandomAccessFile file, byte[] bytes) throws Exception {
+    int part;
+    while ((part = upload.stragglers.awaitStraggler()) != 0) {
+      if (bytes == null) {
+        bytes = new byte[upload.partSize];
+      }
+      file.seek((long) (part - 1) * upload.partSize);
+      int bytesRead = file.read(bytes, 0, upload.partSize);
+      try {
+        upload.metrics.bytesSent(uploadToS3(upload, part, 0, bytesRead, bytes, 0));
+      } catch (Exception ex) {
+        // The first copy may still succeed
+        upload.stragglers.copyFailed(part);
+      }
+    }
   }
 
   /** Get parameters from Filestack for the upload to S3. */
-  private UploadResponse getUploadParams(final Upload upload, int part, int offset,
-                                         int size, byte[] bytes)
+  private UploadResponse getUploadParams(final Upload upload, final int part, int offset,
+                                         final int size, byte[] bytes)
       throws Exception {
 
+    Object md5Event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.MD5);
     // Deprecated because MD5 is insecure not because this is unmaintained
     @SuppressWarnings("deprecation")
     HashCode hc = Hashing.md5().newHasher(size).putBytes(bytes, 0, size).hash();
     String md5 = BaseEncoding.base64().encode(hc.asBytes());
+    FlightRecorderEvents.commit(md5Event, part, size, 1);
 
-    final HashMap<String, RequestBody> params = new HashMap<>();
-    params.putAll(upload.baseParams);
-    params.put("part", Util.createStringPart(Integer.toString(part)));
-    params.put("size", Util.createStringPart(Integer.toString(size)));
-    params.put("md5", Util.createStringPart(md5));
+    // The base parameters, policy and signature are already encoded in the template
+    final Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("part", Integer.toString(part));
+    fields.put("size", Integer.toString(size));
+    fields.put("md5", md5);
     if (upload.intelligent) {
-      params.put("offset", Util.createStringPart(Integer.toString(offset)));
+      fields.put("offset", Integer.toString(offset));
     }
 
     RetryNetworkFunc<UploadResponse> func;
-    func = new RetryNetworkFunc<UploadResponse>(5, 5, upload.delayBase) {
+    func = new RetryNetworkFunc<UploadResponse>(5, 5, upload.delayBase,
+        upload.metrics) {
       @Override
       Response<UploadResponse> work() throws Exception {
-        return upload.fsService.upload(params).execute();
+        RequestBody form = upload.getUploadForm().create(fields);
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.UPLOAD_CALL);
+        try {
+          return upload.fsService.uploadForm(form).execute();
+        } finally {
+          FlightRecorderEvents.commit(event, part, size, getAttempt());
+        }
       }
     };
 
     return func.call();
   }
 
-  /** Upload chunk/part to S3. */
+  /**
+   * Upload chunk/part to S3.
+   *
+   * @param retries times to retry after network or server failures
+   * @throws CancellationException if another copy of a regular part finished first
+   */
   private int uploadToS3(final Upload upload, final int part, final int offset,
-                         final int size, final byte[] bytes)
+                         final int size, final byte[] bytes, int retries)
       throws Exception {
 
     RetryNetworkFunc<Integer> func;
-    func = new RetryNetworkFunc<Integer>(5, 5, upload.delayBase) {
+    func = new RetryNetworkFunc<Integer>(retries, retries, upload.delayBase,
+        upload.metrics) {
       private int attemptSize = size;
+      private Call<ResponseBody> call;
 
       @Override
       Response<ResponseBody> work() throws Exception {
@@ -150,11 +283,24 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog<FileLink>> {
         String url = params.getUrl();
 
         RequestBody requestBody = RequestBody.create(upload.mediaType, bytes, 0, attemptSize);
-        return upload.fsService.uploadS3(headers, url, requestBody).execute();
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.S3_PUT);
+        try {
+          call = upload.fsService.uploadS3(headers, url, requestBody);
+          if (!upload.intelligent) {
+            upload.stragglers.register(part, call);
+          }
+          return call.execute();
+        } finally {
+          FlightRecorderEvents.commit(event, part, attemptSize, getAttempt());
+        }
       }
 
       @Override
       public void onNetworkFail(int retries) {
+        if (!upload.intelligent && upload.stragglers.isDone(part)) {
+          // Cancelled because another copy finished, don't retry
+          throw new CancellationException();
+        }
         if (upload.intelligent) {
           attemptSize /= 2;
         }
@@ -164,8 +310,8 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog<FileLink>> {
       @Override
       Integer process(Response response) {
         if (!upload.intelligent) {
-          String etag = response.headers().get("ETag");
-          upload.etags[part - 1] = etag;
+          // Only the first copy of a part to finish sets its ETag
+          upload.stragglers.finish(part, call, response.headers().get("ETag"));
         }
         return attemptSize;
       }
@@ -175,16 +321,23 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog<FileLink>> {
   }
 
   /** For intelligent ingestion mode only. Called when all chunks of a part have been uploaded. */
-  private void multipartCommit(final Upload upload, int part) throws Exception {
+  private void multipartCommit(final Upload upload, final int part) throws Exception {
     final HashMap<String, RequestBody> params = new HashMap<>();
     params.putAll(upload.baseParams);
     params.put("part", Util.createStringPart(Integer.toString(part)));
 
     RetryNetworkFunc<ResponseBody> func;
-    func = new RetryNetworkFunc<ResponseBody>(5, 5, upload.delayBase) {
+    func = new RetryNetworkFunc<ResponseBody>(5, 5, upload.delayBase,
+        upload.metrics) {
       @Override
       Response<ResponseBody> work() throws Exception {
-        return upload.fsService.commit(params).execute();
+        upload.putSecurity(params);
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.COMMIT);
+        try {
+          return upload.fsService.commit(params).execute();
+        } finally {
+          FlightRecorderEvents.commit(event, part, 0, getAttempt());
+        }
       }
     };
 
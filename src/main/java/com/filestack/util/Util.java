@@ -1,5 +1,6 @@
 package com.filestack.util;
 
+import com.filestack.Security;
 import com.filestack.errors.FilestackException;
 import com.filestack.errors.InternalException;
 import com.filestack.errors.InvalidParameterException;
@@ -85,6 +86,19 @@ public class Util {
     }
   }
 
+  /**
+   * Checks locally that a policy allows an operation, before making the request.
+   * Does nothing if security isn't set.
+   *
+   * @see Security#checkPolicy(String, String, long)
+   */
+  public static void checkPolicy(Security security, String call, String handle, long size)
+      throws PolicySignatureException {
+    if (security != null) {
+      security.checkPolicy(call, handle, size);
+    }
+  }
+
   /**
    * Takes an {@link Throwable} and recasts it to one of the {@link FilestackException} classes.
    *
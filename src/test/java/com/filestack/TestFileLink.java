@@ -1,11 +1,14 @@
 package com.filestack;
 
 import com.filestack.errors.FilestackException;
+import com.filestack.errors.PolicySignatureException;
 import com.filestack.errors.ValidationException;
 import com.filestack.util.FsService;
 import com.google.common.io.Files;
+import io.reactivex.Flowable;
 import java.io.File;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
@@ -103,6 +106,71 @@ public class TestFileLink {
     }
   }
 
+  @Test
+  public void testDownloadWithProgress() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+
+    MediaType mediaType = MediaType.parse("text/plain");
+    ResponseBody response = ResponseBody.create(mediaType, "Test content");
+    Call call = Calls.response(response);
+
+    Mockito.doReturn(call)
+        .when(mockFsService)
+        .get("handle", null, null);
+
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(mockFsService)
+        .build();
+
+    Progress<File> progress = fileLink
+        .downloadWithProgressAsync("/tmp/", "filestack_test_filelink_download_progress.txt",
+            100, TimeUnit.MILLISECONDS)
+        .blockingLast();
+
+    File file = progress.getData();
+    Assert.assertTrue(file.isFile());
+    Assert.assertEquals(12, progress.getBytesMoved());
+    Assert.assertEquals(12, progress.getBytesTotal());
+    if (!file.delete()) {
+      Assert.fail("Unable to cleanup resource");
+    }
+  }
+
+  @Test
+  public void testDownloadWithProgressSubscribedLater() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito.doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        MediaType mediaType = MediaType.parse("text/plain");
+        return Calls.response(ResponseBody.create(mediaType, "Test content"));
+      }
+    })
+        .when(mockFsService)
+        .get("handle", null, null);
+
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(mockFsService)
+        .build();
+
+    Flowable<Progress<File>> download = fileLink
+        .downloadWithProgressAsync("/tmp/", "filestack_test_filelink_download_later.txt",
+            100, TimeUnit.MILLISECONDS);
+    Thread.sleep(1100);
+
+    // Each subscription is timed from when it's subscribed, and counts its own bytes
+    for (int i = 0; i < 2; i++) {
+      Progress<File> progress = download.blockingLast();
+      Assert.assertEquals(0, progress.getElapsed());
+      Assert.assertEquals(12, progress.getBytesMoved());
+      Assert.assertTrue(progress.getData().delete());
+    }
+  }
+
   @Test
   public void testOverwrite() throws Exception {
     FsService mockFsService = Mockito.mock(FsService.class);
@@ -168,6 +236,28 @@ public class TestFileLink {
     fileLink.delete();
   }
 
+  @Test
+  public void testDeleteNotAllowedByPolicy() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+
+    Policy policy = new Policy.Builder().expiry(4653651600L).addCall(Policy.CALL_READ).build();
+    Security security = Security.createNew(policy, "appSecret");
+
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .security(security)
+        .service(mockFsService)
+        .build();
+
+    try {
+      fileLink.delete();
+      Assert.fail("Delete should be rejected before a request is made");
+    } catch (PolicySignatureException e) {
+      Mockito.verifyZeroInteractions(mockFsService);
+    }
+  }
+
   @Test(expected = FilestackException.class)
   public void testOverwriteWithoutSecurity() throws Exception {
     FileLink fileLink = new FileLink("apiKey", "handle");
@@ -4,14 +4,26 @@ import com.filestack.errors.ValidationException;
 import com.filestack.responses.CompleteResponse;
 import com.filestack.responses.StartResponse;
 import com.filestack.responses.UploadResponse;
+import com.filestack.util.FsApiService;
 import com.filestack.util.FsService;
+import com.filestack.util.Util;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
@@ -20,6 +32,7 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -44,6 +57,13 @@ public class TestFilestackClient {
     return path;
   }
 
+  /** Reads a field from the form of an upload API call. */
+  private static String formField(RequestBody form, String name) throws IOException {
+    Pattern pattern = Pattern.compile("name=\"" + name + "\"\r\n(?:.+\r\n)*\r\n(.*)\r\n");
+    Matcher matcher = pattern.matcher(Util.partToString(form));
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
   private static void setupStartMock(FsService fsService) {
     String jsonString = "{"
         + "'uri' : '/bucket/apikey/filename',"
@@ -85,7 +105,7 @@ public class TestFilestackClient {
           }
         })
         .when(fsService)
-        .upload(Mockito.<String, RequestBody>anyMap());
+        .uploadForm(Mockito.any(RequestBody.class));
   }
 
   private static void setupUploadS3Mock(FsService fsService) {
@@ -184,4 +204,220 @@ public class TestFilestackClient {
 
     Files.delete(path);
   }
+
+  @Test
+  public void testUploadChunksConcurrently() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    setupStartMock(mockFsService);
+    setupCompleteMock(mockFsService);
+
+    final Set<String> offsets = Collections.synchronizedSet(new HashSet<String>());
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            offsets.add(formField((RequestBody) invocation.getArgument(0), "offset"));
+            String json = "{'url' : 'https://s3.amazonaws.com/path', 'headers' : {}}";
+            return Calls.response(new Gson().fromJson(json, UploadResponse.class));
+          }
+        })
+        .when(mockFsService)
+        .uploadForm(Mockito.any(RequestBody.class));
+
+    // Each PUT takes a while, so chunks sent one after another never overlap
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final AtomicInteger finished = new AtomicInteger();
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            Call<ResponseBody> call = Mockito.mock(Call.class);
+            Mockito
+                .doAnswer(new Answer() {
+                  @Override
+                  public Object answer(InvocationOnMock invocation) throws Throwable {
+                    int now = running.incrementAndGet();
+                    int max = maxRunning.get();
+                    while (now > max && !maxRunning.compareAndSet(max, now)) {
+                      max = maxRunning.get();
+                    }
+                    Thread.sleep(100);
+                    running.decrementAndGet();
+                    finished.incrementAndGet();
+                    ResponseBody body = ResponseBody.create(MediaType.parse("text/xml"), "");
+                    return Response.success(body);
+                  }
+                })
+                .when(call)
+                .execute();
+            return call;
+          }
+        })
+        .when(mockFsService)
+        .uploadS3(Mockito.<String, String>anyMap(), Mockito.anyString(),
+            Mockito.any(RequestBody.class));
+
+    // The part is only committed once all of its chunks are in
+    final AtomicInteger finishedAtCommit = new AtomicInteger();
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            finishedAtCommit.set(finished.get());
+            return Calls.response(ResponseBody.create(MediaType.parse("text/plain"), ""));
+          }
+        })
+        .when(mockFsService)
+        .commit(Mockito.<String, RequestBody>anyMap());
+
+    FilestackClient client = new FilestackClient.Builder()
+        .apiKey("api_key")
+        .service(mockFsService)
+        .delayBase(0)
+        .build();
+
+    // One part with four 1 MB chunks
+    Path path = createRandomFile(4 * 1024 * 1024);
+    FileLink fileLink = client.upload(path.toString(), "text/plain");
+    Files.delete(path);
+
+    Assert.assertEquals("handle", fileLink.getHandle());
+    Assert.assertEquals(4, finished.get());
+    Assert.assertEquals(4, finishedAtCommit.get());
+    Assert.assertTrue(maxRunning.get() > 1);
+    Assert.assertEquals(new HashSet<>(Arrays.asList("0", "1048576", "2097152", "3145728")),
+        offsets);
+  }
+
+  @Test
+  public void testUploadHedgesSlowPart() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+
+    String startJson = "{"
+        + "'uri' : '/bucket/apikey/filename',"
+        + "'region' : 'region',"
+        + "'upload_id' : 'id',"
+        + "'location_url' : 'url',"
+        + "'upload_type' : 'regular'"
+        + "}";
+    Mockito
+        .doReturn(Calls.response(new Gson().fromJson(startJson, StartResponse.class)))
+        .when(mockFsService)
+        .start(Mockito.<String, RequestBody>anyMap());
+
+    // Put the part number in the S3 URL so the S3 mock can tell parts apart
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            String part = formField((RequestBody) invocation.getArgument(0), "part");
+            String json = "{'url' : 'https://s3.amazonaws.com/" + part + "', 'headers' : {}}";
+            return Calls.response(new Gson().fromJson(json, UploadResponse.class));
+          }
+        })
+        .when(mockFsService)
+        .uploadForm(Mockito.any(RequestBody.class));
+
+    // The first PUT of part 2 hangs until it's cancelled
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    final Call<ResponseBody> slowCall = Mockito.mock(Call.class);
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            cancelled.await(10, TimeUnit.SECONDS);
+            throw new IOException("Canceled");
+          }
+        })
+        .when(slowCall)
+        .execute();
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            cancelled.countDown();
+            return null;
+          }
+        })
+        .when(slowCall)
+        .cancel();
+
+    final AtomicInteger part2Puts = new AtomicInteger();
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            String url = invocation.getArgument(1);
+            if (url.endsWith("/2") && part2Puts.getAndIncrement() == 0) {
+              return slowCall;
+            }
+            ResponseBody body = ResponseBody.create(MediaType.parse("text/xml"), "");
+            return Calls.response(Response.success(body, Headers.of("ETag", "etag" + url)));
+          }
+        })
+        .when(mockFsService)
+        .uploadS3(Mockito.<String, String>anyMap(), Mockito.anyString(),
+            Mockito.any(RequestBody.class));
+
+    setupCompleteMock(mockFsService);
+
+    FilestackClient client = new FilestackClient.Builder()
+        .apiKey("api_key")
+        .service(mockFsService)
+        .delayBase(0)
+        .build();
+
+    // Three 5 MB parts
+    Path path = createRandomFile(15 * 1024 * 1024);
+    long start = System.nanoTime();
+    FileLink fileLink = client.upload(path.toString(), "text/plain");
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Files.delete(path);
+
+    Assert.assertEquals("handle", fileLink.getHandle());
+    Assert.assertEquals(2, part2Puts.get());
+    Mockito.verify(slowCall).cancel();
+    // Without the hedge the upload would wait for the slow PUT to time out
+    Assert.assertTrue("Took " + elapsed + " ms", elapsed < 5000);
+
+    ArgumentCaptor<Map<String, RequestBody>> captor = ArgumentCaptor.forClass(Map.class);
+    Mockito.verify(mockFsService).complete(captor.capture());
+    String parts = Util.partToString(captor.getValue().get("parts"));
+    Assert.assertTrue(parts, parts.contains("2:etaghttps://s3.amazonaws.com/2"));
+  }
+
+  @Test
+  public void testWarmUp() throws Exception {
+    okhttp3.Call apiCall = Mockito.mock(okhttp3.Call.class);
+    Mockito.doThrow(new IOException("Unreachable")).when(apiCall).execute();
+    okhttp3.Call s3Call = Mockito.mock(okhttp3.Call.class);
+    Mockito.doThrow(new IOException("Unreachable")).when(s3Call).execute();
+
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito.doReturn(Arrays.asList(apiCall, s3Call))
+        .when(mockFsService)
+        .createWarmUpCalls("https://bucket.s3.amazonaws.com/");
+
+    FilestackClient client = new FilestackClient.Builder()
+        .apiKey("apiKey")
+        .service(mockFsService)
+        .build();
+
+    // Failures are ignored, requests connect on their own
+    client.warmUp("https://bucket.s3.amazonaws.com/");
+
+    Mockito.verify(apiCall).execute();
+    Mockito.verify(s3Call).execute();
+  }
+
+  @Test
+  public void testWarmUpCustomServices() {
+    FsService fsService = new FsService(null, null, null);
+    Assert.assertEquals(4, fsService.createWarmUpCalls().size());
+
+    FsApiService api = Mockito.mock(FsApiService.class);
+    fsService = new FsService(api, null, null);
+    Assert.assertTrue(fsService.createWarmUpCalls().isEmpty());
+  }
 }
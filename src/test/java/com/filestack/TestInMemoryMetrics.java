@@ -0,0 +1,104 @@
+package com.filestack;
+
+import com.filestack.util.HttpEndpoint;
+import com.filestack.util.HttpPhase;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link InMemoryMetrics} and {@link NoOpMetrics}.
+ */
+public class TestInMemoryMetrics {
+
+  private static class FakeTicker extends Ticker {
+    long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  @Test
+  public void testCounters() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+
+    metrics.bytesSent(100);
+    metrics.bytesSent(50);
+    metrics.bytesReceived(10);
+    metrics.chunkSizeChanged(1024 * 1024, 512 * 1024);
+    metrics.networkRetry();
+    metrics.serverRetry();
+    metrics.serverRetry();
+    metrics.cacheHit(FilestackMetrics.Cache.TRANSFORM);
+    metrics.cacheMiss(FilestackMetrics.Cache.RANGE_BLOCK);
+    metrics.cacheMiss(FilestackMetrics.Cache.RANGE_BLOCK);
+
+    Assert.assertEquals(150, metrics.getBytesSent());
+    Assert.assertEquals(10, metrics.getBytesReceived());
+    Assert.assertEquals(1, metrics.getChunkSizeChanges());
+    Assert.assertEquals(512 * 1024, metrics.getChunkSize());
+    Assert.assertEquals(1, metrics.getNetworkRetries());
+    Assert.assertEquals(2, metrics.getServerRetries());
+    Assert.assertEquals(1, metrics.getCacheHits(FilestackMetrics.Cache.TRANSFORM));
+    Assert.assertEquals(0, metrics.getCacheMisses(FilestackMetrics.Cache.TRANSFORM));
+    Assert.assertEquals(0, metrics.getCacheHits(FilestackMetrics.Cache.RANGE_BLOCK));
+    Assert.assertEquals(2, metrics.getCacheMisses(FilestackMetrics.Cache.RANGE_BLOCK));
+  }
+
+  @Test
+  public void testParts() {
+    FakeTicker ticker = new FakeTicker();
+    InMemoryMetrics metrics = new InMemoryMetrics(ticker);
+    Assert.assertEquals(0, metrics.getPartsPerSecond(), 0);
+
+    ticker.nanos = TimeUnit.SECONDS.toNanos(2);
+    metrics.partUploaded(TimeUnit.MILLISECONDS.toNanos(800), 3);
+    metrics.partUploaded(TimeUnit.MILLISECONDS.toNanos(1200), 2);
+    metrics.partUploaded(TimeUnit.MILLISECONDS.toNanos(1000), 1);
+
+    Assert.assertEquals(1.5, metrics.getPartsPerSecond(), 0.001);
+    Assert.assertEquals(1, metrics.getPendingParts());
+    Assert.assertEquals(3, metrics.getPartDurations().getCount());
+    Assert.assertEquals(1200, metrics.getPartDurations().getMax(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testHedgedReads() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    Assert.assertEquals(0, metrics.getHedgeRate(), 0);
+    Assert.assertEquals(0, metrics.getHedgeWinRate(), 0);
+
+    metrics.hedgedRead(false, false);
+    metrics.hedgedRead(false, false);
+    metrics.hedgedRead(true, false);
+    metrics.hedgedRead(true, true);
+
+    Assert.assertEquals(2, metrics.getHedgedReads());
+    Assert.assertEquals(1, metrics.getHedgesWon());
+    Assert.assertEquals(0.5, metrics.getHedgeRate(), 0.001);
+    Assert.assertEquals(0.5, metrics.getHedgeWinRate(), 0.001);
+  }
+
+  @Test
+  public void testHttpPhases() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    metrics.recordHttpPhase(HttpEndpoint.S3, HttpPhase.REQUEST_BODY, 5000);
+
+    Assert.assertEquals(1,
+        metrics.getHttpHistogram(HttpEndpoint.S3, HttpPhase.REQUEST_BODY).getCount());
+    Assert.assertEquals(0,
+        metrics.getHttpHistogram(HttpEndpoint.CDN, HttpPhase.REQUEST_BODY).getCount());
+  }
+
+  @Test
+  public void testNoOp() {
+    FilestackMetrics metrics = NoOpMetrics.INSTANCE;
+    metrics.bytesSent(1);
+    metrics.partUploaded(1, 0);
+    metrics.cacheHit(FilestackMetrics.Cache.TRANSFORM);
+    metrics.recordHttpPhase(HttpEndpoint.API, HttpPhase.TOTAL, 1);
+  }
+}
@@ -1,5 +1,6 @@
 package com.filestack;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.filestack.Policy;
@@ -36,4 +37,26 @@ public class TestPolicy {
 
     assertTrue("Incorrect JSON policy", CORRECT_JSON_POLICY.equals(jsonPolicy));
   }
+
+  @Test
+  public void testToJson() {
+    Gson gson = new Gson();
+
+    Policy full = new Policy.Builder()
+        .giveFullAccess()
+        .handle("KW9EJhYtS6y48Whm2S6D")
+        .url("https://example\\.com/a?b=c&d='<e>'\"\t\u2028\u0001")
+        .maxSize(1024)
+        .minSize(128)
+        .path("/some/dir/")
+        .container("caf\u00e9")
+        .build();
+    assertEquals(gson.toJson(full), full.toJson());
+
+    Policy empty = new Policy.Builder().build();
+    assertEquals(gson.toJson(empty), empty.toJson());
+
+    Policy nullCall = new Policy.Builder().addCall(null).addCall(Policy.CALL_READ).build();
+    assertEquals(gson.toJson(nullCall), nullCall.toJson());
+  }
 }
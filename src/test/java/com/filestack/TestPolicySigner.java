@@ -0,0 +1,85 @@
+package com.filestack;
+
+import com.filestack.errors.InvalidArgumentException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPolicySigner {
+  private static final String APP_SECRET = "N3XOC2GP2NFTDCM43DZ6F2L6N4";
+
+  @Test
+  public void testSign() {
+    Policy policy = new Policy.Builder().expiry(4653651600L).build();
+    Security security = new PolicySigner(APP_SECRET).sign(policy);
+
+    Assert.assertEquals("eyJleHBpcnkiOjQ2NTM2NTE2MDB9", security.getPolicy());
+    Assert.assertEquals("d0dcacc68d00b7d2cd18c7f82aaf5bf172fdb423dc3cf0540d0da04912867e13",
+        security.getSignature());
+  }
+
+  @Test
+  public void testCache() {
+    PolicySigner signer = new PolicySigner(APP_SECRET, 2);
+    Security first = signer.sign(new Policy.Builder().handle("handle1").build());
+
+    // Equal policies share the signature
+    Assert.assertSame(first, signer.sign(new Policy.Builder().handle("handle1").build()));
+
+    // Least recently used is evicted
+    signer.sign(new Policy.Builder().handle("handle2").build());
+    signer.sign(new Policy.Builder().handle("handle3").build());
+    Security again = signer.sign(new Policy.Builder().handle("handle1").build());
+    Assert.assertNotSame(first, again);
+    Assert.assertEquals(first.getSignature(), again.getSignature());
+  }
+
+  @Test
+  public void testNoCache() {
+    PolicySigner signer = new PolicySigner(APP_SECRET, 0);
+    Policy policy = new Policy.Builder().handle("handle").build();
+
+    Assert.assertNotSame(signer.sign(policy), signer.sign(policy));
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    final PolicySigner signer = new PolicySigner(APP_SECRET, 16);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Security>> futures = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        final int expiry = i % 32;
+        futures.add(executor.submit(new Callable<Security>() {
+          @Override
+          public Security call() throws Exception {
+            return signer.sign(new Policy.Builder().expiry((long) expiry).build());
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Policy policy = new Policy.Builder().expiry((long) (i % 32)).build();
+        Security expected = Security.createNew(policy, APP_SECRET);
+        Assert.assertEquals(expected.getPolicy(), futures.get(i).get().getPolicy());
+        Assert.assertEquals(expected.getSignature(), futures.get(i).get().getSignature());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testEmptySecret() {
+    new PolicySigner("");
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testNegativeCacheSize() {
+    new PolicySigner(APP_SECRET, -1);
+  }
+}
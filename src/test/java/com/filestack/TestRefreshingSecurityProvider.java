@@ -0,0 +1,125 @@
+package com.filestack;
+
+import com.filestack.errors.InvalidArgumentException;
+import com.filestack.transforms.ImageTransform;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRefreshingSecurityProvider {
+  private static final String APP_SECRET = "N3XOC2GP2NFTDCM43DZ6F2L6N4";
+
+  private static RefreshingSecurityProvider createProvider(TestScheduler scheduler) {
+    PolicySigner signer = new PolicySigner(APP_SECRET);
+    Policy.Builder builder = new Policy.Builder().handle("handle").addCall(Policy.CALL_READ);
+    return new RefreshingSecurityProvider(signer, builder, 1, TimeUnit.HOURS, scheduler);
+  }
+
+  private static Security expected(long expiry) {
+    Policy policy = new Policy.Builder()
+        .handle("handle")
+        .addCall(Policy.CALL_READ)
+        .expiry(expiry)
+        .build();
+    return Security.createNew(policy, APP_SECRET);
+  }
+
+  @Test
+  public void testRefresh() {
+    TestScheduler scheduler = new TestScheduler();
+    scheduler.advanceTimeTo(1000, TimeUnit.SECONDS);
+    RefreshingSecurityProvider provider = createProvider(scheduler);
+
+    Security first = provider.getSecurity();
+    Assert.assertEquals(expected(1000 + 3600).getSignature(), first.getSignature());
+
+    // Not replaced until 75% of the lifetime has passed
+    scheduler.advanceTimeBy(44, TimeUnit.MINUTES);
+    Assert.assertSame(first, provider.getSecurity());
+
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    Security second = provider.getSecurity();
+    Assert.assertEquals(expected(1000 + 45 * 60 + 3600).getSignature(), second.getSignature());
+
+    scheduler.advanceTimeBy(45, TimeUnit.MINUTES);
+    Assert.assertNotSame(second, provider.getSecurity());
+  }
+
+  @Test
+  public void testRefreshFailure() {
+    TestScheduler scheduler = new TestScheduler();
+    final int[] signs = new int[1];
+    PolicySigner signer = new PolicySigner(APP_SECRET) {
+      @Override
+      public Security sign(Policy policy) {
+        // The first background refresh fails
+        if (++signs[0] == 2) {
+          throw new IllegalStateException("Signing failed");
+        }
+        return super.sign(policy);
+      }
+    };
+    Policy.Builder builder = new Policy.Builder().handle("handle").addCall(Policy.CALL_READ);
+    RefreshingSecurityProvider provider =
+        new RefreshingSecurityProvider(signer, builder, 1, TimeUnit.HOURS, scheduler);
+    Security first = provider.getSecurity();
+
+    // The current pair is kept, and the refresh is tried again after a minute
+    scheduler.advanceTimeBy(45, TimeUnit.MINUTES);
+    Assert.assertSame(first, provider.getSecurity());
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    Security second = provider.getSecurity();
+    Assert.assertNotSame(first, second);
+
+    // Refreshing carries on at every period
+    scheduler.advanceTimeBy(44, TimeUnit.MINUTES);
+    Assert.assertNotSame(second, provider.getSecurity());
+  }
+
+  @Test
+  public void testClose() {
+    TestScheduler scheduler = new TestScheduler();
+    RefreshingSecurityProvider provider = createProvider(scheduler);
+    Security first = provider.getSecurity();
+
+    provider.close();
+    scheduler.advanceTimeBy(1, TimeUnit.DAYS);
+
+    Assert.assertSame(first, provider.getSecurity());
+  }
+
+  @Test
+  public void testClientsUseCurrent() {
+    TestScheduler scheduler = new TestScheduler();
+    RefreshingSecurityProvider provider = createProvider(scheduler);
+
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .securityProvider(provider)
+        .build();
+    FilestackClient client = new FilestackClient.Builder()
+        .apiKey("apiKey")
+        .securityProvider(provider)
+        .build();
+    ImageTransform transform = fileLink.imageTransform();
+    String url = transform.url();
+
+    scheduler.advanceTimeBy(1, TimeUnit.HOURS);
+    Security current = provider.getSecurity();
+
+    Assert.assertSame(current, fileLink.getSecurity());
+    Assert.assertSame(current, client.getSecurity());
+    // A transform created before the refresh uses the new pair too
+    String refreshedUrl = transform.url();
+    Assert.assertNotEquals(url, refreshedUrl);
+    Assert.assertTrue(refreshedUrl.contains(current.getSignature()));
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidLifetime() {
+    new RefreshingSecurityProvider(new PolicySigner(APP_SECRET), new Policy.Builder(), 10,
+        TimeUnit.MILLISECONDS);
+  }
+}
@@ -1,5 +1,6 @@
 package com.filestack;
 
+import com.filestack.errors.PolicySignatureException;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -25,4 +26,58 @@ public class TestSecurity {
     Assert.assertEquals("<policy>", security.getPolicy());
     Assert.assertEquals("<signature>", security.getSignature());
   }
+
+  @Test
+  public void testCheckPolicyAllowed() throws Exception {
+    Policy policy = new Policy.Builder()
+        .expiry(4653651600L)
+        .addCall(Policy.CALL_READ)
+        .addCall(Policy.CALL_STORE)
+        .handle("handle")
+        .minSize(10)
+        .maxSize(100)
+        .build();
+    Security security = Security.createNew(policy, "appSecret");
+
+    security.checkPolicy(Policy.CALL_READ, "handle", -1);
+    security.checkPolicy(Policy.CALL_STORE, null, 50);
+    security.checkPolicy(null, "handle", -1);
+  }
+
+  @Test(expected = PolicySignatureException.class)
+  public void testCheckPolicyExpired() throws Exception {
+    Policy policy = new Policy.Builder().expiry(1000L).build();
+    Security.createNew(policy, "appSecret").checkPolicy(null, null, -1);
+  }
+
+  @Test(expected = PolicySignatureException.class)
+  public void testCheckPolicyCall() throws Exception {
+    Policy policy = new Policy.Builder().expiry(4653651600L).addCall(Policy.CALL_READ).build();
+    Security.createNew(policy, "appSecret").checkPolicy(Policy.CALL_REMOVE, "handle", -1);
+  }
+
+  @Test(expected = PolicySignatureException.class)
+  public void testCheckPolicyHandle() throws Exception {
+    Policy policy = new Policy.Builder().expiry(4653651600L).handle("handle").build();
+    Security.createNew(policy, "appSecret").checkPolicy(Policy.CALL_READ, "other", -1);
+  }
+
+  @Test(expected = PolicySignatureException.class)
+  public void testCheckPolicyMaxSize() throws Exception {
+    Policy policy = new Policy.Builder().expiry(4653651600L).maxSize(100).build();
+    Security.createNew(policy, "appSecret").checkPolicy(Policy.CALL_STORE, null, 101);
+  }
+
+  @Test(expected = PolicySignatureException.class)
+  public void testCheckPolicyMinSize() throws Exception {
+    Policy policy = new Policy.Builder().expiry(4653651600L).minSize(10).build();
+    Security.createNew(policy, "appSecret").checkPolicy(Policy.CALL_STORE, null, 9);
+  }
+
+  @Test
+  public void testCheckPolicyFromExisting() throws Exception {
+    // An existing pair can't be decoded reliably, the server checks it
+    Security security = Security.fromExisting("<policy>", "<signature>");
+    security.checkPolicy(Policy.CALL_REMOVE, "handle", Long.MAX_VALUE);
+  }
 }
@@ -37,4 +37,17 @@ public class TestImageTagResponse {
     Assert.assertEquals(10, tags.size());
     Assert.assertEquals((Integer) 58, tags.get("accipitriformes"));
   }
+
+  @Test
+  public void testRoundTrip() {
+    Gson gson = new Gson();
+
+    String jsonString = "{'tags': {'auto': {'owl': 97, 'bird': 90}, 'user': {'mine': 100}}}";
+    ImageTagResponse imageTags = gson.fromJson(gson.toJson(gson.fromJson(jsonString,
+        ImageTagResponse.class)), ImageTagResponse.class);
+
+    // Order of the tags is kept
+    Assert.assertEquals("[owl, bird]", imageTags.getAuto().keySet().toString());
+    Assert.assertEquals((Integer) 100, imageTags.getUser().get("mine"));
+  }
 }
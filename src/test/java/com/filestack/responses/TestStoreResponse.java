@@ -32,4 +32,38 @@ public class TestStoreResponse {
     Assert.assertEquals(0, response.getHeight());
     Assert.assertEquals(0, response.getSize());
   }
+
+  @Test
+  public void testUnknownAndNull() {
+    Gson gson = new Gson();
+
+    String jsonString = "{"
+        + "'url' : null,"
+        + "'extra' : {'nested' : [1, 2, {'a' : 'b'}]},"
+        + "'width' : null,"
+        + "'height' : 20"
+        + "}";
+
+    StoreResponse response = gson.fromJson(jsonString, StoreResponse.class);
+
+    Assert.assertNull(response.getUrl());
+    Assert.assertEquals(0, response.getWidth());
+    Assert.assertEquals(20, response.getHeight());
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Gson gson = new Gson();
+
+    String jsonString = "{'url':'<url>','filename':'<filename>','width':10,'height':20,'size':30}";
+    StoreResponse response = gson.fromJson(gson.toJson(gson.fromJson(jsonString,
+        StoreResponse.class)), StoreResponse.class);
+
+    Assert.assertEquals("<url>", response.getUrl());
+    Assert.assertEquals("<filename>", response.getFilename());
+    Assert.assertNull(response.getType());
+    Assert.assertEquals(10, response.getWidth());
+    Assert.assertEquals(20, response.getHeight());
+    Assert.assertEquals(30, response.getSize());
+  }
 }
@@ -6,6 +6,10 @@ import com.filestack.errors.InternalException;
 import com.filestack.errors.InvalidArgumentException;
 import com.filestack.transforms.tasks.AvTransformOptions;
 import com.filestack.util.FsService;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
 import org.junit.Assert;
@@ -105,4 +109,43 @@ public class TestAvTransform {
 
     fileLink.avTransform(avOptions).getFileLink();
   }
+
+  @Test
+  public void testGetFilelinkAsync() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    final AtomicInteger requests = new AtomicInteger();
+
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Call<ResponseBody> answer(InvocationOnMock invocation) throws Throwable {
+            boolean ready = requests.incrementAndGet() == 3;
+            String json = "{'status':" + (ready ? "'completed'" : "'pending'") + ","
+                + "'data': {'url': 'https://cdn.filestackcontent.com/handle'}}";
+            MediaType mediaType = MediaType.parse("application/json");
+            return Calls.response(ResponseBody.create(mediaType, json));
+          }
+        })
+        .when(mockFsService)
+        .transform(Mockito.anyString(), Mockito.anyString());
+
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(mockFsService)
+        .build();
+
+    AvTransformOptions avOptions = new AvTransformOptions.Builder().preset("mp4").build();
+    AvTransform avTransform = fileLink.avTransform(avOptions);
+    TestScheduler scheduler = new TestScheduler();
+    avTransform.poller = new AvTransformPoller(scheduler, scheduler, 100, 1000);
+
+    TestObserver<FileLink> observer = avTransform.getFileLinkAsync(10).test();
+    scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+    observer.awaitTerminalEvent(5, TimeUnit.SECONDS);
+
+    observer.assertValueCount(1);
+    Assert.assertEquals("handle", observer.values().get(0).getHandle());
+    Assert.assertEquals(3, requests.get());
+  }
 }
@@ -0,0 +1,115 @@
+package com.filestack.transforms;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAvTransformPoller {
+
+  /** Stub job that's pending for a number of checks and records when it was checked. */
+  private static class StubJob implements Callable<String> {
+    final TestScheduler scheduler;
+    final int checksUntilDone;
+    final ArrayList<Long> checkTimes = new ArrayList<>();
+
+    StubJob(TestScheduler scheduler, int checksUntilDone) {
+      this.scheduler = scheduler;
+      this.checksUntilDone = checksUntilDone;
+    }
+
+    @Override
+    public String call() throws Exception {
+      checkTimes.add(scheduler.now(TimeUnit.MILLISECONDS));
+      return checkTimes.size() >= checksUntilDone ? "done" : null;
+    }
+  }
+
+  @Test
+  public void testBackoff() {
+    TestScheduler scheduler = new TestScheduler();
+    AvTransformPoller poller = new AvTransformPoller(scheduler, scheduler, 100, 1000);
+    StubJob job = new StubJob(scheduler, 10);
+
+    TestObserver<String> observer = poller.poll(job, 10, TimeUnit.SECONDS).test();
+    scheduler.advanceTimeBy(5, TimeUnit.MINUTES);
+
+    observer.assertValue("done");
+    Assert.assertEquals(10, job.checkTimes.size());
+    // First check is right away
+    Assert.assertEquals(0, (long) job.checkTimes.get(0));
+
+    long expected = 1000;
+    for (int i = 1; i < job.checkTimes.size(); i++) {
+      long interval = job.checkTimes.get(i) - job.checkTimes.get(i - 1);
+      // Within jitter, rounded to the tick
+      Assert.assertTrue("interval " + interval, interval >= expected * 0.8 - 100);
+      Assert.assertTrue("interval " + interval, interval <= expected * 1.2 + 100);
+      expected = Math.min(10000, (long) (expected * 1.5));
+    }
+    Assert.assertEquals(0, poller.getPending());
+  }
+
+  @Test
+  public void testLoad() {
+    TestScheduler scheduler = new TestScheduler();
+    AvTransformPoller poller = new AvTransformPoller(scheduler, scheduler, 100, 1000);
+    Random random = new Random(1);
+
+    ArrayList<StubJob> jobs = new ArrayList<>();
+    ArrayList<TestObserver<String>> observers = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      StubJob job = new StubJob(scheduler, 1 + random.nextInt(12));
+      jobs.add(job);
+      observers.add(poller.poll(job, 10, TimeUnit.SECONDS).test());
+    }
+    Assert.assertEquals(5000, poller.getPending());
+
+    scheduler.advanceTimeBy(10, TimeUnit.MINUTES);
+
+    for (int i = 0; i < jobs.size(); i++) {
+      observers.get(i).assertValue("done");
+      Assert.assertEquals(jobs.get(i).checksUntilDone, jobs.get(i).checkTimes.size());
+    }
+    Assert.assertEquals(0, poller.getPending());
+  }
+
+  @Test
+  public void testError() {
+    TestScheduler scheduler = new TestScheduler();
+    AvTransformPoller poller = new AvTransformPoller(scheduler, scheduler, 100, 1000);
+
+    TestObserver<String> observer = poller.poll(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        throw new IOException();
+      }
+    }, 10, TimeUnit.SECONDS).test();
+    scheduler.triggerActions();
+
+    observer.assertError(IOException.class);
+    Assert.assertEquals(0, poller.getPending());
+  }
+
+  @Test
+  public void testDispose() {
+    TestScheduler scheduler = new TestScheduler();
+    AvTransformPoller poller = new AvTransformPoller(scheduler, scheduler, 100, 1000);
+    StubJob job = new StubJob(scheduler, 100);
+
+    TestObserver<String> observer = poller.poll(job, 10, TimeUnit.SECONDS).test();
+    scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+    int checks = job.checkTimes.size();
+    observer.dispose();
+    scheduler.advanceTimeBy(5, TimeUnit.MINUTES);
+
+    // At most the check that was already scheduled is skipped, no more are made
+    Assert.assertEquals(checks, job.checkTimes.size());
+    Assert.assertEquals(0, poller.getPending());
+  }
+}
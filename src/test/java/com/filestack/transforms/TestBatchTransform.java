@@ -0,0 +1,90 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.responses.StoreResponse;
+import com.filestack.transforms.tasks.ResizeTask;
+import com.filestack.util.FsService;
+import com.google.gson.Gson;
+import io.reactivex.Flowable;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import retrofit2.Response;
+import retrofit2.mock.Calls;
+
+public class TestBatchTransform {
+
+  private static FsService createMockService() {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            String handle = invocation.getArgument(1);
+            if (handle.equals("bad")) {
+              MediaType mediaType = MediaType.parse("text/plain");
+              return Calls.response(Response.error(400, ResponseBody.create(mediaType, "")));
+            }
+            String json = "{'url': 'https://cdn.filestackcontent.com/new_" + handle + "'}";
+            return Calls.response(new Gson().fromJson(json, StoreResponse.class));
+          }
+        })
+        .when(mockFsService)
+        .transformStore(Mockito.anyString(), Mockito.anyString());
+    return mockFsService;
+  }
+
+  @Test
+  public void testStore() throws Exception {
+    FsService mockFsService = createMockService();
+
+    ArrayList<FileLink> fileLinks = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      String handle = i == 7 ? "bad" : "handle" + i;
+      fileLinks.add(new FileLink.Builder()
+          .apiKey("apiKey")
+          .handle(handle)
+          .service(mockFsService)
+          .build());
+    }
+
+    FileLink placeholder = new FileLink("apiKey", "placeholder");
+    ImageTransform transform = placeholder.imageTransform()
+        .addTask(new ResizeTask.Builder().width(100).build());
+    TransformTemplate template = new TransformTemplate.Builder(transform).build();
+
+    BatchTransform batch = new BatchTransform(template, 4);
+    List<BatchResult<FileLink>> results = batch
+        .store(Flowable.fromIterable(fileLinks))
+        .toList()
+        .blockingGet();
+
+    Assert.assertEquals(20, results.size());
+
+    int failures = 0;
+    // Results are emitted in the order they reach the merge, not the order they completed in
+    BatchResult<FileLink> last = results.get(0);
+    for (BatchResult<FileLink> result : results) {
+      if (result.getCompleted() > last.getCompleted()) {
+        last = result;
+      }
+      if (result.isSuccess()) {
+        Assert.assertEquals("new_" + result.getSource().getHandle(),
+            result.getData().getHandle());
+      } else {
+        failures++;
+        Assert.assertEquals("bad", result.getSource().getHandle());
+      }
+    }
+
+    Assert.assertEquals(1, failures);
+    Assert.assertEquals(20, last.getCompleted());
+    Assert.assertEquals(1, last.getFailed());
+  }
+}
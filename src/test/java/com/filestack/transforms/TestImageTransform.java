@@ -3,6 +3,8 @@ package com.filestack.transforms;
 import com.filestack.FileLink;
 import com.filestack.FilestackClient;
 import com.filestack.responses.StoreResponse;
+import com.filestack.transforms.tasks.FlipTask;
+import com.filestack.transforms.tasks.FlopTask;
 import com.filestack.util.FsCdnService;
 import com.filestack.util.FsService;
 import com.google.gson.Gson;
@@ -127,4 +129,39 @@ public class TestImageTransform {
     ImageTransform transform = filelink.imageTransform();
     transform.addTask(null);
   }
+
+  @Test
+  public void testAddTaskImmutable() {
+    FileLink fileLink = new FileLink("apiKey", "handle");
+    ImageTransform base = fileLink.imageTransform().addTask(new FlipTask());
+    ImageTransform flop = base.addTask(new FlopTask());
+    ImageTransform flip = base.addTask(new FlipTask());
+
+    Assert.assertEquals("flip", base.getTasksString());
+    Assert.assertEquals("flip/flop", flop.getTasksString());
+    Assert.assertEquals("flip/flip", flip.getTasksString());
+  }
+
+  @Test
+  public void testStoreRepeated() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(mockFsService)
+        .build();
+
+    String jsonString = "{'url': 'https://cdn.filestackcontent.com/handle'}";
+    StoreResponse storeResponse = new Gson().fromJson(jsonString, StoreResponse.class);
+    Mockito.doReturn(Calls.response(storeResponse), Calls.response(storeResponse))
+        .when(mockFsService)
+        .transformStore("flip/store", "handle");
+
+    ImageTransform transform = fileLink.imageTransform().addTask(new FlipTask());
+    transform.store();
+    transform.store();
+
+    Mockito.verify(mockFsService, Mockito.times(2)).transformStore("flip/store", "handle");
+    Assert.assertEquals("flip", transform.getTasksString());
+  }
 }
@@ -0,0 +1,244 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.transforms.tasks.BlackWhiteTask;
+import com.filestack.transforms.tasks.BlurTask;
+import com.filestack.transforms.tasks.CropTask;
+import com.filestack.transforms.tasks.FileTypeTask;
+import com.filestack.transforms.tasks.FlipTask;
+import com.filestack.transforms.tasks.FlopTask;
+import com.filestack.transforms.tasks.ResizeTask;
+import com.filestack.transforms.tasks.RotateTask;
+import com.filestack.transforms.tasks.SepiaTask;
+import com.filestack.transforms.tasks.SharpenTask;
+import com.filestack.util.FsService;
+import io.reactivex.Completable;
+import io.reactivex.functions.Action;
+import io.reactivex.schedulers.Schedulers;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import retrofit2.mock.Calls;
+
+public class TestLocalImageEngine {
+  private static final int RED = 0xffff0000;
+  private static final int GREEN = 0xff00ff00;
+  private static final int BLUE = 0xff0000ff;
+
+  /** Creates a PNG with a red top left pixel, a green top right, and blue elsewhere. */
+  private static byte[] createImage(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, BLUE);
+      }
+    }
+    image.setRGB(0, 0, RED);
+    image.setRGB(width - 1, 0, GREEN);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", output);
+    return output.toByteArray();
+  }
+
+  private static BufferedImage run(byte[] input, TransformTask... tasks) throws Exception {
+    ResponseBody body = LocalImageEngine.execute(Arrays.asList(tasks),
+        new ByteArrayInputStream(input));
+    return ImageIO.read(body.byteStream());
+  }
+
+  private static ImageTransform createTransform(FsService fsService) {
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(fsService)
+        .build();
+    return new ImageTransform(fileLink);
+  }
+
+  @Test
+  public void testFlipFlop() throws Exception {
+    byte[] input = createImage(4, 3);
+
+    BufferedImage flipped = run(input, new FlipTask());
+    Assert.assertEquals(RED, flipped.getRGB(0, 2));
+    Assert.assertEquals(GREEN, flipped.getRGB(3, 2));
+
+    BufferedImage flopped = run(input, new FlopTask());
+    Assert.assertEquals(RED, flopped.getRGB(3, 0));
+    Assert.assertEquals(GREEN, flopped.getRGB(0, 0));
+  }
+
+  @Test
+  public void testRotate() throws Exception {
+    BufferedImage rotated = run(createImage(4, 3), new RotateTask.Builder().deg(90).build());
+
+    Assert.assertEquals(3, rotated.getWidth());
+    Assert.assertEquals(4, rotated.getHeight());
+    // Clockwise, so the top left corner moves to the top right
+    Assert.assertEquals(RED, rotated.getRGB(2, 0));
+    Assert.assertEquals(GREEN, rotated.getRGB(2, 3));
+
+    BufferedImage angled = run(createImage(10, 10), new RotateTask.Builder().deg(45).build());
+    Assert.assertEquals(15, angled.getWidth());
+    Assert.assertEquals(0xffffffff, angled.getRGB(0, 0));
+  }
+
+  @Test
+  public void testResize() throws Exception {
+    byte[] input = createImage(40, 20);
+
+    BufferedImage width = run(input, new ResizeTask.Builder().width(20).build());
+    Assert.assertEquals(20, width.getWidth());
+    Assert.assertEquals(10, width.getHeight());
+
+    BufferedImage clip = run(input, new ResizeTask.Builder().width(10).height(10).build());
+    Assert.assertEquals(10, clip.getWidth());
+    Assert.assertEquals(5, clip.getHeight());
+
+    BufferedImage crop = run(input,
+        new ResizeTask.Builder().width(10).height(10).fit("crop").build());
+    Assert.assertEquals(10, crop.getWidth());
+    Assert.assertEquals(10, crop.getHeight());
+
+    BufferedImage scale = run(input,
+        new ResizeTask.Builder().width(10).height(10).fit("scale").build());
+    Assert.assertEquals(10, scale.getWidth());
+    Assert.assertEquals(10, scale.getHeight());
+
+    BufferedImage max = run(input, new ResizeTask.Builder().width(80).fit("max").build());
+    Assert.assertEquals(40, max.getWidth());
+  }
+
+  @Test
+  public void testCrop() throws Exception {
+    BufferedImage cropped = run(createImage(10, 10), new CropTask(8, 0, 5, 3));
+
+    // Clamped to the image
+    Assert.assertEquals(2, cropped.getWidth());
+    Assert.assertEquals(3, cropped.getHeight());
+    Assert.assertEquals(GREEN, cropped.getRGB(1, 0));
+  }
+
+  @Test
+  public void testColor() throws Exception {
+    byte[] input = createImage(4, 4);
+
+    BufferedImage blackWhite = run(input, new BlackWhiteTask());
+    Assert.assertEquals(0xffffffff, blackWhite.getRGB(3, 0));
+    Assert.assertEquals(0xff000000, blackWhite.getRGB(2, 2));
+
+    BufferedImage noTone = run(input, new SepiaTask(0));
+    Assert.assertEquals(BLUE, noTone.getRGB(2, 2));
+    BufferedImage sepia = run(input, new SepiaTask(100));
+    Assert.assertEquals(0xff302a21, sepia.getRGB(2, 2));
+  }
+
+  @Test
+  public void testBlur() throws Exception {
+    BufferedImage blurred = run(createImage(10, 10), new BlurTask(2));
+
+    // A uniform area stays the same, the corner is mixed with its neighbors
+    Assert.assertEquals(BLUE, blurred.getRGB(5, 5));
+    Assert.assertNotEquals(RED, blurred.getRGB(0, 0));
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    // Large enough to be split into bands
+    BufferedImage image = run(createImage(1024, 600), new FlopTask(), new FlipTask(),
+        new BlurTask(1));
+
+    Assert.assertEquals(BLUE, image.getRGB(512, 300));
+    Assert.assertNotEquals(BLUE, image.getRGB(1023, 599));
+    Assert.assertNotEquals(BLUE, image.getRGB(0, 599));
+  }
+
+  @Test
+  public void testParallelOnComputationScheduler() throws Exception {
+    // Every computation thread waits on an image with more bands than there are cores
+    int cores = Runtime.getRuntime().availableProcessors();
+    final byte[] input = createImage(1024, Math.max(600, 64 * cores * 2));
+    ArrayList<Completable> runs = new ArrayList<>();
+    for (int i = 0; i < cores * 2; i++) {
+      runs.add(Completable.fromAction(new Action() {
+        @Override
+        public void run() throws Exception {
+          Assert.assertEquals(GREEN, TestLocalImageEngine.run(input, new FlopTask()).getRGB(0, 0));
+        }
+      }).subscribeOn(Schedulers.computation()));
+    }
+
+    Assert.assertTrue(Completable.merge(runs).blockingAwait(60, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testOutput() throws Exception {
+    TransformTask output = new FileTypeTask.Builder().format("jpg").quality(90).build();
+    ResponseBody body = LocalImageEngine.execute(Collections.singletonList(output),
+        new ByteArrayInputStream(createImage(4, 4)));
+
+    Assert.assertEquals("image/jpeg", body.contentType().toString());
+    Assert.assertEquals(4, ImageIO.read(body.byteStream()).getWidth());
+
+    ResponseBody same = LocalImageEngine.execute(Collections.<TransformTask>emptyList(),
+        new ByteArrayInputStream(createImage(4, 4)));
+    Assert.assertEquals("image/png", same.contentType().toString());
+  }
+
+  @Test
+  public void testSupports() {
+    Assert.assertTrue(LocalImageEngine.supports(Arrays.<TransformTask>asList(
+        new ResizeTask.Builder().width(10).fit("crop").build(),
+        new RotateTask.Builder().deg(30).background("ff0000").build())));
+
+    Assert.assertFalse(LocalImageEngine.supports(Collections.<TransformTask>singletonList(
+        new SharpenTask())));
+    Assert.assertFalse(LocalImageEngine.supports(Collections.<TransformTask>singletonList(
+        new RotateTask.Builder().deg("exif").build())));
+    Assert.assertFalse(LocalImageEngine.supports(Collections.<TransformTask>singletonList(
+        new ResizeTask.Builder().width(10).align("top").build())));
+    Assert.assertFalse(LocalImageEngine.supports(Collections.<TransformTask>singletonList(
+        new FileTypeTask.Builder().format("jpg").page(2).build())));
+  }
+
+  @Test
+  public void testExecuteLocally() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    ImageTransform transform = createTransform(mockFsService).addTask(new FlopTask());
+
+    ResponseBody body = transform.executeLocally(new ByteArrayInputStream(createImage(4, 3)));
+    Assert.assertEquals(RED, ImageIO.read(body.byteStream()).getRGB(3, 0));
+    Mockito.verifyZeroInteractions(mockFsService);
+  }
+
+  @Test
+  public void testExecuteLocallyFallback() throws Exception {
+    MediaType mediaType = MediaType.parse("text/plain");
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doReturn(Calls.response(ResponseBody.create(mediaType, "remote")))
+        .when(mockFsService)
+        .transform(Mockito.anyString(), Mockito.anyString());
+
+    ImageTransform transform = createTransform(mockFsService).addTask(new SharpenTask());
+    ResponseBody body = transform.executeLocally(new ByteArrayInputStream(createImage(4, 3)));
+    Assert.assertEquals("remote", body.string());
+
+    // Input that isn't an image falls back too
+    transform = createTransform(mockFsService).addTask(new FlopTask());
+    body = transform.executeLocally(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+    Assert.assertEquals("remote", body.string());
+  }
+}
@@ -0,0 +1,102 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.FilestackClient;
+import com.filestack.Policy;
+import com.filestack.Security;
+import com.filestack.errors.InvalidArgumentException;
+import com.filestack.responses.StoreResponse;
+import com.filestack.transforms.tasks.CompressTask;
+import com.filestack.util.FsCdnService;
+import com.filestack.util.FsService;
+import com.google.gson.Gson;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import retrofit2.mock.Calls;
+
+public class TestResponsiveSet {
+  private static final int[] WIDTHS = {320, 640, 1280};
+  private static final Policy POLICY = new Policy.Builder().giveFullAccess().build();
+  private static final Security SECURITY = Security.createNew(POLICY, "appSecret");
+
+  private static void assertMatchesVariants(ResponsiveSet set) {
+    String[] urls = set.urls();
+    Assert.assertEquals(WIDTHS.length, urls.length);
+    for (int i = 0; i < urls.length; i++) {
+      Assert.assertEquals(set.variant(i).url(), urls[i]);
+    }
+  }
+
+  @Test
+  public void testUrlsHandle() {
+    FileLink fileLink = new FileLink("apiKey", "handle");
+    ResponsiveSet set = new ResponsiveSet(fileLink, WIDTHS);
+
+    Assert.assertEquals(FsCdnService.URL + "resize=width:640/handle", set.urls()[1]);
+    assertMatchesVariants(set);
+  }
+
+  @Test
+  public void testUrlsSecurity() {
+    FileLink fileLink = new FileLink("apiKey", "handle", SECURITY);
+    ImageTransform transform = fileLink.imageTransform().addTask(new CompressTask());
+
+    assertMatchesVariants(new ResponsiveSet(transform, WIDTHS));
+  }
+
+  @Test
+  public void testUrlsExternal() {
+    FilestackClient client = new FilestackClient("apiKey", SECURITY);
+    String source = "https://example.com/some path/image.jpg?size=large";
+
+    assertMatchesVariants(new ResponsiveSet(client.imageTransform(source), WIDTHS));
+    assertMatchesVariants(new ResponsiveSet(client.imageTransform(".."), WIDTHS));
+  }
+
+  @Test
+  public void testSrcset() {
+    FileLink fileLink = new FileLink("apiKey", "handle");
+    String srcset = new ResponsiveSet(fileLink, 320, 640).srcset();
+
+    String correct = FsCdnService.URL + "resize=width:320/handle 320w, "
+        + FsCdnService.URL + "resize=width:640/handle 640w";
+    Assert.assertEquals(correct, srcset);
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testNoWidths() {
+    new ResponsiveSet(new FileLink("apiKey", "handle"));
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidWidth() {
+    new ResponsiveSet(new FileLink("apiKey", "handle"), 100, 0);
+  }
+
+  @Test
+  public void testStoreAsync() {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(mockFsService)
+        .build();
+
+    Gson gson = new Gson();
+    for (int width : WIDTHS) {
+      String json = "{'url': 'https://cdn.filestackcontent.com/handle" + width + "'}";
+      Mockito.doReturn(Calls.response(gson.fromJson(json, StoreResponse.class)))
+          .when(mockFsService)
+          .transformStore("resize=width:" + width + "/store", "handle");
+    }
+
+    List<FileLink> fileLinks = new ResponsiveSet(fileLink, WIDTHS).storeAsync().blockingGet();
+
+    Assert.assertEquals(WIDTHS.length, fileLinks.size());
+    for (int i = 0; i < WIDTHS.length; i++) {
+      Assert.assertEquals("handle" + WIDTHS[i], fileLinks.get(i).getHandle());
+    }
+  }
+}
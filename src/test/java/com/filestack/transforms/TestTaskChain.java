@@ -0,0 +1,90 @@
+package com.filestack.transforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTaskChain {
+
+  private static TransformTask createTask(String name, int value) {
+    TransformTask task = new TransformTask(name);
+    task.addOption("value", value);
+    return task;
+  }
+
+  @Test
+  public void testAppend() {
+    TransformTask first = createTask("first", 1);
+    TransformTask second = createTask("second", 2);
+
+    TaskChain base = TaskChain.EMPTY.append(first);
+    TaskChain chain = base.append(second);
+
+    Assert.assertEquals(0, TaskChain.EMPTY.size());
+    Assert.assertEquals(Arrays.asList(first), base);
+    Assert.assertEquals(Arrays.asList(first, second), chain);
+    Assert.assertEquals(Arrays.asList(first, second), TaskChain.of(Arrays.asList(first, second)));
+  }
+
+  @Test
+  public void testTasksString() {
+    TaskChain base = TaskChain.EMPTY.append(createTask("first", 1));
+    TaskChain chain = base.append(createTask("second", 2));
+
+    Assert.assertEquals("", TaskChain.EMPTY.getTasksString());
+    Assert.assertEquals("first=value:1", base.getTasksString());
+    Assert.assertEquals("first=value:1/second=value:2", chain.getTasksString());
+    // Prefix string is built once and shared
+    Assert.assertSame(base.getTasksString(), base.getTasksString());
+  }
+
+  @Test
+  public void testEncodedString() {
+    TransformTask task = new TransformTask("watermark");
+    task.addOption("file", "a b");
+    TaskChain chain = TaskChain.EMPTY.append(task).append(new TransformTask("flip"));
+
+    Assert.assertEquals("", TaskChain.EMPTY.getEncodedString());
+    Assert.assertEquals("watermark=file:a%20b/flip", chain.getEncodedString());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiable() {
+    TaskChain.EMPTY.add(new TransformTask("flip"));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetOutOfBounds() {
+    TaskChain.EMPTY.append(new TransformTask("flip")).get(1);
+  }
+
+  @Test
+  public void testConcurrentDerive() throws Exception {
+    final TaskChain base = TaskChain.EMPTY.append(createTask("base", 0));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        final int value = i;
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return base.append(createTask("task", value)).getTasksString();
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Assert.assertEquals("base=value:0/task=value:" + i, futures.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(1, base.size());
+  }
+}
@@ -36,7 +36,7 @@ public class TestTransform {
     FileLink fileLink = new FileLink("apiKey", "handle");
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(TASK);
+    transform.tasks = transform.tasks.append(TASK);
 
     String correctUrl = FsCdnService.URL + TASK_STRING + "/" + "handle";
     Assert.assertEquals(correctUrl, transform.url());
@@ -48,7 +48,7 @@ public class TestTransform {
 
     String sourceUrl = "https://example.com/image.jpg";
     Transform transform = new Transform(client, sourceUrl);
-    transform.tasks.add(TASK);
+    transform.tasks = transform.tasks.append(TASK);
 
     String correctUrl = FsCdnService.URL + "apiKey/" + TASK_STRING + "/" + sourceUrl;
     Assert.assertEquals(correctUrl, transform.url());
@@ -59,7 +59,7 @@ public class TestTransform {
     FileLink fileLink = new FileLink("apikey", "handle", SECURITY);
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(TASK);
+    transform.tasks = transform.tasks.append(TASK);
 
     String correctUrl = FsCdnService.URL + "security=policy:" + SECURITY.getPolicy() + ","
         + "signature:" + SECURITY.getSignature() + "/" + TASK_STRING + "/handle";
@@ -71,8 +71,8 @@ public class TestTransform {
     FileLink fileLink = new FileLink("apikey", "handle");
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(TASK);
-    transform.tasks.add(TASK);
+    transform.tasks = transform.tasks.append(TASK);
+    transform.tasks = transform.tasks.append(TASK);
 
     String correctUrl = FsCdnService.URL + TASK_STRING + "/" + TASK_STRING + "/handle";
     Assert.assertEquals(correctUrl, transform.url());
@@ -83,7 +83,7 @@ public class TestTransform {
     FileLink fileLink = new FileLink("apikey", "handle");
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(new TransformTask("task"));
+    transform.tasks = transform.tasks.append(new TransformTask("task"));
 
     String correctUrl = FsCdnService.URL + "task/handle";
     Assert.assertEquals(correctUrl, transform.url());
@@ -106,7 +106,7 @@ public class TestTransform {
         .build();
 
     Transform transform = new Transform(client, "https://example.com/");
-    transform.tasks.add(new TransformTask("task"));
+    transform.tasks = transform.tasks.append(new TransformTask("task"));
 
     Assert.assertEquals("Test Response", transform.getContent().string());
   }
@@ -129,7 +129,7 @@ public class TestTransform {
         .build();
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(new TransformTask("task"));
+    transform.tasks = transform.tasks.append(new TransformTask("task"));
 
     Assert.assertEquals("Test Response", transform.getContent().string());
   }
@@ -156,7 +156,7 @@ public class TestTransform {
         .build();
 
     Transform transform = new Transform(fileLink);
-    transform.tasks.add(new TransformTask("task"));
+    transform.tasks = transform.tasks.append(new TransformTask("task"));
 
     JsonObject jsonObject = transform.getContentJson();
 
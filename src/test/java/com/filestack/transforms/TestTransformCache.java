@@ -0,0 +1,208 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.transforms.tasks.CacheOption;
+import com.filestack.transforms.tasks.NoCacheOption;
+import com.filestack.transforms.tasks.ResizeTask;
+import com.filestack.util.FsService;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import retrofit2.mock.Calls;
+
+public class TestTransformCache {
+
+  private static FsService createMockService(final String content) {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            MediaType mediaType = MediaType.parse("text/plain");
+            return Calls.response(ResponseBody.create(mediaType, content));
+          }
+        })
+        .when(mockFsService)
+        .transform(Mockito.anyString(), Mockito.anyString());
+    return mockFsService;
+  }
+
+  private static ImageTransform createTransform(FsService fsService, TransformCache cache) {
+    FileLink fileLink = new FileLink.Builder()
+        .apiKey("apiKey")
+        .handle("handle")
+        .service(fsService)
+        .build();
+    return fileLink.imageTransform().resultCache(cache);
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    FsService mockFsService = createMockService("Test content");
+    TransformCache cache = new TransformCache(1024, 1, TimeUnit.HOURS);
+
+    Assert.assertEquals("Test content",
+        createTransform(mockFsService, cache).getContent().string());
+    Assert.assertEquals("Test content",
+        createTransform(mockFsService, cache).getContent().string());
+
+    Mockito.verify(mockFsService, Mockito.times(1)).transform(Mockito.anyString(),
+        Mockito.anyString());
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(12, cache.getBytes());
+  }
+
+  @Test
+  public void testCanonicalKey() {
+    TransformTask first = new TransformTask("resize");
+    first.addOption("width", 100);
+    first.addOption("height", 200);
+    TransformTask second = new TransformTask("resize");
+    second.addOption("height", 200);
+    second.addOption("width", 100);
+
+    Assert.assertEquals(
+        TransformCache.key(null, null, Collections.singletonList(first), "handle"),
+        TransformCache.key(null, null, Collections.singletonList(second), "handle"));
+  }
+
+  @Test
+  public void testNoCacheOption() throws Exception {
+    FsService mockFsService = createMockService("Test content");
+    TransformCache cache = new TransformCache(1024, 1, TimeUnit.HOURS);
+
+    createTransform(mockFsService, cache).addTask(new NoCacheOption()).getContent();
+    createTransform(mockFsService, cache).addTask(new NoCacheOption()).getContent();
+
+    Mockito.verify(mockFsService, Mockito.times(2)).transform(Mockito.anyString(),
+        Mockito.anyString());
+    Assert.assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void testCacheOptionExpiry() throws Exception {
+    FsService mockFsService = createMockService("Test content");
+    TransformCache cache = new TransformCache(1024, 1, TimeUnit.HOURS);
+
+    createTransform(mockFsService, cache).addTask(new CacheOption(0)).getContent();
+    createTransform(mockFsService, cache).addTask(new CacheOption(0)).getContent();
+
+    Mockito.verify(mockFsService, Mockito.times(2)).transform(Mockito.anyString(),
+        Mockito.anyString());
+  }
+
+  @Test
+  public void testSizeEviction() throws Exception {
+    FsService mockFsService = createMockService("Test content");
+    TransformCache cache = new TransformCache(50, 1, TimeUnit.HOURS);
+
+    for (int i = 1; i <= 10; i++) {
+      createTransform(mockFsService, cache)
+          .addTask(new ResizeTask.Builder().width(i).build())
+          .getContent();
+    }
+
+    Assert.assertTrue(cache.getBytes() <= 50);
+  }
+
+  @Test
+  public void testTooLarge() throws Exception {
+    FsService mockFsService = createMockService("Test content");
+    TransformCache cache = new TransformCache(16, 1, TimeUnit.HOURS);
+
+    Assert.assertEquals("Test content",
+        createTransform(mockFsService, cache).getContent().string());
+    Assert.assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            started.countDown();
+            release.await();
+            MediaType mediaType = MediaType.parse("text/plain");
+            return Calls.response(ResponseBody.create(mediaType, "Test content"));
+          }
+        })
+        .when(mockFsService)
+        .transform(Mockito.anyString(), Mockito.anyString());
+
+    final TransformCache cache = new TransformCache(1024, 1, TimeUnit.HOURS);
+    final String[] results = new String[2];
+
+    Thread first = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          results[0] = createTransform(mockFsService, cache).getContent().string();
+        } catch (Exception e) {
+          results[0] = e.toString();
+        }
+      }
+    });
+    Thread second = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          results[1] = createTransform(mockFsService, cache).getContent().string();
+        } catch (Exception e) {
+          results[1] = e.toString();
+        }
+      }
+    });
+
+    first.start();
+    started.await();
+    second.start();
+    Thread.sleep(100);
+    release.countDown();
+    first.join();
+    second.join();
+
+    Assert.assertEquals("Test content", results[0]);
+    Assert.assertEquals("Test content", results[1]);
+    Mockito.verify(mockFsService, Mockito.times(1)).transform(Mockito.anyString(),
+        Mockito.anyString());
+  }
+
+  @Test(timeout = 5000)
+  public void testErrorReleasesClaim() throws Exception {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doThrow(new AssertionError("failed"))
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            MediaType mediaType = MediaType.parse("text/plain");
+            return Calls.response(ResponseBody.create(mediaType, "Test content"));
+          }
+        })
+        .when(mockFsService)
+        .transform(Mockito.anyString(), Mockito.anyString());
+    TransformCache cache = new TransformCache(1024, 1, TimeUnit.HOURS);
+
+    try {
+      createTransform(mockFsService, cache).getContent();
+      Assert.fail("Expected the request to fail");
+    } catch (AssertionError e) {
+      Assert.assertEquals("failed", e.getMessage());
+    }
+    // The failed request doesn't leave the next one waiting for it
+    Assert.assertEquals("Test content",
+        createTransform(mockFsService, cache).getContent().string());
+  }
+}
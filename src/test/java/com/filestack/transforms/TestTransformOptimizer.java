@@ -0,0 +1,252 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.transforms.tasks.CompressTask;
+import com.filestack.transforms.tasks.FlipTask;
+import com.filestack.transforms.tasks.FlopTask;
+import com.filestack.transforms.tasks.RotateTask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTransformOptimizer {
+  private static final int ITERATIONS = 2000;
+
+  /**
+   * Tiny model of the image transformations on a grid of pixel values. Each task does what its
+   * name says for real, so two chains are equivalent if they produce the same grid.
+   */
+  private static int[][] apply(List<TransformTask> tasks, int[][] image) {
+    for (TransformTask task : tasks) {
+      switch (task.name) {
+        case "flip":
+          image = flip(image);
+          break;
+        case "flop":
+          image = flop(image);
+          break;
+        case "rotate":
+          int deg = Integer.parseInt(option(task, "deg"));
+          for (int i = 0; i < deg / 90; i++) {
+            image = rotate(image);
+          }
+          break;
+        case "resize":
+          image = resize(image, Integer.parseInt(option(task, "width")),
+              Integer.parseInt(option(task, "height")));
+          break;
+        case "compress":
+          image = map(image, 0, ~3);
+          break;
+        case "monochrome":
+          image = map(image, 1, 0);
+          break;
+        case "sepia":
+          image = map(image, 2, 0);
+          break;
+        default:
+          throw new AssertionError("Unknown task " + task.name);
+      }
+    }
+    return image;
+  }
+
+  private static String option(TransformTask task, String key) {
+    for (TransformTask.Option option : task.options) {
+      if (option.key.equals(key)) {
+        return option.value;
+      }
+    }
+    throw new AssertionError("Missing option " + key);
+  }
+
+  private static int[][] flip(int[][] image) {
+    int[][] result = new int[image.length][];
+    for (int y = 0; y < image.length; y++) {
+      result[y] = image[image.length - 1 - y].clone();
+    }
+    return result;
+  }
+
+  private static int[][] flop(int[][] image) {
+    int[][] result = new int[image.length][image[0].length];
+    for (int y = 0; y < image.length; y++) {
+      for (int x = 0; x < image[0].length; x++) {
+        result[y][x] = image[y][image[0].length - 1 - x];
+      }
+    }
+    return result;
+  }
+
+  private static int[][] rotate(int[][] image) {
+    int[][] result = new int[image[0].length][image.length];
+    for (int y = 0; y < image.length; y++) {
+      for (int x = 0; x < image[0].length; x++) {
+        result[x][image.length - 1 - y] = image[y][x];
+      }
+    }
+    return result;
+  }
+
+  // Nearest neighbor, so resizing to the current size changes nothing
+  private static int[][] resize(int[][] image, int width, int height) {
+    int[][] result = new int[height][width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        result[y][x] = image[y * image.length / height][x * image[0].length / width];
+      }
+    }
+    return result;
+  }
+
+  // Quantize and threshold are idempotent, the sepia-like shift isn't
+  private static int[][] map(int[][] image, int mode, int mask) {
+    int[][] result = new int[image.length][image[0].length];
+    for (int y = 0; y < image.length; y++) {
+      for (int x = 0; x < image[0].length; x++) {
+        int value = image[y][x];
+        if (mode == 0) {
+          result[y][x] = value & mask;
+        } else if (mode == 1) {
+          result[y][x] = value > 127 ? 255 : 0;
+        } else {
+          result[y][x] = (value * 3 / 4 + 20) & 0xff;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static int[][] randomImage(Random random) {
+    int[][] image = new int[2 + random.nextInt(3)][2 + random.nextInt(3)];
+    for (int[] row : image) {
+      for (int x = 0; x < row.length; x++) {
+        row[x] = random.nextInt(256);
+      }
+    }
+    return image;
+  }
+
+  private static TransformTask randomTask(Random random) {
+    switch (random.nextInt(9)) {
+      case 0:
+        return new FlipTask();
+      case 1:
+        return new FlopTask();
+      case 2:
+        return new RotateTask.Builder().deg(0).build();
+      case 3:
+        return new RotateTask.Builder().background("white").deg(random.nextInt(2) * 90).build();
+      case 4:
+        // Small set of sizes so identical consecutive resizes come up often
+        TransformTask resize = new ImageTransformTask("resize");
+        String[] keys = {"width", "height"};
+        if (random.nextBoolean()) {
+          Collections.reverse(Arrays.asList(keys));
+        }
+        for (String key : keys) {
+          resize.addOption(key, 2 + random.nextInt(2));
+        }
+        return resize;
+      case 5:
+        return new CompressTask();
+      case 6:
+        return new ImageTransformTask("monochrome");
+      case 7:
+        return new ImageTransformTask("sepia");
+      default:
+        // Pairs make cancellation and collapsing more likely
+        return random.nextBoolean() ? new FlipTask() : new CompressTask();
+    }
+  }
+
+  private static ArrayList<TransformTask> randomChain(Random random) {
+    ArrayList<TransformTask> tasks = new ArrayList<>();
+    int length = random.nextInt(10);
+    for (int i = 0; i < length; i++) {
+      tasks.add(randomTask(random));
+    }
+    return tasks;
+  }
+
+  private static String toString(List<TransformTask> tasks) {
+    StringBuilder builder = new StringBuilder();
+    for (TransformTask task : tasks) {
+      builder.append(task.toString()).append('/');
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void testSameResult() {
+    Random random = new Random(42);
+    for (int i = 0; i < ITERATIONS; i++) {
+      ArrayList<TransformTask> tasks = randomChain(random);
+      ArrayList<TransformTask> optimized = TransformOptimizer.optimize(tasks);
+      int[][] image = randomImage(random);
+      String message = toString(tasks) + " -> " + toString(optimized);
+
+      Assert.assertTrue(message, optimized.size() <= tasks.size());
+      Assert.assertTrue(message,
+          Arrays.deepEquals(apply(tasks, image), apply(optimized, image)));
+    }
+  }
+
+  @Test
+  public void testIdempotent() {
+    Random random = new Random(7);
+    for (int i = 0; i < ITERATIONS; i++) {
+      ArrayList<TransformTask> optimized = TransformOptimizer.optimize(randomChain(random));
+      Assert.assertEquals(toString(optimized),
+          toString(TransformOptimizer.optimize(optimized)));
+    }
+  }
+
+  @Test
+  public void testOptionOrder() {
+    TransformTask first = new ImageTransformTask("resize");
+    first.addOption("width", 100);
+    first.addOption("fit", "crop");
+    TransformTask second = new ImageTransformTask("resize");
+    second.addOption("fit", "crop");
+    second.addOption("width", 100);
+
+    List<TransformTask> optimized = TransformOptimizer.optimize(Arrays.asList(first, second));
+    Assert.assertEquals(1, optimized.size());
+    Assert.assertEquals("resize=fit:crop,width:100", optimized.get(0).toString());
+    // Input isn't modified
+    Assert.assertEquals("resize=width:100,fit:crop", first.toString());
+  }
+
+  @Test
+  public void testRules() {
+    List<TransformTask> tasks = Arrays.<TransformTask>asList(new FlipTask(), new FlopTask(),
+        new FlopTask(), new FlipTask(), new RotateTask.Builder().deg(0).build(),
+        new CompressTask(), new CompressTask());
+    Assert.assertEquals("compress/", toString(TransformOptimizer.optimize(tasks)));
+
+    // Exif rotation isn't a no-op even with 0 degrees
+    TransformTask exif = new RotateTask.Builder().deg(0).exif(true).build();
+    Assert.assertEquals(1, TransformOptimizer.optimize(Collections.singletonList(exif)).size());
+
+    // Not idempotent, so repeats are kept
+    List<TransformTask> sepia = Arrays.asList(new ImageTransformTask("sepia"),
+        new ImageTransformTask("sepia"));
+    Assert.assertEquals(2, TransformOptimizer.optimize(sepia).size());
+  }
+
+  @Test
+  public void testImageTransform() {
+    FileLink fileLink = new FileLink.Builder().apiKey("apiKey").handle("handle").build();
+    ImageTransform transform = new ImageTransform(fileLink)
+        .addTask(new FlipTask())
+        .addTask(new FlipTask())
+        .addTask(new CompressTask());
+
+    Assert.assertEquals("compress", transform.optimize().getTasksString());
+  }
+}
@@ -0,0 +1,94 @@
+package com.filestack.transforms;
+
+import com.filestack.FileLink;
+import com.filestack.FilestackClient;
+import com.filestack.Policy;
+import com.filestack.Security;
+import com.filestack.errors.InvalidArgumentException;
+import com.filestack.transforms.tasks.CompressTask;
+import com.filestack.transforms.tasks.FileTypeTask;
+import com.filestack.transforms.tasks.ResizeTask;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTransformTemplate {
+  private static final Policy POLICY = new Policy.Builder().giveFullAccess().build();
+  private static final Security SECURITY = Security.createNew(POLICY, "appSecret");
+
+  private static ImageTransform createTransform(FileLink fileLink, int width, String format) {
+    return fileLink.imageTransform()
+        .addTask(new ResizeTask.Builder().width(width).fit("clip").build())
+        .addTask(new CompressTask())
+        .addTask(new FileTypeTask.Builder().format(format).build());
+  }
+
+  private static TransformTemplate createTemplate() {
+    FileLink placeholder = new FileLink("apiKey", "placeholder", SECURITY);
+    return new TransformTemplate.Builder(createTransform(placeholder, 0, "jpg"))
+        .slot("output", "format", String.class)
+        .slot("resize", "width", int.class)
+        .build();
+  }
+
+  @Test
+  public void testUrl() {
+    TransformTemplate template = createTemplate();
+
+    FileLink fileLink = new FileLink("apiKey", "handle", SECURITY);
+    Assert.assertEquals(createTransform(fileLink, 300, "png").url(),
+        template.url(fileLink, "png", 300));
+
+    FileLink noSecurity = new FileLink("apiKey", "handle");
+    Assert.assertEquals(createTransform(noSecurity, 1200, "webp").url(),
+        template.url(noSecurity, "webp", 1200));
+  }
+
+  @Test
+  public void testUrlExternal() {
+    TransformTemplate template = createTemplate();
+    FilestackClient client = new FilestackClient("apiKey", SECURITY);
+    String source = "https://example.com/image.jpg";
+
+    ImageTransform transform = client.imageTransform(source)
+        .addTask(new ResizeTask.Builder().width(300).fit("clip").build())
+        .addTask(new CompressTask())
+        .addTask(new FileTypeTask.Builder().format("png").build());
+
+    Assert.assertEquals(transform.url(), template.url(client, source, "png", 300));
+  }
+
+  @Test
+  public void testImageTransform() {
+    TransformTemplate template = createTemplate();
+    FileLink fileLink = new FileLink("apiKey", "handle", SECURITY);
+
+    ImageTransform transform = template.imageTransform(fileLink, "png", 300);
+    Assert.assertEquals(createTransform(fileLink, 300, "png").getTasksString(),
+        transform.getTasksString());
+  }
+
+  @Test
+  public void testTasksString() {
+    TransformTemplate template = createTemplate();
+    Assert.assertEquals("resize=width:640,fit:clip/compress/output=format:gif",
+        template.tasksString("gif", 640));
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testWrongType() {
+    createTemplate().tasksString(300, "png");
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testWrongCount() {
+    createTemplate().tasksString("png");
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testMissingOption() {
+    FileLink fileLink = new FileLink("apiKey", "handle");
+    new TransformTemplate.Builder(createTransform(fileLink, 0, "jpg"))
+        .slot("resize", "height")
+        .build();
+  }
+}
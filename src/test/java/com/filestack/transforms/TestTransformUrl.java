@@ -0,0 +1,103 @@
+package com.filestack.transforms;
+
+import com.filestack.Policy;
+import com.filestack.Security;
+import com.filestack.util.FsCdnService;
+import com.filestack.util.Networking;
+import java.util.ArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTransformUrl {
+  private static final String[] SOURCES = {
+      "handle",
+      "https://example.com/image.jpg",
+      "https://example.com/some path/image.jpg?size=large#top",
+      "https://example.com/%E2%9C%93/caf\u00e9 \u2713 \ud83d\ude00.jpg",
+  };
+
+  /** Builds the URL the way {@link Transform#url()} used to, through a Retrofit call. */
+  private static String retrofitUrl(String apiKey, String tasks, String source) {
+    FsCdnService service = Networking.getFsCdnService();
+    if (apiKey != null) {
+      return service.transformExt(apiKey, tasks, source).request().url().toString()
+          .replace("%2F", "/");
+    } else {
+      return service.transform(tasks, source).request().url().toString().replace("%2F", "/");
+    }
+  }
+
+  private static ArrayList<TransformTask> createTasks() {
+    ArrayList<TransformTask> tasks = new ArrayList<>();
+
+    TransformTask resize = new TransformTask("resize");
+    resize.addOption("width", 100);
+    resize.addOption("align", new String[] {"top", "left"});
+    tasks.add(resize);
+
+    TransformTask watermark = new TransformTask("watermark");
+    watermark.addOption("file", "a{b}|c\"d\\e^f`g<h>");
+    tasks.add(watermark);
+
+    tasks.add(new TransformTask("flip"));
+    return tasks;
+  }
+
+  private static String tasksString(ArrayList<TransformTask> tasks) {
+    StringBuilder builder = new StringBuilder();
+    for (TransformTask task : tasks) {
+      if (builder.length() != 0) {
+        builder.append('/');
+      }
+      builder.append(task.toString());
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void testMatchesRetrofit() {
+    ArrayList<TransformTask> tasks = createTasks();
+    String tasksString = tasksString(tasks);
+
+    for (String source : SOURCES) {
+      Assert.assertEquals(retrofitUrl(null, tasksString, source),
+          TransformUrl.build(null, null, TaskChain.of(tasks), source));
+      Assert.assertEquals(retrofitUrl("apiKey", tasksString, source),
+          TransformUrl.build("apiKey", null, TaskChain.of(tasks), source));
+    }
+  }
+
+  @Test
+  public void testMatchesRetrofitNoTasks() {
+    TaskChain tasks = TaskChain.EMPTY;
+
+    for (String source : SOURCES) {
+      Assert.assertEquals(retrofitUrl(null, "", source),
+          TransformUrl.build(null, null, tasks, source));
+      Assert.assertEquals(retrofitUrl("apiKey", "", source),
+          TransformUrl.build("apiKey", null, tasks, source));
+    }
+  }
+
+  @Test
+  public void testMatchesRetrofitSecurity() {
+    Policy policy = new Policy.Builder().expiry(4653651600L).build();
+    Security security = Security.createNew(policy, "appSecret");
+    TaskChain tasks = TaskChain.of(createTasks());
+
+    for (String source : SOURCES) {
+      Assert.assertEquals(retrofitUrl(null, TransformUrl.tasksString(security, tasks), source),
+          TransformUrl.build(null, security, tasks, source));
+      Assert.assertEquals(
+          retrofitUrl("apiKey", TransformUrl.tasksString(security, TaskChain.EMPTY), source),
+          TransformUrl.build("apiKey", security, TaskChain.EMPTY, source));
+    }
+  }
+
+  @Test
+  public void testDotSegment() {
+    Assert.assertNull(TransformUrl.build(null, null,
+        TaskChain.EMPTY.append(new TransformTask("..")), "handle"));
+    Assert.assertNull(TransformUrl.build(null, null, TaskChain.EMPTY, "."));
+  }
+}
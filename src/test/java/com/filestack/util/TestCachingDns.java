@@ -0,0 +1,108 @@
+package com.filestack.util;
+
+import com.google.common.base.Ticker;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Dns;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCachingDns {
+
+  private static class FakeTicker extends Ticker {
+    long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  private static class CountingDns implements Dns {
+    int lookups;
+    boolean fail;
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+      lookups++;
+      if (fail) {
+        throw new UnknownHostException(hostname);
+      }
+      byte[] address = {10, 0, 0, (byte) lookups};
+      return Collections.singletonList(InetAddress.getByAddress(hostname, address));
+    }
+  }
+
+  @Test
+  public void testCachesUntilExpired() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    CountingDns delegate = new CountingDns();
+    CachingDns dns = new CachingDns(delegate, 60, TimeUnit.SECONDS, ticker);
+
+    List<InetAddress> first = dns.lookup("bucket.s3.amazonaws.com");
+    ticker.nanos = TimeUnit.SECONDS.toNanos(59);
+    Assert.assertSame(first, dns.lookup("bucket.s3.amazonaws.com"));
+    Assert.assertEquals(1, delegate.lookups);
+
+    dns.lookup("upload.filestackapi.com");
+    Assert.assertEquals(2, delegate.lookups);
+
+    ticker.nanos = TimeUnit.SECONDS.toNanos(60);
+    Assert.assertNotEquals(first, dns.lookup("bucket.s3.amazonaws.com"));
+    Assert.assertEquals(3, delegate.lookups);
+  }
+
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    CountingDns delegate = new CountingDns();
+    CachingDns dns = new CachingDns(delegate, 60, TimeUnit.SECONDS, new FakeTicker());
+
+    delegate.fail = true;
+    try {
+      dns.lookup("host");
+      Assert.fail("Lookup should fail");
+    } catch (UnknownHostException e) {
+      // Expected
+    }
+
+    delegate.fail = false;
+    Assert.assertNotNull(dns.lookup("host"));
+    Assert.assertEquals(2, delegate.lookups);
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    CountingDns delegate = new CountingDns();
+    CachingDns dns = new CachingDns(delegate, 60, TimeUnit.SECONDS, new FakeTicker());
+
+    dns.lookup("host");
+    dns.clear();
+    dns.lookup("host");
+    Assert.assertEquals(2, delegate.lookups);
+  }
+
+  @Test
+  public void testBounded() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    CountingDns delegate = new CountingDns();
+    CachingDns dns = new CachingDns(delegate, 60, TimeUnit.SECONDS, ticker);
+
+    for (int i = 0; i < 300; i++) {
+      dns.lookup("host" + i);
+    }
+    // Entries past the limit aren't kept while the others are fresh
+    dns.lookup("host299");
+    Assert.assertEquals(301, delegate.lookups);
+    dns.lookup("host0");
+    Assert.assertEquals(301, delegate.lookups);
+
+    // Once expired they're dropped to make room
+    ticker.nanos = TimeUnit.MINUTES.toNanos(2);
+    dns.lookup("host299");
+    dns.lookup("host299");
+    Assert.assertEquals(302, delegate.lookups);
+  }
+}
@@ -0,0 +1,31 @@
+package com.filestack.util;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCountingSource {
+
+  @Test
+  public void testCount() throws Exception {
+    Buffer data = new Buffer();
+    data.writeUtf8("Test content");
+
+    CountingSource countingSource = new CountingSource(data);
+    BufferedSource source = Okio.buffer(countingSource);
+
+    Assert.assertEquals(0, countingSource.getBytesRead());
+    Assert.assertEquals("Test content", source.readUtf8());
+    Assert.assertEquals(12, countingSource.getBytesRead());
+  }
+
+  @Test
+  public void testExhausted() throws Exception {
+    CountingSource countingSource = new CountingSource(new Buffer());
+
+    Assert.assertEquals(-1, countingSource.read(new Buffer(), 1024));
+    Assert.assertEquals(0, countingSource.getBytesRead());
+  }
+}
@@ -0,0 +1,63 @@
+package com.filestack.util;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests {@link FlightRecorderEvents}. JFR is used by reflection, like the class itself, since
+ * tests are compiled for Java 7 too.
+ */
+public class TestFlightRecorderEvents {
+
+  @Test
+  public void testNotRecording() {
+    Assert.assertNull(FlightRecorderEvents.begin(FlightRecorderEvents.Type.S3_PUT));
+    FlightRecorderEvents.commit(null, 1, 1024, 1);
+    FlightRecorderEvents.instant(FlightRecorderEvents.Type.RETRY, 1, 1024, 2);
+  }
+
+  @Test
+  public void testRecording() throws Exception {
+    Assume.assumeTrue(FlightRecorderEvents.isAvailable());
+
+    Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+    Object recording = recordingClass.newInstance();
+    recordingClass.getMethod("enable", String.class).invoke(recording, "com.filestack.S3Put");
+    recordingClass.getMethod("start").invoke(recording);
+    Path path = Files.createTempFile("filestack", ".jfr");
+    try {
+      Object event = FlightRecorderEvents.begin(FlightRecorderEvents.Type.S3_PUT);
+      Assert.assertNotNull(event);
+      FlightRecorderEvents.commit(event, 3, 1024, 2);
+
+      recordingClass.getMethod("stop").invoke(recording);
+      recordingClass.getMethod("dump", Path.class).invoke(recording, path);
+
+      Class<?> fileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+      List<?> events = (List<?>) fileClass.getMethod("readAllEvents", Path.class)
+          .invoke(null, path);
+      int found = 0;
+      for (Object recorded : events) {
+        Object type = recorded.getClass().getMethod("getEventType").invoke(recorded);
+        if (!"com.filestack.S3Put".equals(type.getClass().getMethod("getName").invoke(type))) {
+          continue;
+        }
+        Method getValue = recorded.getClass().getMethod("getValue", String.class);
+        Assert.assertEquals(3, getValue.invoke(recorded, "part"));
+        Assert.assertEquals(1024L, getValue.invoke(recorded, "size"));
+        Assert.assertEquals(2, getValue.invoke(recorded, "attempt"));
+        found++;
+      }
+      Assert.assertEquals(1, found);
+    } finally {
+      ((Closeable) recording).close();
+      Files.delete(path);
+    }
+  }
+}
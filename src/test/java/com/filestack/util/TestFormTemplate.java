@@ -0,0 +1,78 @@
+package com.filestack.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okhttp3.Headers;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FormTemplate} against the form Retrofit builds for a map of parts.
+ */
+public class TestFormTemplate {
+
+  private static MultipartBody.Part part(String name, RequestBody body) {
+    Headers headers = Headers.of(
+        "Content-Disposition", "form-data; name=\"" + name + "\"",
+        "Content-Transfer-Encoding", "binary");
+    return MultipartBody.Part.create(headers, body);
+  }
+
+  @Test
+  public void testSameAsPartMap() throws Exception {
+    Map<String, RequestBody> base = new LinkedHashMap<>();
+    base.put("apikey", Util.createStringPart("apiKey"));
+    base.put("uri", Util.createStringPart("/bucket/apikey/filename"));
+    base.put("upload_id", Util.createStringPart("id"));
+    FormTemplate template = new FormTemplate(base);
+
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("part", "1");
+    fields.put("md5", "1B2M2Y8AsgTpgAmY7PhCfg==");
+    RequestBody form = template.create(fields);
+
+    String contentType = form.contentType().toString();
+    Assert.assertTrue(contentType.startsWith("multipart/form-data; boundary="));
+    String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+    MultipartBody.Builder builder = new MultipartBody.Builder(boundary)
+        .setType(MultipartBody.FORM);
+    for (Map.Entry<String, RequestBody> entry : base.entrySet()) {
+      builder.addPart(part(entry.getKey(), entry.getValue()));
+    }
+    for (Map.Entry<String, String> entry : fields.entrySet()) {
+      builder.addPart(part(entry.getKey(), Util.createStringPart(entry.getValue())));
+    }
+    MultipartBody expected = builder.build();
+
+    Buffer expectedBytes = new Buffer();
+    expected.writeTo(expectedBytes);
+    Buffer actualBytes = new Buffer();
+    form.writeTo(actualBytes);
+
+    Assert.assertEquals(expected.contentLength(), form.contentLength());
+    Assert.assertEquals(expectedBytes.readUtf8(), actualBytes.readUtf8());
+  }
+
+  @Test
+  public void testReusable() throws Exception {
+    Map<String, RequestBody> base = new LinkedHashMap<>();
+    base.put("apikey", Util.createStringPart("apiKey"));
+    FormTemplate template = new FormTemplate(base);
+
+    Map<String, String> first = new LinkedHashMap<>();
+    first.put("part", "1");
+    Map<String, String> second = new LinkedHashMap<>();
+    second.put("part", "2");
+
+    String firstForm = Util.partToString(template.create(first));
+    String secondForm = Util.partToString(template.create(second));
+    Assert.assertTrue(firstForm.contains("apiKey"));
+    Assert.assertTrue(secondForm.contains("apiKey"));
+    Assert.assertTrue(firstForm.contains("\r\n1\r\n"));
+    Assert.assertTrue(secondForm.contains("\r\n2\r\n"));
+  }
+}
@@ -0,0 +1,285 @@
+package com.filestack.util;
+
+import com.filestack.FilestackMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests {@link HedgingInterceptor} with a mocked client whose calls answer when told to.
+ */
+public class TestHedgingInterceptor {
+  private static final Request GET = new Request.Builder()
+      .url("https://cdn.filestackcontent.com/handle")
+      .build();
+
+  /** Client whose calls are kept until a test answers them, or answered right away. */
+  private static class FakeClient {
+    final OkHttpClient client = Mockito.mock(OkHttpClient.class);
+    final List<Call> calls = new ArrayList<>();
+    final List<Callback> callbacks = new ArrayList<>();
+    int answerImmediately = -1;
+
+    FakeClient() {
+      Mockito.doAnswer(new Answer<Call>() {
+        @Override
+        public Call answer(InvocationOnMock invocation) throws Throwable {
+          final Request request = invocation.getArgument(0);
+          final Call call = Mockito.mock(Call.class);
+          Mockito.doReturn(request).when(call).request();
+          Mockito.doReturn(response(request)).when(call).execute();
+          Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+              Callback callback = invocation.getArgument(0);
+              synchronized (FakeClient.this) {
+                callbacks.add(callback);
+              }
+              if (calls.indexOf(call) == answerImmediately) {
+                callback.onResponse(call, response(request));
+              }
+              return null;
+            }
+          }).when(call).enqueue(Mockito.any(Callback.class));
+          synchronized (FakeClient.this) {
+            calls.add(call);
+          }
+          return call;
+        }
+      }).when(client).newCall(Mockito.any(Request.class));
+    }
+  }
+
+  private static Response response(Request request) {
+    return new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(null, "content"))
+        .build();
+  }
+
+  private static Interceptor.Chain chain(Request request) {
+    return chain(request, Mockito.mock(Call.class));
+  }
+
+  private static Interceptor.Chain chain(Request request, Call call) {
+    Interceptor.Chain chain = Mockito.mock(Interceptor.Chain.class);
+    Mockito.doReturn(request).when(chain).request();
+    Mockito.doReturn(call).when(chain).call();
+    return chain;
+  }
+
+  private static HedgePolicy policy(double maxHedgeRate) {
+    return new HedgePolicy.Builder()
+        .minDelay(1, TimeUnit.MILLISECONDS)
+        .maxDelay(20, TimeUnit.MILLISECONDS)
+        .maxHedgeRate(maxHedgeRate)
+        .build();
+  }
+
+  @Test
+  public void testFastReadNotHedged() throws Exception {
+    FakeClient fake = new FakeClient();
+    fake.answerImmediately = 0;
+    FilestackMetrics metrics = Mockito.mock(FilestackMetrics.class);
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(1), metrics);
+
+    Response response = interceptor.intercept(chain(GET));
+
+    Assert.assertEquals(200, response.code());
+    Assert.assertEquals(1, fake.calls.size());
+    Mockito.verify(metrics).hedgedRead(false, false);
+  }
+
+  @Test
+  public void testSlowReadHedged() throws Exception {
+    FakeClient fake = new FakeClient();
+    fake.answerImmediately = 1;
+    FilestackMetrics metrics = Mockito.mock(FilestackMetrics.class);
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(1), metrics);
+
+    Response response = interceptor.intercept(chain(GET));
+
+    Assert.assertEquals(200, response.code());
+    Assert.assertEquals(2, fake.calls.size());
+    Mockito.verify(fake.calls.get(0)).cancel();
+    Mockito.verify(metrics).hedgedRead(true, true);
+
+    // The first call answering late is closed and ignored
+    fake.callbacks.get(0).onResponse(fake.calls.get(0), response(GET));
+  }
+
+  @Test
+  public void testBudget() throws Exception {
+    final FakeClient fake = new FakeClient();
+    FilestackMetrics metrics = Mockito.mock(FilestackMetrics.class);
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(0), metrics);
+
+    Thread answer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          synchronized (fake) {
+            fake.callbacks.get(0).onResponse(fake.calls.get(0), response(GET));
+          }
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    answer.start();
+    Response response = interceptor.intercept(chain(GET));
+    answer.join();
+
+    Assert.assertEquals(200, response.code());
+    Assert.assertEquals(1, fake.calls.size());
+    Mockito.verify(metrics).hedgedRead(false, false);
+  }
+
+  @Test
+  public void testTokens() {
+    FakeClient fake = new FakeClient();
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(0.25),
+        Mockito.mock(FilestackMetrics.class));
+
+    for (int i = 0; i < 3; i++) {
+      interceptor.addTokens();
+    }
+    Assert.assertFalse(interceptor.takeToken());
+    interceptor.addTokens();
+    Assert.assertTrue(interceptor.takeToken());
+    Assert.assertFalse(interceptor.takeToken());
+
+    // Quiet periods only save up a limited number of hedges
+    for (int i = 0; i < 1000; i++) {
+      interceptor.addTokens();
+    }
+    int taken = 0;
+    while (interceptor.takeToken()) {
+      taken++;
+    }
+    Assert.assertEquals(10, taken);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    final FakeClient fake = new FakeClient();
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(0),
+        Mockito.mock(FilestackMetrics.class));
+
+    Thread fail = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+          synchronized (fake) {
+            fake.callbacks.get(0).onFailure(fake.calls.get(0), new IOException("failed"));
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    fail.start();
+    try {
+      interceptor.intercept(chain(GET));
+      Assert.fail("Expected an IOException");
+    } catch (IOException e) {
+      Assert.assertEquals("failed", e.getMessage());
+    } finally {
+      fail.join();
+    }
+  }
+
+  @Test
+  public void testCancelled() throws Exception {
+    FakeClient fake = new FakeClient();
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(0),
+        Mockito.mock(FilestackMetrics.class));
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    Call outer = Mockito.mock(Call.class);
+    Mockito.doAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        return cancelled.get();
+      }
+    }).when(outer).isCanceled();
+
+    Thread cancel = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+          cancelled.set(true);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    cancel.start();
+    try {
+      interceptor.intercept(chain(GET, outer));
+      Assert.fail("Expected an IOException");
+    } catch (IOException e) {
+      Assert.assertEquals("Canceled", e.getMessage());
+    } finally {
+      cancel.join();
+    }
+    // The copy that was never answered is cancelled too
+    Mockito.verify(fake.calls.get(0)).cancel();
+  }
+
+  @Test
+  public void testDelayAdapts() {
+    HedgePolicy policy = new HedgePolicy.Builder()
+        .percentile(90)
+        .minDelay(5, TimeUnit.MILLISECONDS)
+        .maxDelay(1, TimeUnit.SECONDS)
+        .build();
+    HedgingInterceptor interceptor = new HedgingInterceptor(new FakeClient().client, policy,
+        Mockito.mock(FilestackMetrics.class));
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), interceptor.getDelay());
+
+    for (int i = 1; i <= 32; i++) {
+      interceptor.recordSample(TimeUnit.MILLISECONDS.toNanos(10 * i));
+    }
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(290), interceptor.getDelay());
+
+    for (int i = 0; i < 256; i++) {
+      interceptor.recordSample(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), interceptor.getDelay());
+  }
+
+  @Test
+  public void testOtherMethodsRunOnce() throws Exception {
+    FakeClient fake = new FakeClient();
+    FilestackMetrics metrics = Mockito.mock(FilestackMetrics.class);
+    HedgingInterceptor interceptor = new HedgingInterceptor(fake.client, policy(1), metrics);
+    Request post = GET.newBuilder().post(RequestBody.create(null, "")).build();
+
+    Assert.assertEquals(200, interceptor.intercept(chain(post)).code());
+    Assert.assertEquals(1, fake.calls.size());
+    Mockito.verify(fake.calls.get(0)).execute();
+    Mockito.verifyZeroInteractions(metrics);
+  }
+}
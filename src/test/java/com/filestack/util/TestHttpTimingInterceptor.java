@@ -0,0 +1,135 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests {@link HttpTimingInterceptor} by running its interceptors against mocked chains.
+ */
+public class TestHttpTimingInterceptor {
+
+  private static final Dns FAKE_DNS = new Dns() {
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+      byte[] address = {10, 0, 0, 1};
+      return Collections.singletonList(InetAddress.getByAddress(hostname, address));
+    }
+  };
+
+  /** Runs a request through the interceptors like OkHttp does, resolving when asked to. */
+  private static Response run(HttpTimingInterceptor interceptor, Request request,
+                              final boolean newConnection) throws IOException {
+    final Interceptor network = interceptor.networkInterceptor();
+    final Dns dns = interceptor.timeDns(FAKE_DNS);
+
+    Interceptor.Chain appChain = Mockito.mock(Interceptor.Chain.class);
+    Mockito.doReturn(request).when(appChain).request();
+    Mockito.doAnswer(new Answer<Response>() {
+      @Override
+      public Response answer(InvocationOnMock invocation) throws Throwable {
+        Request appRequest = invocation.getArgument(0);
+        if (newConnection) {
+          dns.lookup(appRequest.url().host());
+        }
+
+        Interceptor.Chain networkChain = Mockito.mock(Interceptor.Chain.class);
+        Mockito.doReturn(appRequest).when(networkChain).request();
+        Mockito.doAnswer(new Answer<Response>() {
+          @Override
+          public Response answer(InvocationOnMock invocation) throws Throwable {
+            Request sent = invocation.getArgument(0);
+            if (sent.body() != null) {
+              sent.body().writeTo(new Buffer());
+            }
+            return new Response.Builder()
+                .code(200)
+                .message("OK")
+                .protocol(Protocol.HTTP_1_1)
+                .request(sent)
+                .build();
+          }
+        }).when(networkChain).proceed(Mockito.any(Request.class));
+
+        return network.intercept(networkChain);
+      }
+    }).when(appChain).proceed(Mockito.any(Request.class));
+
+    return interceptor.intercept(appChain);
+  }
+
+  private static long count(HttpTimings timings, HttpEndpoint endpoint, HttpPhase phase) {
+    return timings.getHistogram(endpoint, phase).getCount();
+  }
+
+  @Test
+  public void testUploadPhases() throws Exception {
+    HttpTimings timings = new HttpTimings();
+    HttpTimingInterceptor interceptor = new HttpTimingInterceptor(timings);
+    RequestBody body = RequestBody.create(MediaType.parse("text/plain"), "part");
+    Request request = new Request.Builder()
+        .url("https://upload.filestackapi.com/multipart/upload")
+        .post(body)
+        .build();
+
+    Response response = run(interceptor, request, true);
+
+    Assert.assertEquals(body.contentLength(), response.request().body().contentLength());
+    Assert.assertEquals(1, count(timings, HttpEndpoint.UPLOAD, HttpPhase.DNS));
+    Assert.assertEquals(1, count(timings, HttpEndpoint.UPLOAD, HttpPhase.CONNECT));
+    Assert.assertEquals(1, count(timings, HttpEndpoint.UPLOAD, HttpPhase.REQUEST_BODY));
+    Assert.assertEquals(1, count(timings, HttpEndpoint.UPLOAD, HttpPhase.TIME_TO_FIRST_BYTE));
+    Assert.assertEquals(1, count(timings, HttpEndpoint.UPLOAD, HttpPhase.TOTAL));
+    Assert.assertEquals(0, count(timings, HttpEndpoint.START, HttpPhase.TOTAL));
+  }
+
+  @Test
+  public void testPooledConnection() throws Exception {
+    HttpTimings timings = new HttpTimings();
+    HttpTimingInterceptor interceptor = new HttpTimingInterceptor(timings);
+    Request request = new Request.Builder().url("https://cdn.filestackcontent.com/handle").build();
+
+    run(interceptor, request, true);
+    run(interceptor, request, false);
+
+    Assert.assertEquals(1, count(timings, HttpEndpoint.CDN, HttpPhase.DNS));
+    Assert.assertEquals(2, count(timings, HttpEndpoint.CDN, HttpPhase.CONNECT));
+    Assert.assertEquals(0, count(timings, HttpEndpoint.CDN, HttpPhase.REQUEST_BODY));
+    Assert.assertEquals(2, count(timings, HttpEndpoint.CDN, HttpPhase.TIME_TO_FIRST_BYTE));
+    Assert.assertEquals(2, count(timings, HttpEndpoint.CDN, HttpPhase.TOTAL));
+  }
+
+  @Test
+  public void testEndpoints() {
+    Assert.assertEquals(HttpEndpoint.START,
+        HttpEndpoint.of(HttpUrl.parse("https://upload.filestackapi.com/multipart/start")));
+    Assert.assertEquals(HttpEndpoint.UPLOAD,
+        HttpEndpoint.of(HttpUrl.parse("https://upload.filestackapi.com/multipart/upload")));
+    Assert.assertEquals(HttpEndpoint.COMMIT,
+        HttpEndpoint.of(HttpUrl.parse("https://upload.filestackapi.com/multipart/commit")));
+    Assert.assertEquals(HttpEndpoint.COMPLETE,
+        HttpEndpoint.of(HttpUrl.parse("https://upload.filestackapi.com/multipart/complete")));
+    Assert.assertEquals(HttpEndpoint.S3,
+        HttpEndpoint.of(HttpUrl.parse("https://bucket.s3.amazonaws.com/key?partNumber=1")));
+    Assert.assertEquals(HttpEndpoint.CDN,
+        HttpEndpoint.of(HttpUrl.parse("https://cdn.filestackcontent.com/handle")));
+    Assert.assertEquals(HttpEndpoint.API,
+        HttpEndpoint.of(HttpUrl.parse("https://www.filestackapi.com/api/file/handle")));
+  }
+}
@@ -0,0 +1,76 @@
+package com.filestack.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMean(TimeUnit.NANOSECONDS));
+    Assert.assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+    Assert.assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void testRecord() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(5050, histogram.getTotal(TimeUnit.MILLISECONDS));
+    Assert.assertEquals(50, histogram.getMean(TimeUnit.MILLISECONDS));
+    Assert.assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS));
+
+    // Estimates are at least the real value and under twice it
+    long median = histogram.getPercentile(50, TimeUnit.MICROSECONDS);
+    Assert.assertTrue(median >= 50000 && median < 100000);
+    long p99 = histogram.getPercentile(99, TimeUnit.MICROSECONDS);
+    Assert.assertTrue(p99 >= 99000 && p99 <= 100000);
+    Assert.assertEquals(100, histogram.getPercentile(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testExtremes() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(0);
+    histogram.record(Long.MAX_VALUE / 2);
+
+    Assert.assertEquals(3, histogram.getCount());
+    Assert.assertEquals(Long.MAX_VALUE / 2, histogram.getMax(TimeUnit.NANOSECONDS));
+    Assert.assertEquals(2000, histogram.getPercentile(50, TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void testConcurrentRecord() throws Exception {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            histogram.record(j * 1000L);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(40000, histogram.getCount());
+    Assert.assertEquals(9999, histogram.getMax(TimeUnit.MICROSECONDS));
+  }
+}
@@ -58,4 +58,20 @@ public class TestNetworking extends Networking {
     Networking.invalidate();
     Assert.assertNotSame(okHttpClient, Networking.getHttpClient());
   }
+
+  @Test
+  public void testUploadClient() {
+    Networking.invalidate();
+    OkHttpClient client = Networking.getHttpClient();
+    OkHttpClient uploadClient = Networking.getUploadClient();
+    // Only uploads cache lookups, on the same pool
+    Assert.assertFalse(client.dns() instanceof CachingDns);
+    Assert.assertTrue(uploadClient.dns() instanceof CachingDns);
+    Assert.assertSame(client.connectionPool(), uploadClient.connectionPool());
+
+    OkHttpClient custom = new OkHttpClient();
+    Networking.setCustomClient(custom);
+    Assert.assertSame(custom, Networking.getUploadClient());
+    Networking.invalidate();
+  }
 }
@@ -0,0 +1,191 @@
+package com.filestack.util;
+
+import com.filestack.InMemoryMetrics;
+import com.filestack.NoOpMetrics;
+import com.filestack.errors.InvalidArgumentException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNetworkingContext {
+
+  @Test
+  public void testGets() {
+    NetworkingContext context = new NetworkingContext.Builder().build();
+
+    Assert.assertNotNull(context.getFsApiService());
+    Assert.assertNotNull(context.getFsCdnService());
+    Assert.assertNotNull(context.getFsUploadService());
+    Assert.assertSame(context.getFsApiService(), context.getFsApiService());
+    Assert.assertSame(context.getCdnClient(), context.getCdnClient());
+  }
+
+  @Test
+  public void testSeparatePools() {
+    NetworkingContext context = new NetworkingContext.Builder()
+        .maxRequests(16)
+        .maxRequestsPerHost(4)
+        .connectTimeout(5, TimeUnit.SECONDS)
+        .readTimeout(10, TimeUnit.SECONDS)
+        .writeTimeout(15, TimeUnit.SECONDS)
+        .apiPool(1, 1, TimeUnit.MINUTES)
+        .cdnPool(8, 5, TimeUnit.MINUTES)
+        .s3Pool(4, 30, TimeUnit.SECONDS)
+        .build();
+
+    OkHttpClient api = context.getApiClient();
+    OkHttpClient cdn = context.getCdnClient();
+    OkHttpClient s3 = context.getS3Client();
+
+    Assert.assertNotSame(api.connectionPool(), cdn.connectionPool());
+    Assert.assertNotSame(api.connectionPool(), s3.connectionPool());
+    Assert.assertNotSame(cdn.connectionPool(), s3.connectionPool());
+
+    Assert.assertSame(api.dispatcher(), cdn.dispatcher());
+    Assert.assertSame(api.dispatcher(), s3.dispatcher());
+    Assert.assertEquals(16, api.dispatcher().getMaxRequests());
+    Assert.assertEquals(4, api.dispatcher().getMaxRequestsPerHost());
+
+    Assert.assertEquals(5000, cdn.connectTimeoutMillis());
+    Assert.assertEquals(10000, cdn.readTimeoutMillis());
+    Assert.assertEquals(15000, cdn.writeTimeoutMillis());
+    Assert.assertFalse(cdn.retryOnConnectionFailure());
+    Assert.assertTrue(cdn.dns() instanceof CachingDns);
+  }
+
+  @Test
+  public void testDnsCacheDisabled() {
+    NetworkingContext context = new NetworkingContext.Builder()
+        .dnsCacheTtl(0, TimeUnit.SECONDS)
+        .build();
+    Assert.assertFalse(context.getS3Client().dns() instanceof CachingDns);
+  }
+
+  @Test
+  public void testHttpMetrics() {
+    NetworkingContext context = new NetworkingContext.Builder()
+        .httpMetrics(new HttpTimings())
+        .build();
+
+    OkHttpClient s3 = context.getS3Client();
+    boolean timed = false;
+    for (Interceptor interceptor : s3.interceptors()) {
+      timed |= interceptor instanceof HttpTimingInterceptor;
+    }
+    Assert.assertTrue(timed);
+    Assert.assertEquals(1, s3.networkInterceptors().size());
+    Assert.assertTrue(new NetworkingContext.Builder().build().getS3Client()
+        .networkInterceptors().isEmpty());
+  }
+
+  @Test
+  public void testMetrics() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    NetworkingContext context = new NetworkingContext.Builder().metrics(metrics).build();
+
+    Assert.assertSame(metrics, new FsService(context).getMetrics());
+    Assert.assertEquals(1, context.getCdnClient().networkInterceptors().size());
+    Assert.assertSame(NoOpMetrics.INSTANCE, new FsService().getMetrics());
+    Assert.assertSame(NoOpMetrics.INSTANCE,
+        new NetworkingContext.Builder().build().getMetrics());
+  }
+
+  @Test
+  public void testSeparateContexts() {
+    NetworkingContext first = new NetworkingContext.Builder().build();
+    NetworkingContext second = new NetworkingContext.Builder().build();
+
+    Assert.assertNotSame(first.getCdnClient().dispatcher(), second.getCdnClient().dispatcher());
+    Assert.assertNotSame(first.getCdnClient().connectionPool(),
+        second.getCdnClient().connectionPool());
+    Assert.assertNotSame(Networking.getHttpClient().connectionPool(),
+        first.getCdnClient().connectionPool());
+  }
+
+  @Test
+  public void testHedgedCdnClient() {
+    NetworkingContext context = new NetworkingContext.Builder()
+        .hedgeCdnReads(new HedgePolicy.Builder().build())
+        .build();
+
+    // Only the copies the interceptor sends run on the hedging dispatcher
+    OkHttpClient cdn = context.getCdnClient();
+    Assert.assertSame(context.getApiClient().dispatcher(), cdn.dispatcher());
+    Assert.assertTrue(cdn.interceptors().get(0) instanceof HedgingInterceptor);
+    context.close();
+    Assert.assertTrue(cdn.dispatcher().executorService().isShutdown());
+  }
+
+  @Test
+  public void testBaseClient() {
+    HeaderInterceptor interceptor = new HeaderInterceptor();
+    OkHttpClient base = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    NetworkingContext context = new NetworkingContext.Builder().baseClient(base).build();
+
+    OkHttpClient api = context.getApiClient();
+    Assert.assertTrue(api.interceptors().contains(interceptor));
+    Assert.assertNotSame(base.dispatcher(), api.dispatcher());
+    Assert.assertNotSame(base.connectionPool(), api.connectionPool());
+  }
+
+  @Test
+  public void testConcurrentInit() throws Exception {
+    final NetworkingContext context = new NetworkingContext.Builder().build();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<FsCdnService>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<FsCdnService>() {
+          @Override
+          public FsCdnService call() {
+            return context.getFsCdnService();
+          }
+        }));
+      }
+      for (Future<FsCdnService> future : futures) {
+        Assert.assertSame(context.getFsCdnService(), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testClose() {
+    NetworkingContext unused = new NetworkingContext.Builder().build();
+    unused.close();
+
+    NetworkingContext context = new NetworkingContext.Builder().build();
+    OkHttpClient client = context.getS3Client();
+    context.close();
+    Assert.assertTrue(client.dispatcher().executorService().isShutdown());
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidMaxRequests() {
+    new NetworkingContext.Builder().maxRequests(0);
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidDnsCacheTtl() {
+    new NetworkingContext.Builder().dnsCacheTtl(-1, TimeUnit.SECONDS);
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidCoalesceLimit() {
+    new NetworkingContext.Builder().coalesceReads(-1);
+  }
+
+  @Test(expected = InvalidArgumentException.class)
+  public void testInvalidPool() {
+    new NetworkingContext.Builder().cdnPool(-1, 5, TimeUnit.MINUTES);
+  }
+}
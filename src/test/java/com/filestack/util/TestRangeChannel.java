@@ -0,0 +1,191 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import retrofit2.Response;
+import retrofit2.mock.Calls;
+
+public class TestRangeChannel {
+  private static final int FILE_SIZE = 10000;
+  private static final int BLOCK_SIZE = 100;
+
+  private static byte[] createContent() {
+    byte[] content = new byte[FILE_SIZE];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  /** Mocks the range endpoint to serve slices of the content with a 206 response. */
+  private static FsService createMockService(final byte[] content) {
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doAnswer(new Answer() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            String range = invocation.getArgument(1);
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+
+            byte[] slice = new byte[end - start + 1];
+            System.arraycopy(content, start, slice, 0, slice.length);
+
+            MediaType mediaType = MediaType.parse("application/octet-stream");
+            ResponseBody body = ResponseBody.create(mediaType, slice);
+            okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+                .request(new Request.Builder().url("https://example.com").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(206)
+                .message("Partial Content")
+                .header("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                .build();
+            return Calls.response(Response.success(body, rawResponse));
+          }
+        })
+        .when(mockFsService)
+        .getRange(Mockito.anyString(), Mockito.anyString(), Mockito.<String>any(),
+            Mockito.<String>any());
+    return mockFsService;
+  }
+
+  @Test
+  public void testSize() throws Exception {
+    FsService mockFsService = createMockService(createContent());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+
+    Assert.assertEquals(FILE_SIZE, channel.size());
+    Assert.assertEquals(FILE_SIZE, channel.size());
+    Assert.assertEquals(1, channel.getRequestCount());
+  }
+
+  @Test
+  public void testRandomRead() throws Exception {
+    byte[] content = createContent();
+    FsService mockFsService = createMockService(content);
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+
+    ByteBuffer buffer = ByteBuffer.allocate(250);
+    channel.position(FILE_SIZE - 300);
+    Assert.assertEquals(250, channel.read(buffer));
+    Assert.assertEquals(FILE_SIZE - 50, channel.position());
+
+    for (int i = 0; i < 250; i++) {
+      Assert.assertEquals(content[FILE_SIZE - 300 + i], buffer.get(i));
+    }
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    FsService mockFsService = createMockService(createContent());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+    channel.size();
+
+    // Spans blocks 10 through 14, should be fetched in a single request
+    channel.position(1000);
+    channel.read(ByteBuffer.allocate(500));
+    Assert.assertEquals(2, channel.getRequestCount());
+
+    // Already cached
+    channel.position(1100);
+    channel.read(ByteBuffer.allocate(300));
+    Assert.assertEquals(2, channel.getRequestCount());
+  }
+
+  @Test
+  public void testReadahead() throws Exception {
+    FsService mockFsService = createMockService(createContent());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 16);
+
+    ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+    int reads = 0;
+    while (channel.read(buffer) != -1) {
+      buffer.clear();
+      reads++;
+    }
+
+    Assert.assertEquals(FILE_SIZE / BLOCK_SIZE, reads);
+    Assert.assertTrue(channel.getRequestCount() < reads / 2);
+  }
+
+  @Test
+  public void testEndOfFile() throws Exception {
+    FsService mockFsService = createMockService(createContent());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+
+    channel.position(FILE_SIZE);
+    Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    // Servers reject any range of an empty file
+    okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+        .request(new Request.Builder().url("https://example.com").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(416)
+        .message("Range Not Satisfiable")
+        .header("Content-Range", "bytes */0")
+        .build();
+    ResponseBody body = ResponseBody.create(MediaType.parse("text/plain"), "");
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doReturn(Calls.response(Response.error(body, rawResponse)))
+        .when(mockFsService)
+        .getRange(Mockito.anyString(), Mockito.anyString(), Mockito.<String>any(),
+            Mockito.<String>any());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+
+    Assert.assertEquals(0, channel.size());
+    Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+    Assert.assertEquals(1, channel.getRequestCount());
+  }
+
+  @Test
+  public void testErrorBodyClosed() throws Exception {
+    final AtomicBoolean closed = new AtomicBoolean();
+    ForwardingSource source = new ForwardingSource(new Buffer().writeUtf8("Not found")) {
+      @Override
+      public void close() throws IOException {
+        closed.set(true);
+        super.close();
+      }
+    };
+    ResponseBody body = ResponseBody.create(MediaType.parse("text/plain"), 9,
+        Okio.buffer(source));
+    okhttp3.Response rawResponse = new okhttp3.Response.Builder()
+        .request(new Request.Builder().url("https://example.com").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(404)
+        .message("Not Found")
+        .build();
+    FsService mockFsService = Mockito.mock(FsService.class);
+    Mockito
+        .doReturn(Calls.response(Response.error(body, rawResponse)))
+        .when(mockFsService)
+        .getRange(Mockito.anyString(), Mockito.anyString(), Mockito.<String>any(),
+            Mockito.<String>any());
+    RangeChannel channel = new RangeChannel(mockFsService, "handle", null, BLOCK_SIZE, 8);
+
+    try {
+      channel.size();
+      Assert.fail("Expected the read to fail");
+    } catch (IOException e) {
+      Assert.assertTrue(closed.get());
+    }
+  }
+}
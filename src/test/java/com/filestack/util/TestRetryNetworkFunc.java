@@ -1,5 +1,6 @@
 package com.filestack.util;
 
+import com.filestack.InMemoryMetrics;
 import com.filestack.errors.InternalException;
 import com.filestack.errors.InvalidParameterException;
 import com.filestack.errors.PolicySignatureException;
@@ -137,4 +138,30 @@ public class TestRetryNetworkFunc {
       Assert.assertEquals(6, retryNetworkFunc.getServerRetries());
     }
   }
+
+  @Test
+  public void testRetriesReported() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    RetryNetworkFunc retryNetworkFunc = new RetryNetworkFunc<Void>(2, 3, 0, metrics) {
+      private int attempts;
+
+      @Override
+      Response work() throws Exception {
+        if (attempts++ == 0) {
+          throw new IOException();
+        }
+        MediaType mediaType = MediaType.parse("text/plain");
+        return Response.error(500, ResponseBody.create(mediaType, "test"));
+      }
+    };
+
+    try {
+      retryNetworkFunc.call();
+      Assert.fail("Server failures should run out");
+    } catch (Exception e) {
+      // Only attempts that are followed by another one count as retries
+      Assert.assertEquals(1, metrics.getNetworkRetries());
+      Assert.assertEquals(3, metrics.getServerRetries());
+    }
+  }
 }
@@ -0,0 +1,192 @@
+package com.filestack.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Tests {@link SingleFlight} by executing calls from several threads while the first one is
+ * held back.
+ */
+public class TestSingleFlight {
+  private static final MediaType MEDIA_TYPE = MediaType.parse("text/plain");
+  private static final int THREADS = 8;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicInteger executions = new AtomicInteger();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Creates a call that waits to be released, then returns the body or throws the error. */
+  private Call<ResponseBody> createCall(final ResponseBody body, final Throwable error)
+      throws IOException {
+    @SuppressWarnings("unchecked")
+    Call<ResponseBody> call = Mockito.mock(Call.class);
+    Mockito.doAnswer(new Answer<Response<ResponseBody>>() {
+      @Override
+      public Response<ResponseBody> answer(InvocationOnMock invocation) throws Throwable {
+        executions.incrementAndGet();
+        release.await();
+        if (error != null) {
+          throw error;
+        }
+        return Response.success(body);
+      }
+    }).when(call).execute();
+    return call;
+  }
+
+  /** Executes a call per thread, releases them once they're all waiting. */
+  private List<Future<Response<ResponseBody>>> executeAll(final SingleFlight singleFlight,
+      final ResponseBody body, final Throwable error) throws Exception {
+    final CountDownLatch started = new CountDownLatch(THREADS);
+    final List<Thread> threads = new CopyOnWriteArrayList<>();
+    List<Future<Response<ResponseBody>>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      final Call<ResponseBody> call = singleFlight.wrap(createCall(body, error), "get", "handle");
+      futures.add(executor.submit(new Callable<Response<ResponseBody>>() {
+        @Override
+        public Response<ResponseBody> call() throws Exception {
+          threads.add(Thread.currentThread());
+          started.countDown();
+          return call.execute();
+        }
+      }));
+    }
+    // Every thread is waiting once the first call waits to be released and the others join it
+    started.await();
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    release.countDown();
+    return futures;
+  }
+
+  @Test
+  public void testCoalesced() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(1024);
+    List<Future<Response<ResponseBody>>> futures =
+        executeAll(singleFlight, ResponseBody.create(MEDIA_TYPE, "content"), null);
+
+    for (Future<Response<ResponseBody>> future : futures) {
+      Response<ResponseBody> response = future.get(5, TimeUnit.SECONDS);
+      Assert.assertEquals("content", response.body().string());
+      Assert.assertEquals(MEDIA_TYPE, response.body().contentType());
+    }
+    Assert.assertEquals(1, executions.get());
+  }
+
+  @Test
+  public void testLargeBodyNotShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(4);
+    List<Future<Response<ResponseBody>>> futures =
+        executeAll(singleFlight, ResponseBody.create(MEDIA_TYPE, "content"), null);
+
+    for (Future<Response<ResponseBody>> future : futures) {
+      Assert.assertEquals(7, future.get(5, TimeUnit.SECONDS).body().contentLength());
+    }
+    Assert.assertEquals(THREADS, executions.get());
+  }
+
+  @Test
+  public void testUnknownLengthNotShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(1024);
+    ResponseBody body = ResponseBody.create(MEDIA_TYPE, -1, new Buffer().writeUtf8("content"));
+    List<Future<Response<ResponseBody>>> futures = executeAll(singleFlight, body, null);
+
+    for (Future<Response<ResponseBody>> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(THREADS, executions.get());
+  }
+
+  @Test
+  public void testFailureShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(1024);
+    List<Future<Response<ResponseBody>>> futures =
+        executeAll(singleFlight, null, new IOException("failed"));
+
+    for (Future<Response<ResponseBody>> future : futures) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        Assert.fail("Expected the call to fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+        Assert.assertEquals("failed", e.getCause().getMessage());
+      }
+    }
+    Assert.assertEquals(1, executions.get());
+  }
+
+  @Test
+  public void testErrorNotShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(1024);
+    List<Future<Response<ResponseBody>>> futures =
+        executeAll(singleFlight, null, new AssertionError("failed"));
+
+    // Waiting calls are released and run their own request
+    for (Future<Response<ResponseBody>> future : futures) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        Assert.fail("Expected the call to fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof AssertionError);
+      }
+    }
+    Assert.assertEquals(THREADS, executions.get());
+  }
+
+  @Test
+  public void testSequentialCallsNotShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight(1024);
+    release.countDown();
+
+    for (int i = 0; i < 2; i++) {
+      Call<ResponseBody> call = singleFlight.wrap(
+          createCall(ResponseBody.create(MEDIA_TYPE, "content"), null), "get", "handle");
+      Assert.assertEquals("content", call.execute().body().string());
+    }
+    Assert.assertEquals(2, executions.get());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    Call<ResponseBody> call = createCall(ResponseBody.create(MEDIA_TYPE, "content"), null);
+    Assert.assertSame(call, new SingleFlight(0).wrap(call, "get", "handle"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testExecuteTwice() throws Exception {
+    release.countDown();
+    Call<ResponseBody> call = new SingleFlight(1024).wrap(
+        createCall(ResponseBody.create(MEDIA_TYPE, "content"), null), "get", "handle");
+    call.execute();
+    call.execute();
+  }
+}
@@ -0,0 +1,144 @@
+package com.filestack.util;
+
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import retrofit2.Call;
+
+/**
+ * Tests {@link Stragglers} with a fake clock.
+ */
+public class TestStragglers {
+
+  private static class FakeTicker extends Ticker {
+    long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Call<ResponseBody> mockCall() {
+    return Mockito.mock(Call.class);
+  }
+
+  @Test
+  public void testFindStraggler() {
+    FakeTicker ticker = new FakeTicker();
+    String[] etags = new String[3];
+    Stragglers stragglers = new Stragglers(etags, ticker);
+
+    stragglers.start(1);
+    stragglers.start(2);
+    stragglers.start(3);
+    ticker.advance(10, TimeUnit.SECONDS);
+    // Nothing to compare with until a part finishes
+    Assert.assertEquals(0, stragglers.findStraggler());
+
+    ticker.advance(-9, TimeUnit.SECONDS);
+    stragglers.finish(1, mockCall(), "etag1");
+    stragglers.finish(3, mockCall(), "etag3");
+    Assert.assertEquals(0, stragglers.findStraggler());
+
+    ticker.advance(2, TimeUnit.SECONDS);
+    Assert.assertEquals(2, stragglers.findStraggler());
+  }
+
+  @Test
+  public void testFirstCopyWins() {
+    String[] etags = new String[2];
+    Stragglers stragglers = new Stragglers(etags, new FakeTicker());
+    Call<ResponseBody> first = mockCall();
+    Call<ResponseBody> second = mockCall();
+
+    stragglers.start(1);
+    stragglers.register(1, first);
+    stragglers.register(1, second);
+
+    Assert.assertTrue(stragglers.finish(1, second, "second"));
+    Mockito.verify(first).cancel();
+    Mockito.verify(second, Mockito.never()).cancel();
+    Assert.assertTrue(stragglers.isDone(1));
+
+    // The loser finishing too is ignored
+    Assert.assertFalse(stragglers.finish(1, first, "first"));
+    Assert.assertEquals("second", etags[0]);
+
+    // Calls for a part that's done are cancelled right away
+    Call<ResponseBody> late = mockCall();
+    stragglers.register(1, late);
+    Mockito.verify(late).cancel();
+  }
+
+  @Test
+  public void testAwaitStraggler() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    Stragglers stragglers = new Stragglers(new String[2], ticker);
+    stragglers.start(1);
+    stragglers.start(2);
+    ticker.advance(1, TimeUnit.SECONDS);
+    stragglers.finish(1, mockCall(), "etag1");
+    ticker.advance(3, TimeUnit.SECONDS);
+
+    Assert.assertEquals(2, stragglers.awaitStraggler());
+    // Each part is only hedged once
+    Assert.assertEquals(0, stragglers.findStraggler());
+
+    stragglers.finish(2, mockCall(), "etag2");
+    Assert.assertEquals(0, stragglers.awaitStraggler());
+  }
+
+  @Test
+  public void testAwaitDone() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    final Stragglers stragglers = new Stragglers(new String[3], ticker);
+    stragglers.start(1);
+    stragglers.start(2);
+    stragglers.start(3);
+    ticker.advance(1, TimeUnit.SECONDS);
+    stragglers.finish(1, mockCall(), "etag1");
+    ticker.advance(3, TimeUnit.SECONDS);
+    Assert.assertEquals(2, stragglers.awaitStraggler());
+
+    // A part without a second copy fails with its only copy
+    stragglers.copyFailed(3);
+    Assert.assertFalse(stragglers.awaitDone(3));
+
+    // The first copy of a hedged part gives up, and waits for the second one to finish
+    stragglers.copyFailed(2);
+    Thread hedge = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        stragglers.finish(2, mockCall(), "etag2");
+      }
+    });
+    hedge.start();
+    Assert.assertTrue(stragglers.awaitDone(2));
+    hedge.join();
+  }
+
+  @Test
+  public void testAwaitDoneBothFail() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    Stragglers stragglers = new Stragglers(new String[2], ticker);
+    stragglers.start(1);
+    stragglers.start(2);
+    ticker.advance(1, TimeUnit.SECONDS);
+    stragglers.finish(1, mockCall(), "etag1");
+    ticker.advance(3, TimeUnit.SECONDS);
+    Assert.assertEquals(2, stragglers.awaitStraggler());
+
+    stragglers.copyFailed(2);
+    stragglers.copyFailed(2);
+    Assert.assertFalse(stragglers.awaitDone(2));
+  }
+}